@@ -0,0 +1,186 @@
+package structures;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Scanner;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * JMH benchmarks of build and the transform operations of Tree, on documents of each shape
+ * and size from DocumentGenerator. Built into target/benchmarks.jar by the pom.xml of DOM
+ * Tree.
+ *
+ * Usage: java -jar target/benchmarks.jar [JMH options]
+ *
+ * for instance "-p size=1G -p shape=lists build" for one benchmark on one large document.
+ * main always adds the GC profiler (-prof gc), whose gc.alloc.rate.norm is the bytes
+ * allocated per operation, so that memory regressions show up next to the times. Sizes
+ * above 256M need a larger heap (-jvmArgsAppend -Xmx8g) and cannot run getHTML, as a string
+ * cannot hold them; writeHTML covers them.
+ *
+ * The operations that change the tree get a tree of their own for each call, loaded from
+ * the file Tree.save wrote. Loading it is not timed, but its allocation is in their
+ * gc.alloc.rate.norm: subtract that of the load benchmark.
+ *
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 2, jvmArgsAppend = {"-Xms2g", "-Xmx2g"})
+@State(Scope.Benchmark)
+public class TreeBenchmark {
+
+	@Param({"tables", "lists", "text", "mixed"})
+	public String shape;
+
+	@Param({"64K", "1M", "16M"})
+	public String size;
+
+	/**
+	 * The generated document, and the tree built from it as Tree.save wrote it
+	 */
+	private File html, saved;
+
+	/**
+	 * Tree built from the document, for the benchmarks that do not change it
+	 */
+	private Tree tree;
+
+	public static void main(String[] args)
+	throws RunnerException, CommandLineOptionException {
+		new Runner(new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.include(TreeBenchmark.class.getSimpleName())
+				.addProfiler(GCProfiler.class)
+				.build()).run();
+	}
+
+	@Setup(Level.Trial)
+	public void generate()
+	throws IOException {
+		html = File.createTempFile("treebenchmark", ".html");
+		saved = File.createTempFile("treebenchmark", ".domt");
+		DocumentGenerator.write(html, shape, DocumentGenerator.parseSize(size), 1);
+		tree = parse(html);
+		tree.save(saved);
+	}
+
+	@TearDown(Level.Trial)
+	public void delete() {
+		html.delete();
+		saved.delete();
+	}
+
+	/**
+	 * A tree for one call of an operation that changes it.
+	 */
+	@State(Scope.Thread)
+	public static class Fresh {
+
+		Tree tree;
+
+		@Setup(Level.Invocation)
+		public void load(TreeBenchmark b)
+		throws IOException {
+			tree = new Tree(new Scanner(""));
+			tree.load(b.saved);
+		}
+	}
+
+	@Benchmark
+	public Tree build()
+	throws IOException {
+		return parse(html);
+	}
+
+	@Benchmark
+	public Tree load()
+	throws IOException {
+		Tree t = new Tree(new Scanner(""));
+		t.load(saved);
+		return t;
+	}
+
+	@Benchmark
+	public String getHTML() {
+		return tree.getHTML();
+	}
+
+	@Benchmark
+	public void writeHTML(final Blackhole bh)
+	throws IOException {
+		tree.writeHTML(new Writer() {
+			public void write(char[] cbuf, int off, int len) {
+				bh.consume(cbuf);
+			}
+			public void flush() {
+			}
+			public void close() {
+			}
+		});
+	}
+
+	@Benchmark
+	public Tree replaceTag(Fresh f) {
+		f.tree.replaceTag("em", "i");
+		return f.tree;
+	}
+
+	@Benchmark
+	public Tree boldRow(Fresh f) {
+		f.tree.boldRow(1);
+		return f.tree;
+	}
+
+	@Benchmark
+	public Tree removeTagUl(Fresh f) {
+		f.tree.removeTag("ul");
+		return f.tree;
+	}
+
+	@Benchmark
+	public Tree removeTagP(Fresh f) {
+		f.tree.removeTag("p");
+		return f.tree;
+	}
+
+	@Benchmark
+	public Tree addTag(Fresh f) {
+		f.tree.addTag("the", "b");
+		return f.tree;
+	}
+
+	private static Tree parse(File file)
+	throws IOException {
+		Tree t = new Tree(new Scanner(file, "UTF-8"));
+		try {
+			t.build();
+		} finally {
+			t.sc.close();
+		}
+		return t;
+	}
+}
@@ -0,0 +1,197 @@
+package apps;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Scanner;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+
+import structures.EditScript;
+import structures.Tree;
+
+/**
+ * Non-interactive batch mode of DOM: applies one edit script to many HTML files on a pool of
+ * worker threads, and writes the results.
+ *
+ * Usage: java apps.DOM input scriptFile outputDir [threads]
+ *
+ * The input is either a directory, all of whose .html and .htm files (at any depth) are
+ * processed, or a text file listing one input file per line. Each result is written under
+ * outputDir at the same path as its input, relative to the input directory, or as listed.
+ * The script has one operation per line, as read by EditScript.parse, and is applied with
+ * Tree.edit in a single pass over each tree.
+ *
+ * A line is printed for each file as it finishes, with its build, edit and write times in
+ * milliseconds and its size, followed by totals and throughput. A file that fails (it cannot
+ * be read, or a table lacks a row to bold) is reported and skipped.
+ *
+ */
+public class Batch {
+
+	/**
+	 * Files in flight per worker thread; bounds memory however many files there are
+	 */
+	private static final int QUEUED_PER_THREAD = 4;
+
+	/**
+	 * Outcome of one file
+	 */
+	private static class Result {
+		String name;
+		long bytes;
+		long build, edit, write; // nanoseconds
+		String error;
+	}
+
+	public static void main(String[] args)
+	throws IOException, InterruptedException {
+		if (args.length < 3) {
+			System.out.println("Usage: java apps.DOM input scriptFile outputDir [threads]");
+			return;
+		}
+		File input = new File(args[0]);
+		Scanner sc = new Scanner(new File(args[1]));
+		final EditScript script = EditScript.parse(sc); // only read from here on, so shared by all workers
+		sc.close();
+		final File outDir = new File(args[2]);
+		int threads = args.length > 3 ? Integer.parseInt(args[3]) : Runtime.getRuntime().availableProcessors();
+
+		final File base;
+		ArrayList<String> names = new ArrayList<String>(); // relative to base
+		if (input.isDirectory()) {
+			base = input;
+			list(input, "", names);
+		} else {
+			base = null; // paths as given
+			Scanner files = new Scanner(input);
+			while (files.hasNextLine()) {
+				String name = files.nextLine().trim();
+				if (name.length() > 0) {
+					names.add(name);
+				}
+			}
+			files.close();
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "dom-batch");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		ExecutorCompletionService<Result> done = new ExecutorCompletionService<Result>(pool);
+		long start = System.nanoTime();
+		int submitted = 0, finished = 0, failed = 0;
+		long bytes = 0, build = 0, edit = 0, write = 0;
+		while (finished < names.size()) {
+			while (submitted < names.size() && submitted-finished < threads*QUEUED_PER_THREAD) {
+				final String name = names.get(submitted++);
+				done.submit(new Callable<Result>() {
+					public Result call() {
+						return process(base, name, script, outDir);
+					}
+				});
+			}
+			Result r;
+			try {
+				r = done.take().get();
+			} catch (ExecutionException e) { // process catches everything it expects
+				throw new RuntimeException(e.getCause());
+			}
+			finished++;
+			if (r.error != null) {
+				failed++;
+				System.out.println(r.name + "\tFAILED\t" + r.error);
+				continue;
+			}
+			bytes += r.bytes;
+			build += r.build;
+			edit += r.edit;
+			write += r.write;
+			System.out.println(String.format("%s\t%.3f\t%.3f\t%.3f\t%d", r.name, r.build/1e6, r.edit/1e6, r.write/1e6, r.bytes));
+		}
+		pool.shutdown();
+		double seconds = (System.nanoTime()-start)/1e9;
+		int ok = finished-failed;
+		System.out.println(String.format("%d files (%d failed) in %.2f s on %d threads: %.1f files/s, %.2f MB/s",
+				finished, failed, seconds, threads, ok/seconds, bytes/1e6/seconds));
+		if (ok > 0) {
+			System.out.println(String.format("mean per file: build %.3f ms, edit %.3f ms, write %.3f ms",
+					build/1e6/ok, edit/1e6/ok, write/1e6/ok));
+		}
+	}
+
+	/*
+	 * Builds, edits and writes one file.
+	 */
+	private static Result process(File base, String name, EditScript script, File outDir) {
+		Result r = new Result();
+		r.name = name;
+		try {
+			File in = base == null ? new File(name) : new File(base, name);
+			r.bytes = in.length();
+			long t = System.nanoTime();
+			Scanner sc = new Scanner(in, "UTF-8");
+			Tree tree = new Tree(sc);
+			try {
+				tree.build();
+			} finally {
+				sc.close();
+			}
+			long t2 = System.nanoTime();
+			tree.edit(script);
+			long t3 = System.nanoTime();
+			File out = new File(outDir, name);
+			File dir = out.getParentFile();
+			if (dir != null && !dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+				throw new IOException("cannot create " + dir);
+			}
+			Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(out), StandardCharsets.UTF_8));
+			try {
+				tree.writeHTML(w);
+			} finally {
+				w.close();
+			}
+			long t4 = System.nanoTime();
+			r.build = t2-t;
+			r.edit = t3-t2;
+			r.write = t4-t3;
+		} catch (IOException e) {
+			r.error = e.toString();
+		} catch (RuntimeException e) { // a table without the row to bold, or a malformed file
+			r.error = e.toString();
+		}
+		return r;
+	}
+
+	/*
+	 * Adds the .html and .htm files under a directory, with paths relative to the top.
+	 */
+	private static void list(File dir, String prefix, ArrayList<String> names) {
+		File[] files = dir.listFiles();
+		if (files == null) {
+			return;
+		}
+		Arrays.sort(files);
+		for (File f: files) {
+			String name = prefix + f.getName();
+			if (f.isDirectory()) {
+				list(f, name + File.separator, names);
+			} else if (name.endsWith(".html") || name.endsWith(".htm")) {
+				names.add(name);
+			}
+		}
+	}
+}
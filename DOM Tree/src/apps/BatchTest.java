@@ -0,0 +1,176 @@
+package apps;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+import java.util.Scanner;
+
+import structures.DocumentGenerator;
+import structures.Tree;
+
+/**
+ * Checks batch mode against the same operations applied to each file on its own with Tree.
+ * Generated documents of every shape are written in nested directories, along with a file that
+ * is not HTML and one that cannot be parsed. Each script is run over the directory and over a
+ * list of the files, on one thread and on several. Every output must be what Tree makes of
+ * its input, at the same relative path; a file for which an operation throws must be
+ * reported as failed and have no output.
+ *
+ * Usage: java apps.BatchTest [scripts] [seed]
+ *
+ * Prints each failure, then the number of scripts checked; exits with status 1 on a failure.
+ *
+ */
+public class BatchTest {
+
+	private static final String[] OPERATIONS = {
+		"replace td th", "replace em b", "replace p em", "remove em", "remove b", "remove p",
+		"remove ol", "remove ul", "add the b", "add tree em", "add node b", "bold 1", "bold 2", "bold 7"
+	};
+
+	private static int failures;
+
+	public static void main(String[] args)
+	throws IOException, InterruptedException {
+		int scripts = args.length > 0 ? Integer.parseInt(args[0]) : 20;
+		Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 1);
+		File top = Files.createTempDirectory("batchtest").toFile();
+		try {
+			File in = new File(top, "in");
+			ArrayList<String> names = new ArrayList<String>();
+			String[] shapes = DocumentGenerator.SHAPES;
+			for (int i=0; i < 12; i++) {
+				String name = (i % 3 == 0 ? "" : "d" + i%3 + File.separator + (i % 2 == 0 ? "e" + File.separator : "")) + shapes[i%shapes.length] + i + (i % 4 == 3 ? ".htm" : ".html");
+				File f = new File(in, name);
+				f.getParentFile().mkdirs();
+				DocumentGenerator.write(f, shapes[i%shapes.length], 2000 + random.nextInt(60000), i);
+				names.add(name);
+			}
+			write(new File(in, "notes.txt"), "<p>\nnot HTML, not processed\n</p>\n");
+			write(new File(in, "broken.html"), "</p>\n<p>\n");
+			names.add("broken.html");
+			StringBuilder list = new StringBuilder();
+			for (String name: names) {
+				list.append(new File(in, name).getPath()).append('\n');
+			}
+			File listed = new File(top, "files.txt");
+			write(listed, list.toString());
+
+			for (int s=0; s < scripts; s++) {
+				ArrayList<String> script = new ArrayList<String>();
+				for (int k=1 + random.nextInt(5); k > 0; k--) {
+					script.add(OPERATIONS[random.nextInt(OPERATIONS.length)]);
+				}
+				StringBuilder text = new StringBuilder("# script " + s + "\n");
+				for (String op: script) {
+					text.append(op).append("\n\n");
+				}
+				File scriptFile = new File(top, "script.txt");
+				write(scriptFile, text.toString());
+				boolean byList = s % 2 == 1;
+				File out = new File(top, "out" + s);
+				String output = run(new String[] {(byList ? listed : in).getPath(), scriptFile.getPath(), out.getPath(), s % 3 == 0 ? "1" : "3"});
+				for (String name: names) {
+					String expected = expected(new File(in, name), script);
+					File result = byList ? new File(out, new File(in, name).getPath()) : new File(out, name);
+					String check = "script " + s + " " + script + (byList ? " by list" : "") + ", " + name;
+					if (expected == null) {
+						if (result.exists() || !output.contains(name + "\tFAILED")) {
+							fail(check, "not reported as failed, or written");
+						}
+					} else if (!result.exists()) {
+						fail(check, "not written");
+					} else if (!expected.equals(new String(Files.readAllBytes(result.toPath()), StandardCharsets.UTF_8))) {
+						fail(check, "output differs from Tree");
+					}
+				}
+				if (!byList && new File(out, "notes.txt").exists()) {
+					fail("script " + s, "notes.txt processed");
+				}
+				delete(out);
+			}
+		} finally {
+			delete(top);
+		}
+		System.out.println(scripts + " scripts, " + failures + " failures");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/*
+	 * Runs batch mode, and returns what it printed.
+	 */
+	private static String run(String[] args)
+	throws IOException, InterruptedException {
+		PrintStream stdout = System.out;
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		System.setOut(new PrintStream(bytes, true, "UTF-8"));
+		try {
+			DOM.main(args);
+		} finally {
+			System.setOut(stdout);
+		}
+		return new String(bytes.toByteArray(), StandardCharsets.UTF_8);
+	}
+
+	/*
+	 * What Tree makes of a file with the operations applied one at a time, null if one throws.
+	 */
+	private static String expected(File file, ArrayList<String> script)
+	throws IOException {
+		Scanner sc = new Scanner(file, "UTF-8");
+		try {
+			Tree tree = new Tree(sc);
+			tree.build();
+			for (String op: script) {
+				String[] w = op.split(" ");
+				if (w[0].equals("replace")) {
+					tree.replaceTag(w[1], w[2]);
+				} else if (w[0].equals("remove")) {
+					tree.removeTag(w[1]);
+				} else if (w[0].equals("add")) {
+					tree.addTag(w[1], w[2]);
+				} else {
+					tree.boldRow(Integer.parseInt(w[1]));
+				}
+			}
+			return tree.getHTML();
+		} catch (RuntimeException e) {
+			return null;
+		} finally {
+			sc.close();
+		}
+	}
+
+	private static void write(File file, String text)
+	throws IOException {
+		PrintWriter w = new PrintWriter(file, "UTF-8");
+		try {
+			w.print(text);
+		} finally {
+			w.close();
+		}
+	}
+
+	private static void delete(File f) {
+		File[] files = f.listFiles();
+		if (files != null) {
+			for (File g: files) {
+				delete(g);
+			}
+		}
+		f.delete();
+	}
+
+	private static void fail(String check, String message) {
+		failures++;
+		System.out.println(check + ": " + message);
+	}
+}
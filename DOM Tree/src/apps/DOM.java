@@ -6,11 +6,12 @@ import java.util.Scanner;
 import java.util.StringTokenizer;
 
 import structures.Tree;
+import structures.TreeHistory;
 
 public class DOM {
 
 	static Scanner stdin = new Scanner(System.in);
-	static String options = "hprbdaq";
+	static String options = "hprbdaueq";
 	
 	static char getOption() {
 		System.out.print("\nChoose action: ");
@@ -19,40 +20,46 @@ public class DOM {
 		System.out.print("(r)eplace tag, ");
 		System.out.print("(b)oldface row, ");
 		System.out.print("(d)elete tag, ");
-		System.out.print("(a)dd tag, or ");
+		System.out.print("(a)dd tag, ");
+		System.out.print("(u)ndo, ");
+		System.out.print("r(e)do, or ");
 		System.out.print("(q)uit? => ");
 		char response = stdin.nextLine().toLowerCase().charAt(0);
 		while (!options.contains(response+"")) {
-			System.out.print("\tYou must enter one of p, h, r, b, d, a, or q => ");
+			System.out.print("\tYou must enter one of p, h, r, b, d, a, u, e, or q => ");
 			response = stdin.nextLine().toLowerCase().charAt(0);
 		}
 		return response;
 	}
 	
 	/**
-	 * @param args
+	 * @param args None for the interactive loop, or the arguments of batch mode (see Batch)
 	 */
 	public static void main(String[] args) 
-	throws IOException {
-		// TODO Auto-generated method stub
+	throws IOException, InterruptedException {
+		if (args.length > 0) { // input scriptFile outputDir [threads]
+			Batch.main(args);
+			return;
+		}
 		System.out.print("Enter HTML file name => ");
 		String htmlFile = stdin.nextLine();
 		Tree tree = new Tree(new Scanner(new File(htmlFile)));
 		tree.build();
+		TreeHistory history = new TreeHistory(tree.snapshot());
 		
 		char option;
 		while ((option = getOption()) != 'q') {
 			System.out.println();
 			if (option == 'h') {
-				System.out.print(tree.getHTML());
+				System.out.print(history.current().getHTML());
 			} else if (option == 'p') {
-					tree.print();
+					history.current().print();
 			} else if (option == 'r') {
 				System.out.print("\tEnter old tag => ");
 				String oldTag = stdin.next();
 				System.out.print("\tEnter new tag => ");
 				String newTag = stdin.next();
-				tree.replaceTag(oldTag, newTag);
+				history.replaceTag(oldTag, newTag);
 			} else if (option == 'b') {
 				System.out.print("\tEnter row number (1..n) => ");
 				int row;
@@ -69,19 +76,27 @@ public class DOM {
 					}
 				}
 				try {
-					tree.boldRow(row);
+					history.boldRow(row);
 				} catch (IllegalArgumentException iae) {
 					System.out.println("\tTable does not have row " + row);
 				}
 			} else if (option == 'd') {
 				System.out.print("\tEnter tag to remove => ");
-				tree.removeTag(stdin.next().trim());
+				history.removeTag(stdin.next().trim());
 			} else if (option == 'a') {
 				System.out.print("\tEnter text to tag => ");
 				String text = stdin.next().trim();
 				System.out.print("\tEnter tag => ");
 				String tag = stdin.next().trim();
-				tree.addTag(text, tag);
+				history.addTag(text, tag);
+			} else if (option == 'u') {
+				if (!history.undo()) {
+					System.out.println("\tNothing to undo");
+				}
+			} else if (option == 'e') {
+				if (!history.redo()) {
+					System.out.println("\tNothing to redo");
+				}
 			}
 		}
 	}
@@ -0,0 +1,256 @@
+package structures;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * Tokenizes an input HTML file (one tag or line of text per line) in fixed-size chunks on a
+ * pool of threads, and hands the tokens back in file order to a single consumer.
+ *
+ * A line belongs to the chunk in which its first byte lies, so chunks can be read and
+ * tokenized independently. At most two chunks per thread are in flight at any time.
+ *
+ */
+public class ChunkedTokenizer {
+
+	/**
+	 * Token kinds: line of text, start tag, end tag.
+	 */
+	public static final byte TEXT=0, START=1, END=2;
+
+	/**
+	 * Default chunk size, in bytes.
+	 */
+	public static final int CHUNK_SIZE = 8<<20;
+
+	/**
+	 * Tokens of one chunk, in file order.
+	 */
+	private static class Chunk {
+		byte[] kinds = new byte[1024];
+		String[] values = new String[1024];
+		int size = 0;
+
+		void add(byte kind, String value) {
+			if (size == kinds.length) {
+				kinds = Arrays.copyOf(kinds, size*2);
+				values = Arrays.copyOf(values, size*2);
+			}
+			kinds[size] = kind;
+			values[size] = value;
+			size++;
+		}
+	}
+
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final long length;
+	private final int chunkSize;
+	private final ExecutorService pool;
+	private final ArrayDeque<Future<Chunk>> pending;
+	private final int maxPending;
+
+	/**
+	 * Start of the next chunk to be submitted.
+	 */
+	private long nextChunk;
+
+	/**
+	 * Chunk being consumed, and position of the current token in it.
+	 */
+	private Chunk current;
+	private int pos;
+
+	/**
+	 * Opens a file for tokenizing with the default chunk size.
+	 *
+	 * @param file Input file
+	 * @param threads Number of tokenizer threads
+	 * @throws IOException If the file cannot be opened
+	 */
+	public ChunkedTokenizer(File file, int threads)
+	throws IOException {
+		this(file, threads, CHUNK_SIZE);
+	}
+
+	/**
+	 * Opens a file for tokenizing.
+	 *
+	 * @param file Input file
+	 * @param threads Number of tokenizer threads
+	 * @param chunkSize Chunk size in bytes
+	 * @throws IOException If the file cannot be opened
+	 */
+	public ChunkedTokenizer(File file, int threads, int chunkSize)
+	throws IOException {
+		if (threads < 1 || chunkSize < 1) {
+			throw new IllegalArgumentException("threads and chunk size must be positive");
+		}
+		raf = new RandomAccessFile(file, "r");
+		channel = raf.getChannel();
+		length = channel.size();
+		this.chunkSize = chunkSize;
+		pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "html-tokenizer");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		pending = new ArrayDeque<Future<Chunk>>();
+		maxPending = 2*threads;
+		nextChunk = 0;
+		while (pending.size() < maxPending && submit());
+		current = null;
+		pos = 0;
+	}
+
+	/**
+	 * Advances to the next token.
+	 *
+	 * @return True if there is a token, false at end of file
+	 * @throws IOException If reading the file fails
+	 */
+	public boolean next()
+	throws IOException {
+		if (current != null && ++pos < current.size) {
+			return true;
+		}
+		while (!pending.isEmpty()) {
+			Future<Chunk> f = pending.removeFirst();
+			submit();
+			try {
+				current = f.get();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IOException("interrupted while tokenizing", e);
+			} catch (ExecutionException e) {
+				if (e.getCause() instanceof IOException) {
+					throw (IOException)e.getCause();
+				}
+				throw new IOException(e.getCause());
+			}
+			pos = 0;
+			if (current.size > 0) {
+				return true;
+			}
+		}
+		current = null;
+		return false;
+	}
+
+	/**
+	 * Returns the kind of the current token: TEXT, START or END.
+	 *
+	 * @return Token kind
+	 */
+	public byte kind() {
+		return current.kinds[pos];
+	}
+
+	/**
+	 * Returns the current token: the line for text, the tag name without brackets for tags.
+	 *
+	 * @return Token value
+	 */
+	public String value() {
+		return current.values[pos];
+	}
+
+	/**
+	 * Stops the tokenizer threads and closes the file.
+	 *
+	 * @throws IOException If closing the file fails
+	 */
+	public void close()
+	throws IOException {
+		pool.shutdownNow();
+		raf.close();
+	}
+
+	private boolean submit() {
+		if (nextChunk >= length) {
+			return false;
+		}
+		final long from = nextChunk;
+		final long to = Math.min(length, from + chunkSize);
+		nextChunk = to;
+		pending.addLast(pool.submit(new Callable<Chunk>() {
+			public Chunk call() throws IOException {
+				return tokenize(from, to);
+			}
+		}));
+		return true;
+	}
+
+	/*
+	 * Tokenizes all lines whose first byte is in [from,to).
+	 */
+	private Chunk tokenize(long from, long to)
+	throws IOException {
+		long lo = from == 0 ? 0 : from-1; // one byte back, to tell if a line starts at from
+		byte[] buf = read(lo, to-lo);
+		int p = 0;
+		if (from > 0) {
+			p = indexOf(buf, (byte)'\n', 0);
+			p = p < 0 ? buf.length : p+1;
+		}
+		int limit = buf.length; // lines must start before to
+		Chunk chunk = new Chunk();
+		while (p < limit) {
+			int nl = indexOf(buf, (byte)'\n', p);
+			while (nl < 0 && lo + buf.length < length) { // last line runs into the next chunk
+				int old = buf.length;
+				byte[] more = read(lo + old, Math.min(64<<10, length - lo - old));
+				buf = Arrays.copyOf(buf, old + more.length);
+				System.arraycopy(more, 0, buf, old, more.length);
+				nl = indexOf(buf, (byte)'\n', old);
+			}
+			int end = nl < 0 ? buf.length : nl;
+			int len = end > p && buf[end-1] == '\r' ? end-1-p : end-p;
+			if (len > 1 && buf[p] == '<') {
+				if (buf[p+1] == '/') {
+					chunk.add(END, new String(buf, p+2, Math.max(0, len-3), StandardCharsets.UTF_8));
+				} else {
+					chunk.add(START, new String(buf, p+1, len-2, StandardCharsets.UTF_8));
+				}
+			} else {
+				chunk.add(TEXT, new String(buf, p, len, StandardCharsets.UTF_8));
+			}
+			p = end+1;
+		}
+		return chunk;
+	}
+
+	private byte[] read(long position, long count)
+	throws IOException {
+		ByteBuffer bb = ByteBuffer.allocate((int)count);
+		while (bb.hasRemaining()) {
+			if (channel.read(bb, position + bb.position()) < 0) {
+				break;
+			}
+		}
+		return bb.array();
+	}
+
+	private static int indexOf(byte[] buf, byte b, int from) {
+		for (int i=from; i < buf.length; i++) {
+			if (buf[i] == b) {
+				return i;
+			}
+		}
+		return -1;
+	}
+}
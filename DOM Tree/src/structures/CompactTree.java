@@ -0,0 +1,462 @@
+package structures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Scanner;
+import java.util.StringTokenizer;
+
+/**
+ * An HTML DOM tree stored in parallel int arrays instead of TagNode objects. Node n is row n of
+ * the arrays: its tag id, first child, sibling and text offset. Tag names are interned in a
+ * symbol table, and all text lines are stored one after the other in a single char arena, each
+ * followed by a new line. A large document takes a few ints per node plus its text, and
+ * traversals run over contiguous arrays.
+ *
+ * The operations give the same results as the corresponding ones in Tree.
+ *
+ */
+public class CompactTree {
+
+	/**
+	 * No node
+	 */
+	static final int NIL = -1;
+
+	/**
+	 * Tag id of a text node, and of a row no longer in the tree
+	 */
+	static final int TEXT = -1, DEAD = -2;
+
+	/**
+	 * Tag id (symbol) of each node, TEXT or DEAD
+	 */
+	int[] tag;
+
+	/**
+	 * First child and sibling of each node, NIL if none
+	 */
+	int[] firstChild, sibling;
+
+	/**
+	 * Offset of each text node's text in the char arena, NIL for tag nodes
+	 */
+	int[] text;
+
+	/**
+	 * Number of rows in use
+	 */
+	int size;
+
+	/**
+	 * Root node
+	 */
+	int root = NIL;
+
+	/**
+	 * Text of all text nodes, each line followed by '\n'
+	 */
+	char[] chars;
+
+	/**
+	 * Number of chars in use in the arena
+	 */
+	int charsUsed;
+
+	/**
+	 * Symbol table: tag name -> tag id, and tag id -> tag name
+	 */
+	HashMap<String,Integer> symbols;
+	ArrayList<String> names;
+
+	/**
+	 * Scanner used to read input HTML file when building the tree
+	 */
+	Scanner sc;
+
+	/**
+	 * Initializes this tree object with scanner for input HTML file
+	 *
+	 * @param sc Scanner for input HTML file
+	 */
+	public CompactTree(Scanner sc) {
+		this.sc = sc;
+		tag = new int[1024];
+		firstChild = new int[1024];
+		sibling = new int[1024];
+		text = new int[1024];
+		chars = new char[16384];
+		symbols = new HashMap<String,Integer>();
+		names = new ArrayList<String>();
+	}
+
+	/**
+	 * Builds the DOM tree from input HTML file, through scanner passed in to the constructor.
+	 */
+	public void build() {
+		size = 0;
+		charsUsed = 0;
+		root = NIL;
+		int[] open = new int[64]; // open elements
+		int[] last = new int[64]; // last child of each open element, NIL if none yet
+		int depth = 0;
+		int lastTop = NIL; // last node at the top level, which follows the root as a sibling
+		while (sc.hasNextLine()) {
+			String line = sc.nextLine();
+			if (line.length() > 1 && line.charAt(0) == '<' && line.charAt(1) == '/') {
+				depth--;
+				continue;
+			}
+			boolean startTag = line.length() > 1 && line.charAt(0) == '<';
+			int node = startTag ? newTag(symbol(line.substring(1, line.length()-1)), NIL, NIL) : newText(line);
+			if (depth == 0) {
+				if (root == NIL) {
+					root = node;
+				} else {
+					sibling[lastTop] = node;
+				}
+				lastTop = node;
+			} else {
+				if (last[depth-1] == NIL) {
+					firstChild[open[depth-1]] = node;
+				} else {
+					sibling[last[depth-1]] = node;
+				}
+				last[depth-1] = node;
+			}
+			if (startTag) {
+				if (depth == open.length) {
+					open = Arrays.copyOf(open, depth*2);
+					last = Arrays.copyOf(last, depth*2);
+				}
+				open[depth] = node;
+				last[depth] = NIL;
+				depth++;
+			}
+		}
+	}
+
+	/**
+	 * Replaces all occurrences of an old tag in the DOM tree with a new tag
+	 *
+	 * @param oldTag Old tag
+	 * @param newTag Replacement tag
+	 */
+	public void replaceTag(String oldTag, String newTag) {
+		if (oldTag == null || newTag == null) {
+			return;
+		}
+		Integer old = symbols.get(oldTag);
+		int replacement = symbol(newTag);
+		for (int n=0; n < size; n++) { // rows not in the tree are DEAD, so a scan sees only tree nodes
+			if ((old != null && tag[n] == old) || (tag[n] == TEXT && textEquals(n, oldTag))) {
+				tag[n] = replacement;
+				text[n] = NIL;
+			}
+		}
+	}
+
+	/**
+	 * Boldfaces every column of the given row of the table in the DOM tree. The boldface (b)
+	 * tag appears directly under the td tag of every column of this row.
+	 *
+	 * @param row Row to bold, first row is numbered 1 (not 0).
+	 * @throws IllegalArgumentException If a table does not have the row
+	 */
+	public void boldRow(int row) {
+		Integer table = symbols.get("table");
+		if (row < 1 || table == null) {
+			return;
+		}
+		int b = symbol("b");
+		int n0 = size;
+		for (int n=0; n < n0; n++) {
+			if (tag[n] != table) {
+				continue;
+			}
+			int tr = firstChild[n];
+			if (tr == NIL) { // an empty table prints as the text "table", and has no rows
+				continue;
+			}
+			for (int i=1; i != row && tr != NIL; i++) {
+				tr = sibling[tr];
+			}
+			if (tr == NIL) {
+				throw new IllegalArgumentException("table does not have row " + row);
+			}
+			for (int td=firstChild[tr]; td != NIL; td=sibling[td]) {
+				if (tag[td] == TEXT) { // as in Tree.boldRow, a line of text becomes a tag holding the b
+					tag[td] = symbol(new String(chars, text[td], textLength(td)));
+					text[td] = NIL;
+				}
+				int bold = newTag(b, firstChild[td], NIL); // may grow the arrays, so not stored into firstChild directly
+				firstChild[td] = bold;
+			}
+		}
+	}
+
+	/**
+	 * Remove all occurrences of a tag from the DOM tree. If the tag is p, em, or b, all occurrences of the tag
+	 * are removed. If the tag is ol or ul, then All occurrences of such a tag are removed from the tree, and,
+	 * in addition, all the li tags immediately under the removed tag are converted to p tags.
+	 *
+	 * @param tag Tag to be removed, can be p, em, b, ol, or ul
+	 */
+	public void removeTag(String tag) {
+		boolean list = tag.equals("ol") || tag.equals("ul");
+		if (!list && !tag.equals("p") && !tag.equals("em") && !tag.equals("b")) {
+			return;
+		}
+		Integer t = symbols.get(tag);
+		if (t == null || root == NIL) {
+			return;
+		}
+		int p = symbol("p");
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = root;
+		while (top > 0) {
+			int n = stack[--top];
+			if (list) {
+				if (this.tag[n] == t && firstChild[n] != NIL) {
+					for (int c=firstChild[n]; c != NIL; c=sibling[c]) {
+						this.tag[c] = p;
+						text[c] = NIL;
+					}
+					liftFirstChild(n);
+				}
+			} else {
+				while (this.tag[n] == t && firstChild[n] != NIL) { // again if the first child had the same tag
+					liftFirstChild(n);
+				}
+			}
+			if (top+2 > stack.length) {
+				stack = Arrays.copyOf(stack, stack.length*2);
+			}
+			if (sibling[n] != NIL) {
+				stack[top++] = sibling[n];
+			}
+			if (firstChild[n] != NIL) {
+				stack[top++] = firstChild[n];
+			}
+		}
+	}
+
+	/**
+	 * Adds a tag around all occurrences of a word in the DOM tree.
+	 *
+	 * @param word Word around which tag is to be added
+	 * @param tag Tag to be added
+	 */
+	public void addTag(String word, String tag) {
+		if (root == NIL || !(tag.equals("em") || tag.equals("b"))) {
+			return;
+		}
+		word = word.toLowerCase();
+		int t = symbol(tag);
+		int[] stack = new int[64];
+		int top = 0;
+		stack[top++] = root;
+		while (top > 0) {
+			int n = stack[--top];
+			int oldSibling = sibling[n];
+			if (top+2 > stack.length) {
+				stack = Arrays.copyOf(stack, stack.length*2);
+			}
+			if (oldSibling != NIL) {
+				stack[top++] = oldSibling;
+			}
+			if (firstChild[n] != NIL) {
+				stack[top++] = firstChild[n];
+				continue;
+			}
+			if (this.tag[n] >= 0) { // an element with no children prints as its name, and is text to Tree
+				text[n] = appendText(names.get(this.tag[n]));
+				this.tag[n] = TEXT;
+			}
+			sibling[n] = NIL; // split the text, then re-link the old siblings after the pieces
+			for (int piece=n; piece != NIL; ) {
+				piece = tagText(piece, word, t);
+			}
+			int last = n;
+			while (sibling[last] != NIL) {
+				last = sibling[last];
+			}
+			sibling[last] = oldSibling;
+		}
+	}
+
+	/**
+	 * Gets the HTML represented by this DOM tree, in the same format as Tree.getHTML.
+	 *
+	 * @return HTML string, including new lines.
+	 */
+	public String getHTML() {
+		StringBuilder sb = new StringBuilder(charsUsed + size*8);
+		int[] open = new int[64];
+		int top = 0;
+		int n = root;
+		while (n != NIL || top > 0) {
+			if (n == NIL) {
+				n = open[--top];
+				sb.append("</").append(names.get(tag[n])).append(">\n");
+				n = sibling[n];
+			} else if (firstChild[n] == NIL) {
+				if (tag[n] == TEXT) {
+					sb.append(chars, text[n], textLength(n)+1);
+				} else {
+					sb.append(names.get(tag[n])).append('\n');
+				}
+				n = sibling[n];
+			} else {
+				sb.append('<').append(names.get(tag[n])).append(">\n");
+				if (top == open.length) {
+					open = Arrays.copyOf(open, top*2);
+				}
+				open[top++] = n;
+				n = firstChild[n];
+			}
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Returns the number of nodes in the tree.
+	 *
+	 * @return Number of nodes
+	 */
+	public int nodeCount() {
+		int count = 0;
+		for (int n=0; n < size; n++) {
+			if (tag[n] != DEAD) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/*
+	 * Adds a tag around the first occurrence of a word in a text node with no sibling, as
+	 * Tree.tagText does. Returns the new text node after the word, NIL if none.
+	 */
+	private int tagText(int n, String word, int t) {
+		String line = new String(chars, text[n], textLength(n));
+		if (!line.toLowerCase().contains(word)) {
+			return NIL;
+		}
+		StringTokenizer str = new StringTokenizer(line, " ", true);
+		String before = "";
+		while (str.hasMoreTokens()) {
+			String token = str.nextToken();
+			if (!TagFilters.isTarget(token, word, !str.hasMoreTokens())) {
+				before += token;
+				continue;
+			}
+			String after = "";
+			while (str.hasMoreTokens()) {
+				after += str.nextToken();
+			}
+			int tokenNode = newText(token);
+			int afterNode = after.equals("") ? NIL : newText(after);
+			if (before.equals("") || before.equals(" ")) {
+				tag[n] = t;
+				text[n] = NIL;
+				firstChild[n] = tokenNode;
+				sibling[n] = afterNode;
+			} else {
+				text[n] = appendText(before);
+				int adding = newTag(t, tokenNode, afterNode);
+				sibling[n] = adding;
+			}
+			return afterNode;
+		}
+		return NIL;
+	}
+
+	/*
+	 * Removes tag node n by moving its first child's row into it, and its other children in
+	 * between it and its old siblings. The first child's old row is marked DEAD.
+	 */
+	private void liftFirstChild(int n) {
+		int temp = sibling[n];
+		int fc = firstChild[n];
+		tag[n] = tag[fc];
+		text[n] = text[fc];
+		sibling[n] = sibling[fc];
+		firstChild[n] = firstChild[fc];
+		tag[fc] = DEAD;
+		int ptr = n;
+		while (sibling[ptr] != NIL) {
+			ptr = sibling[ptr];
+		}
+		sibling[ptr] = temp;
+	}
+
+	private int symbol(String name) {
+		Integer id = symbols.get(name);
+		if (id == null) {
+			id = names.size();
+			names.add(name);
+			symbols.put(name, id);
+		}
+		return id;
+	}
+
+	private int newRow() {
+		if (size == tag.length) {
+			int cap = size*2;
+			tag = Arrays.copyOf(tag, cap);
+			firstChild = Arrays.copyOf(firstChild, cap);
+			sibling = Arrays.copyOf(sibling, cap);
+			text = Arrays.copyOf(text, cap);
+		}
+		return size++;
+	}
+
+	private int newTag(int t, int fc, int sib) {
+		int n = newRow();
+		tag[n] = t;
+		firstChild[n] = fc;
+		sibling[n] = sib;
+		text[n] = NIL;
+		return n;
+	}
+
+	private int newText(String s) {
+		int n = newRow();
+		tag[n] = TEXT;
+		firstChild[n] = NIL;
+		sibling[n] = NIL;
+		text[n] = appendText(s);
+		return n;
+	}
+
+	private int appendText(String s) {
+		if (charsUsed + s.length() + 1 > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(chars.length*2, charsUsed + s.length() + 1));
+		}
+		int offset = charsUsed;
+		s.getChars(0, s.length(), chars, offset);
+		chars[offset + s.length()] = '\n';
+		charsUsed += s.length() + 1;
+		return offset;
+	}
+
+	private int textLength(int n) {
+		int i = text[n];
+		while (chars[i] != '\n') {
+			i++;
+		}
+		return i - text[n];
+	}
+
+	private boolean textEquals(int n, String s) {
+		int off = text[n];
+		for (int i=0; i < s.length(); i++) {
+			if (chars[off+i] != s.charAt(i)) {
+				return false;
+			}
+		}
+		return chars[off + s.length()] == '\n';
+	}
+}
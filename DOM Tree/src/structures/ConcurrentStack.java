@@ -0,0 +1,142 @@
+package structures;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A lock-free stack for any number of threads pushing and popping at once (a Treiber stack):
+ * the top is a single atomic reference to a linked node, changed by compare-and-set.
+ *
+ * Under contention, a push or pop whose compare-and-set fails backs off into an elimination
+ * array instead of retrying at once. A push leaves its node in a random slot for a short
+ * while; a pop that fails looks at a random slot and, if it finds a node there, takes it.
+ * A push and a pop that meet this way cancel out without touching the top at all, so the
+ * more threads there are, the more operations complete off the contended reference.
+ *
+ * Since another thread can empty the stack between isEmpty and pop, pop and peek return null
+ * on an empty stack instead of throwing; null items are not allowed.
+ *
+ * @param <T> Parameter type for items in the stack.
+ */
+public class ConcurrentStack<T> {
+
+	private static class Node<T> {
+		final T item;
+		Node<T> next;
+
+		Node(T item) {
+			this.item = item;
+		}
+	}
+
+	/**
+	 * Number of times a push in the elimination array checks for a taker before giving up
+	 */
+	private static final int SPINS = 64;
+
+	private final AtomicReference<Node<T>> top;
+
+	/**
+	 * Elimination array: each slot is empty (null) or holds the node of a waiting push
+	 */
+	private final AtomicReferenceArray<Node<T>> slots;
+
+	/**
+	 * Initializes stack to empty, with an elimination slot per processor.
+	 */
+	public ConcurrentStack() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Initializes stack to empty.
+	 * 
+	 * @param slots Size of the elimination array, at least 1
+	 */
+	public ConcurrentStack(int slots) {
+		top = new AtomicReference<Node<T>>();
+		this.slots = new AtomicReferenceArray<Node<T>>(Math.max(1, slots));
+	}
+
+	/**
+	 * Pushes a new item on top of stack.
+	 * 
+	 * @param item Item to push.
+	 * @throws NullPointerException If item is null.
+	 */
+	public void push(T item) {
+		if (item == null) {
+			throw new NullPointerException("can't push null");
+		}
+		Node<T> node = new Node<T>(item);
+		while (true) {
+			Node<T> old = top.get();
+			node.next = old;
+			if (top.compareAndSet(old, node)) {
+				return;
+			}
+			if (eliminate(node)) {
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Pops item at top of stack and returns it.
+	 * 
+	 * @return Popped item, or null if stack is empty.
+	 */
+	public T pop() {
+		while (true) {
+			Node<T> old = top.get();
+			if (old == null) {
+				return null;
+			}
+			if (top.compareAndSet(old, old.next)) {
+				return old.item;
+			}
+			int i = ThreadLocalRandom.current().nextInt(slots.length());
+			Node<T> waiting = slots.get(i);
+			if (waiting != null && slots.compareAndSet(i, waiting, null)) {
+				return waiting.item;
+			}
+		}
+	}
+
+	/**
+	 * Returns item on top of stack, without popping it.
+	 * 
+	 * @return Item at top of stack, or null if stack is empty.
+	 */
+	public T peek() {
+		Node<T> t = top.get();
+		return t == null ? null : t.item;
+	}
+
+	/**
+	 * Tells if stack is empty. Pushes going on in the elimination array are not counted.
+	 * 
+	 * @return True if stack is empty, false if not.
+	 */
+	public boolean isEmpty() {
+		return top.get() == null;
+	}
+
+	/*
+	 * Offers a pushed node to poppers for a short while. Returns true if one took it.
+	 */
+	private boolean eliminate(Node<T> node) {
+		int i = ThreadLocalRandom.current().nextInt(slots.length());
+		if (!slots.compareAndSet(i, null, node)) {
+			return false; // slot busy, go back to the stack
+		}
+		for (int spin=0; spin < SPINS; spin++) {
+			if (slots.get(i) != node) {
+				return true;
+			}
+			Thread.onSpinWait();
+		}
+		return !slots.compareAndSet(i, node, null); // withdraw, unless taken just now
+	}
+}
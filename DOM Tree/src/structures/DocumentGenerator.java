@@ -0,0 +1,237 @@
+package structures;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+/**
+ * Writes synthetic HTML documents of any size in the input format of Tree.build (one tag or
+ * line of text per line), made of the same pieces as ex1.html to ex3.html:
+ *
+ * <pre>
+ * tables   wide tables of cells like R1C2, some in em, between short paragraphs (ex1)
+ * lists    ol and ul lists nested hundreds of levels deep (ex3)
+ * text     long paragraphs of plain text with em and b words here and there (ex1)
+ * mixed    all three in turn
+ * </pre>
+ *
+ * Every shape has em and b tags, at least one table with at least one row, and the word
+ * "the"; tables and text also have p tags, lists have ol and ul tags, and mixed has all of
+ * them from 64K up. The same shape, size and seed always give the same document.
+ *
+ * Usage: java structures.DocumentGenerator shape size outputFile [seed]
+ *
+ * where size is in bytes, with an optional K, M or G suffix.
+ *
+ */
+public class DocumentGenerator {
+
+	/**
+	 * Shapes, as named on the command line
+	 */
+	public static final String[] SHAPES = {"tables", "lists", "text", "mixed"};
+
+	private static final int COLUMNS = 32, ROWS = 64, DEPTH = 256, LINES = 200;
+
+	private static final String[] WORDS = {
+		"the", "tree", "of", "a", "node", "and", "its", "first", "child", "sibling", "table",
+		"row", "list", "item", "paragraph", "text", "is", "to", "in", "The"
+	};
+
+	private final Writer out;
+	private final Random random;
+	private long written;
+
+	private DocumentGenerator(Writer out, long seed) {
+		this.out = out;
+		random = new Random(seed);
+	}
+
+	public static void main(String[] args)
+	throws IOException {
+		if (args.length < 3) {
+			System.out.println("Usage: java structures.DocumentGenerator shape size outputFile [seed]");
+			return;
+		}
+		long seed = args.length > 3 ? Long.parseLong(args[3]) : 1;
+		write(new File(args[2]), args[0], parseSize(args[1]), seed);
+	}
+
+	/**
+	 * Writes a document to a file, in UTF-8.
+	 *
+	 * @param file File to write
+	 * @param shape One of SHAPES
+	 * @param bytes Size of the document, which is exceeded by less than one block
+	 * @param seed Seed for the random choices
+	 * @throws IOException If writing fails
+	 * @throws IllegalArgumentException If the shape is unknown
+	 */
+	public static void write(File file, String shape, long bytes, long seed)
+	throws IOException {
+		Writer w = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), StandardCharsets.UTF_8), 1<<16);
+		try {
+			write(w, shape, bytes, seed);
+		} finally {
+			w.close();
+		}
+	}
+
+	/**
+	 * Writes a document. The characters written are all ASCII, so the size in bytes is the
+	 * number of characters.
+	 *
+	 * @param out Writer, which is not closed
+	 * @param shape One of SHAPES
+	 * @param bytes Size of the document, which is exceeded by less than one block
+	 * @param seed Seed for the random choices
+	 * @throws IOException If writing fails
+	 * @throws IllegalArgumentException If the shape is unknown
+	 */
+	public static void write(Writer out, String shape, long bytes, long seed)
+	throws IOException {
+		int kind = -1;
+		for (int i=0; i < SHAPES.length; i++) {
+			if (SHAPES[i].equals(shape)) {
+				kind = i;
+			}
+		}
+		if (kind < 0) {
+			throw new IllegalArgumentException("unknown shape: " + shape);
+		}
+		DocumentGenerator g = new DocumentGenerator(out, seed);
+		g.line("<html>");
+		g.line("<body>");
+		g.table(2, 2); // so boldRow always has a row, as in ex1
+		for (int block=0; g.written < bytes; block++) {
+			switch (kind == 3 ? block % 3 : kind) {
+			case 0:
+				g.paragraph(3);
+				g.table(ROWS, COLUMNS);
+				break;
+			case 1:
+				g.lists(DEPTH);
+				break;
+			default:
+				g.paragraph(LINES);
+			}
+		}
+		g.line("</body>");
+		g.line("</html>");
+		out.flush();
+	}
+
+	/**
+	 * Reads a size such as 512, 64K, 16M or 2G.
+	 *
+	 * @param size Size, with an optional K, M or G suffix
+	 * @return Size in bytes
+	 * @throws NumberFormatException If the size is malformed
+	 */
+	public static long parseSize(String size) {
+		String s = size.trim().toUpperCase();
+		int shift = 0;
+		if (s.endsWith("K")) {
+			shift = 10;
+		} else if (s.endsWith("M")) {
+			shift = 20;
+		} else if (s.endsWith("G")) {
+			shift = 30;
+		}
+		if (shift > 0) {
+			s = s.substring(0, s.length()-1);
+		}
+		return Long.parseLong(s) << shift;
+	}
+
+	private void line(String s)
+	throws IOException {
+		out.write(s);
+		out.write('\n');
+		written += s.length()+1;
+	}
+
+	/*
+	 * A line of text, with one word in em or b now and then.
+	 */
+	private void text(int words)
+	throws IOException {
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i < words; i++) {
+			String word = WORDS[random.nextInt(WORDS.length)];
+			if (random.nextInt(8) == 0) {
+				if (sb.length() > 0) {
+					line(sb.toString());
+					sb.setLength(0);
+				}
+				String tag = random.nextBoolean() ? "em" : "b";
+				line("<" + tag + ">");
+				line(word);
+				line("</" + tag + ">");
+				continue;
+			}
+			if (sb.length() > 0) {
+				sb.append(' ');
+			}
+			sb.append(word);
+		}
+		sb.append('.');
+		line(sb.toString());
+	}
+
+	private void paragraph(int lines)
+	throws IOException {
+		line("<p>");
+		for (int i=0; i < lines; i++) {
+			text(12);
+		}
+		line("</p>");
+	}
+
+	private void table(int rows, int columns)
+	throws IOException {
+		line("<table>");
+		for (int r=1; r <= rows; r++) {
+			line("<tr>");
+			for (int c=1; c <= columns; c++) {
+				line("<td>");
+				boolean em = random.nextInt(4) == 0;
+				if (em) {
+					line("<em>");
+				}
+				line("R" + r + "C" + c);
+				if (em) {
+					line("</em>");
+				}
+				line("</td>");
+			}
+			line("</tr>");
+		}
+		line("</table>");
+	}
+
+	/*
+	 * Lists nested depth levels deep, alternating ol and ul, each item with a line of text
+	 * before its sublist and a sibling item after it.
+	 */
+	private void lists(int depth)
+	throws IOException {
+		for (int d=0; d < depth; d++) {
+			line(d % 2 == 0 ? "<ol>" : "<ul>");
+			line("<li>");
+			text(6);
+		}
+		for (int d=depth-1; d >= 0; d--) {
+			line("</li>");
+			line("<li>");
+			text(4);
+			line("</li>");
+			line(d % 2 == 0 ? "</ol>" : "</ul>");
+		}
+	}
+}
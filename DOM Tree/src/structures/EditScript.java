@@ -0,0 +1,225 @@
+package structures;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Scanner;
+
+/**
+ * A list of Tree operations to be applied together by Tree.edit, in one traversal of the tree
+ * instead of one per operation. Each operation becomes a streaming filter (see TagFilters),
+ * and the filters are chained in the order the operations were added, so every operation sees
+ * the tree exactly as the operations before it left it.
+ *
+ * For example, the following replaces em by b, removes all ol lists and bolds the second row
+ * of every table, in a single pass:
+ *
+ * <pre>
+ * tree.edit(new EditScript().replaceTag("em", "b").removeTag("ol").boldRow(2));
+ * </pre>
+ *
+ */
+public class EditScript {
+
+	/**
+	 * Operation kinds
+	 */
+	private static final int REPLACE=0, REMOVE=1, BOLD=2, ADD=3;
+
+	/**
+	 * Queued operations, in order: kind, and up to two arguments
+	 */
+	private ArrayList<Integer> kinds;
+	private ArrayList<String[]> args;
+
+	/**
+	 * Initializes an empty script.
+	 */
+	public EditScript() {
+		kinds = new ArrayList<Integer>();
+		args = new ArrayList<String[]>();
+	}
+
+	/**
+	 * Queues Tree.replaceTag(oldTag, newTag).
+	 *
+	 * @param oldTag Old tag
+	 * @param newTag Replacement tag
+	 * @return This script
+	 */
+	public EditScript replaceTag(String oldTag, String newTag) {
+		return add(REPLACE, oldTag, newTag);
+	}
+
+	/**
+	 * Queues Tree.removeTag(tag).
+	 *
+	 * @param tag Tag to be removed, can be p, em, b, ol, or ul
+	 * @return This script
+	 */
+	public EditScript removeTag(String tag) {
+		return add(REMOVE, tag, null);
+	}
+
+	/**
+	 * Queues Tree.boldRow(row).
+	 *
+	 * @param row Row to bold, first row is numbered 1 (not 0).
+	 * @return This script
+	 */
+	public EditScript boldRow(int row) {
+		return add(BOLD, Integer.toString(row), null);
+	}
+
+	/**
+	 * Queues Tree.addTag(word, tag).
+	 *
+	 * @param word Word around which tag is to be added
+	 * @param tag Tag to be added
+	 * @return This script
+	 */
+	public EditScript addTag(String word, String tag) {
+		return add(ADD, word, tag);
+	}
+
+	/**
+	 * Reads a script from text, one operation per line:
+	 *
+	 * <pre>
+	 * replace oldTag newTag
+	 * remove tag
+	 * bold row
+	 * add word tag
+	 * </pre>
+	 *
+	 * Blank lines and lines starting with # are skipped.
+	 *
+	 * @param sc Scanner for the script
+	 * @return Script
+	 * @throws IllegalArgumentException If a line is not one of the above
+	 */
+	public static EditScript parse(Scanner sc) {
+		EditScript script = new EditScript();
+		int line = 0;
+		while (sc.hasNextLine()) {
+			line++;
+			String text = sc.nextLine().trim();
+			if (text.length() == 0 || text.startsWith("#")) {
+				continue;
+			}
+			String[] w = text.split("\\s+");
+			try {
+				if (w[0].equals("replace") && w.length == 3) {
+					script.replaceTag(w[1], w[2]);
+				} else if (w[0].equals("remove") && w.length == 2) {
+					script.removeTag(w[1]);
+				} else if (w[0].equals("bold") && w.length == 2) {
+					script.boldRow(Integer.parseInt(w[1]));
+				} else if (w[0].equals("add") && w.length == 3) {
+					script.addTag(w[1], w[2]);
+				} else {
+					throw new IllegalArgumentException();
+				}
+			} catch (IllegalArgumentException e) { // including a bad row number
+				throw new IllegalArgumentException("bad edit script line " + line + ": " + text);
+			}
+		}
+		return script;
+	}
+
+	/**
+	 * Returns the number of queued operations.
+	 *
+	 * @return Number of operations
+	 */
+	public int size() {
+		return kinds.size();
+	}
+
+	/**
+	 * Removes all queued operations.
+	 */
+	public void clear() {
+		kinds.clear();
+		args.clear();
+	}
+
+	/**
+	 * Chains the filters for the queued operations, first operation first, in front of a handler.
+	 * Consecutive replaceTag operations are composed into one filter, and a run of consecutive
+	 * addTag operations is skipped by all text that contains none of its words.
+	 *
+	 * @param last Handler that receives the edited events
+	 * @return First handler of the chain
+	 */
+	HTMLHandler chain(HTMLHandler last) {
+		HTMLHandler h = last;
+		int i = kinds.size()-1;
+		while (i >= 0) {
+			int kind = kinds.get(i);
+			int j = i; // operations j..i are one run
+			while (j > 0 && kinds.get(j-1) == kind && (kind == REPLACE || kind == ADD)) {
+				j--;
+			}
+			switch (kind) {
+			case REPLACE:
+				TagFilters.ReplaceTags replace = new TagFilters.ReplaceTags(h);
+				for (int k=j; k <= i; k++) {
+					replace.add(args.get(k)[0], args.get(k)[1]);
+				}
+				h = replace;
+				break;
+			case REMOVE:
+				h = new TagFilters.RemoveTag(args.get(i)[0], h);
+				break;
+			case BOLD:
+				h = new TagFilters.BoldRow(Integer.parseInt(args.get(i)[0]), h);
+				break;
+			default:
+				HTMLHandler run = h;
+				HashMap<String,String> words = new HashMap<String,String>();
+				for (int k=i; k >= j; k--) {
+					run = new TagFilters.AddTag(args.get(k)[0], args.get(k)[1], run);
+					words.put(args.get(k)[0], args.get(k)[1]);
+				}
+				h = i == j ? run : new SkipUnmatched(new WordMatcher(words), run, h);
+			}
+			i = j-1;
+		}
+		return h;
+	}
+
+	/**
+	 * Sends text that contains one of the words of a run of AddTag filters through the run,
+	 * and everything else straight past it, since AddTag passes such events on unchanged.
+	 */
+	private static class SkipUnmatched extends TagFilters.Filter {
+
+		private WordMatcher words;
+		private HTMLHandler run;
+
+		SkipUnmatched(WordMatcher words, HTMLHandler run, HTMLHandler next) {
+			super(next);
+			this.words = words;
+			this.run = run;
+		}
+
+		public void text(String text) throws IOException {
+			if (words.find(text.toLowerCase())) {
+				run.text(text);
+			} else {
+				next.text(text);
+			}
+		}
+
+		public void end() throws IOException {
+			run.end();
+		}
+	}
+
+	private EditScript add(int kind, String a, String b) {
+		kinds.add(kind);
+		args.add(new String[] {a, b});
+		return this;
+	}
+}
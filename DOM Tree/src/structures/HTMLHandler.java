@@ -0,0 +1,42 @@
+package structures;
+
+import java.io.IOException;
+
+/**
+ * Receives the events of a streamed HTML file, in input order. The input has the same
+ * format that Tree.build reads: one tag or one line of text per line.
+ * 
+ */
+public interface HTMLHandler {
+	
+	/**
+	 * Called for a start tag.
+	 * 
+	 * @param tag Tag name, without '<' and '>'
+	 * @throws IOException If the handler fails to write its output
+	 */
+	void startTag(String tag) throws IOException;
+	
+	/**
+	 * Called for an end tag.
+	 * 
+	 * @param tag Tag name, without '</' and '>'
+	 * @throws IOException If the handler fails to write its output
+	 */
+	void endTag(String tag) throws IOException;
+	
+	/**
+	 * Called for a line of text.
+	 * 
+	 * @param text Text
+	 * @throws IOException If the handler fails to write its output
+	 */
+	void text(String text) throws IOException;
+	
+	/**
+	 * Called once after the last event.
+	 * 
+	 * @throws IOException If the handler fails to write its output
+	 */
+	void end() throws IOException;
+}
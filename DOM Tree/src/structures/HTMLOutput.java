@@ -0,0 +1,135 @@
+package structures;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Fixed-size output buffer used by Tree.writeHTML. Characters are collected in a char buffer
+ * and handed to a Writer, or encoded as UTF-8 through a byte buffer into a channel, whenever
+ * the buffer fills up. Memory use is bounded by the buffer size, whatever the output size.
+ *
+ */
+class HTMLOutput implements Appendable, Flushable {
+
+	/**
+	 * Size of the char buffer, and of the byte buffer for channels
+	 */
+	static final int BUFFER_SIZE = 8192;
+
+	private final Writer writer;
+	private final WritableByteChannel channel;
+	private final CharsetEncoder encoder;
+	private final CharBuffer chars;
+	private final ByteBuffer bytes;
+
+	/**
+	 * Initializes this output to write characters to a Writer.
+	 *
+	 * @param writer Writer
+	 */
+	HTMLOutput(Writer writer) {
+		this.writer = writer;
+		channel = null;
+		encoder = null;
+		chars = CharBuffer.allocate(BUFFER_SIZE);
+		bytes = null;
+	}
+
+	/**
+	 * Initializes this output to write UTF-8 bytes to a channel.
+	 *
+	 * @param channel Channel
+	 */
+	HTMLOutput(WritableByteChannel channel) {
+		writer = null;
+		this.channel = channel;
+		encoder = StandardCharsets.UTF_8.newEncoder();
+		chars = CharBuffer.allocate(BUFFER_SIZE);
+		bytes = ByteBuffer.allocate(BUFFER_SIZE);
+	}
+
+	public Appendable append(CharSequence csq)
+	throws IOException {
+		return append(csq, 0, csq.length());
+	}
+
+	public Appendable append(CharSequence csq, int start, int end)
+	throws IOException {
+		String s = csq.toString();
+		while (start < end) {
+			if (!chars.hasRemaining()) {
+				drain(false);
+			}
+			int n = Math.min(end-start, chars.remaining());
+			chars.put(s, start, start+n);
+			start += n;
+		}
+		return this;
+	}
+
+	public Appendable append(char c)
+	throws IOException {
+		if (!chars.hasRemaining()) {
+			drain(false);
+		}
+		chars.put(c);
+		return this;
+	}
+
+	/**
+	 * Writes out everything buffered, ending the encoded output if writing to a channel.
+	 * Should be called once, after the last append.
+	 *
+	 * @throws IOException If writing fails
+	 */
+	public void flush()
+	throws IOException {
+		drain(true);
+		if (writer != null) {
+			writer.flush();
+		} else {
+			while (encoder.flush(bytes).isOverflow()) {
+				writeBytes();
+			}
+			writeBytes();
+			encoder.reset();
+		}
+	}
+
+	private void drain(boolean endOfInput)
+	throws IOException {
+		chars.flip();
+		if (writer != null) {
+			writer.write(chars.array(), chars.arrayOffset()+chars.position(), chars.remaining());
+			chars.clear();
+			return;
+		}
+		while (true) {
+			CoderResult cr = encoder.encode(chars, bytes, endOfInput);
+			if (cr.isOverflow()) {
+				writeBytes();
+			} else if (cr.isError()) {
+				cr.throwException();
+			} else {
+				break;
+			}
+		}
+		chars.compact(); // keeps a high surrogate whose pair is still to come
+	}
+
+	private void writeBytes()
+	throws IOException {
+		bytes.flip();
+		while (bytes.hasRemaining()) {
+			channel.write(bytes);
+		}
+		bytes.clear();
+	}
+}
@@ -0,0 +1,65 @@
+package structures;
+
+import java.io.IOException;
+import java.util.Scanner;
+
+/**
+ * Streams an HTML file as start tag, end tag and text events, without building a Tree. Only
+ * the current line is held in memory, so files far larger than the heap can be processed.
+ * 
+ * For example, the following writes the input with all em tags replaced by b, all ol lists
+ * removed and every "table" tagged with b, in the same format as Tree.getHTML:
+ * 
+ * <pre>
+ * HTMLStream.parse(sc, new TagFilters.ReplaceTag("em", "b",
+ *                      new TagFilters.RemoveTag("ol",
+ *                      new TagFilters.AddTag("table", "b", new HTMLWriter(out)))));
+ * </pre>
+ * 
+ */
+public class HTMLStream {
+	
+	/**
+	 * Reads all lines from a scanner and sends them as events to a handler, then calls
+	 * the handler's end method. An element with no children, such as &lt;ol&gt;&lt;/ol&gt;,
+	 * is sent as a line of text holding its tag name, since that is what Tree.build makes of
+	 * it: the filters then treat it as the Tree operations treat that text node. To do so,
+	 * each start tag is held back until the next line.
+	 * 
+	 * @param sc Scanner for input HTML file
+	 * @param handler Handler for the events
+	 * @throws IOException If the handler fails to write its output
+	 */
+	public static void parse(Scanner sc, HTMLHandler handler) 
+	throws IOException {
+		String pending = null; // start tag not yet sent
+		while (sc.hasNextLine()) {
+			String line = sc.nextLine();
+			if (line.length() > 1 && line.charAt(0) == '<') {
+				if (line.charAt(1) == '/') {
+					if (pending != null) { // no children
+						handler.text(pending);
+						pending = null;
+					} else {
+						handler.endTag(line.substring(2, line.length()-1));
+					}
+				} else {
+					if (pending != null) {
+						handler.startTag(pending);
+					}
+					pending = line.substring(1, line.length()-1);
+				}
+			} else {
+				if (pending != null) {
+					handler.startTag(pending);
+					pending = null;
+				}
+				handler.text(line);
+			}
+		}
+		if (pending != null) { // never closed, and no children: build leaves it empty too
+			handler.text(pending);
+		}
+		handler.end();
+	}
+}
@@ -0,0 +1,78 @@
+package structures;
+
+import java.io.IOException;
+
+/**
+ * Writes streamed HTML events in the same format as Tree.getHTML: one tag or line of text per
+ * line. As in getHTML, an element with no children is written as a line of text holding its
+ * tag name, so one start tag is held back until the next event.
+ * 
+ */
+public class HTMLWriter implements HTMLHandler {
+	
+	/**
+	 * Output
+	 */
+	private Appendable out;
+	
+	/**
+	 * Start tag not yet written, null if none
+	 */
+	private String pending;
+	
+	/**
+	 * Initializes this writer with its output.
+	 * 
+	 * @param out Output, e.g. a StringBuilder or a java.io.Writer
+	 */
+	public HTMLWriter(Appendable out) {
+		this.out = out;
+		pending = null;
+	}
+	
+	public void startTag(String tag) 
+	throws IOException {
+		flush();
+		pending = tag;
+	}
+	
+	public void endTag(String tag) 
+	throws IOException {
+		if (pending != null) { // no children, getHTML writes the tag as text
+			line(pending);
+			pending = null;
+			return;
+		}
+		out.append("</").append(tag).append(">\n");
+	}
+	
+	public void text(String text) 
+	throws IOException {
+		flush();
+		line(text);
+	}
+	
+	public void end() 
+	throws IOException {
+		if (pending != null) {
+			line(pending);
+			pending = null;
+		}
+		if (out instanceof java.io.Flushable) {
+			((java.io.Flushable)out).flush();
+		}
+	}
+	
+	private void flush() 
+	throws IOException {
+		if (pending != null) {
+			out.append("<").append(pending).append(">\n");
+			pending = null;
+		}
+	}
+	
+	private void line(String s) 
+	throws IOException {
+		out.append(s).append("\n");
+	}
+}
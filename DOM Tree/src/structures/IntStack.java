@@ -0,0 +1,104 @@
+package structures;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+
+/**
+ * A stack of int values, on an int array that doubles when full, so values are never boxed.
+ * Not thread-safe.
+ *
+ */
+public class IntStack {
+
+	/**
+	 * Items in the stack, bottom first, in items[0..size-1].
+	 */
+	private int[] items;
+	private int size;
+
+	/**
+	 * Initializes stack to empty.
+	 */
+	public IntStack() {
+		items = new int[16];
+	}
+
+	/**
+	 * Pushes a new item on top of stack.
+	 * 
+	 * @param item Item to push.
+	 */
+	public void push(int item) {
+		if (size == items.length) {
+			items = Arrays.copyOf(items, size*2);
+		}
+		items[size++] = item;
+	}
+
+	/**
+	 * Pops item at top of stack and returns it.
+	 * 
+	 * @return Popped item.
+	 * @throws NoSuchElementException If stack is empty.
+	 */
+	public int pop() 
+	throws NoSuchElementException {
+		if (size == 0) {
+			throw new NoSuchElementException("can't pop from an empty stack");
+		}
+		return items[--size];
+	}
+
+	/**
+	 * Returns item on top of stack, without popping it.
+	 * 
+	 * @return Item at top of stack.
+	 * @throws NoSuchElementException If stack is empty.
+	 */
+	public int peek() 
+	throws NoSuchElementException {
+		if (size == 0) {
+			throw new NoSuchElementException("can't peek into an empty stack");
+		}
+		return items[size-1];
+	}
+
+	/**
+	 * Adds to the item on top of stack, as pop and push of the sum would, without popping it.
+	 * 
+	 * @param delta Amount to add.
+	 * @throws NoSuchElementException If stack is empty.
+	 */
+	public void addToTop(int delta) 
+	throws NoSuchElementException {
+		if (size == 0) {
+			throw new NoSuchElementException("can't change the top of an empty stack");
+		}
+		items[size-1] += delta;
+	}
+
+	/**
+	 * Tells if stack is empty.
+	 * 
+	 * @return True if stack is empty, false if not.
+	 */
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	/**
+	 * Returns number of items in stack.
+	 * 
+	 * @return Number of items in stack.
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * Empties the stack.
+	 */
+	public void clear() {
+		size = 0;
+	}
+}
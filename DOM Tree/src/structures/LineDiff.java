@@ -0,0 +1,133 @@
+package structures;
+
+import java.util.ArrayList;
+import java.util.Scanner;
+
+/**
+ * A line-based diff of an input HTML file, for Tree.patch. It is a list of edits, each of
+ * which replaces a number of consecutive lines of the old file, starting at a given line,
+ * with new lines. Line numbers are those of the old file, counted from 0, and edits may not
+ * overlap. Edits that insert at the same line are applied in the order they were added.
+ *
+ */
+public class LineDiff {
+
+	/**
+	 * One edit: lines [start, start+deleted) of the old file are replaced by lines
+	 */
+	static class Edit {
+		int start, deleted;
+		ArrayList<String> lines;
+
+		Edit(int start, int deleted, ArrayList<String> lines) {
+			this.start = start;
+			this.deleted = deleted;
+			this.lines = lines;
+		}
+	}
+
+	/**
+	 * Edits, in the order they were added
+	 */
+	ArrayList<Edit> edits;
+
+	/**
+	 * Initializes an empty diff.
+	 */
+	public LineDiff() {
+		edits = new ArrayList<Edit>();
+	}
+
+	/**
+	 * Adds an edit.
+	 *
+	 * @param start First line replaced, counted from 0 in the old file
+	 * @param deleted Number of old lines replaced, 0 to only insert
+	 * @param lines New lines, without line terminators
+	 * @return This diff
+	 */
+	public LineDiff replace(int start, int deleted, ArrayList<String> lines) {
+		if (start < 0 || deleted < 0) {
+			throw new IllegalArgumentException("start and deleted must not be negative");
+		}
+		edits.add(new Edit(start, deleted, new ArrayList<String>(lines)));
+		return this;
+	}
+
+	/**
+	 * Reads a diff in unified format, as written by diff -u or git diff. File headers are
+	 * skipped; each run of removed and added lines inside a hunk becomes one edit.
+	 *
+	 * @param sc Scanner for the diff
+	 * @return Diff
+	 * @throws IllegalArgumentException If a hunk header is malformed
+	 */
+	public static LineDiff parse(Scanner sc) {
+		LineDiff diff = new LineDiff();
+		int old = -1; // next line of the old file, -1 outside hunks
+		int start = -1, deleted = 0;
+		ArrayList<String> added = new ArrayList<String>();
+		while (sc.hasNextLine()) {
+			String line = sc.nextLine();
+			if (line.startsWith("@@")) {
+				diff.flush(start, deleted, added);
+				start = -1;
+				deleted = 0;
+				old = hunkStart(line);
+			} else if (old < 0 || line.startsWith("\\")) { // header, or "\ No newline at end of file"
+				continue;
+			} else if (line.startsWith("-") || line.startsWith("+")) {
+				if (start < 0) {
+					start = old;
+				}
+				if (line.charAt(0) == '-') {
+					deleted++;
+					old++;
+				} else {
+					added.add(line.substring(1));
+				}
+			} else if (line.startsWith(" ") || line.length() == 0) { // context
+				diff.flush(start, deleted, added);
+				start = -1;
+				deleted = 0;
+				old++;
+			} else {
+				old = -1; // end of hunks, e.g. the header of the next file
+			}
+		}
+		diff.flush(start, deleted, added);
+		return diff;
+	}
+
+	/**
+	 * Returns the number of edits.
+	 *
+	 * @return Number of edits
+	 */
+	public int size() {
+		return edits.size();
+	}
+
+	private void flush(int start, int deleted, ArrayList<String> added) {
+		if (start >= 0) {
+			replace(start, deleted, added);
+			added.clear();
+		}
+	}
+
+	/*
+	 * Old file line, counted from 0, at which the hunk "@@ -l,s +l2,s2 @@" starts. For an empty
+	 * old range (s = 0), l is the line after which the new lines go.
+	 */
+	private static int hunkStart(String header) {
+		try {
+			String range = header.substring(header.indexOf('-')+1, header.indexOf(' ', header.indexOf('-')));
+			int comma = range.indexOf(',');
+			int l = Integer.parseInt(comma < 0 ? range : range.substring(0, comma));
+			int s = comma < 0 ? 1 : Integer.parseInt(range.substring(comma+1));
+			return s == 0 ? l : l-1;
+		} catch (RuntimeException e) {
+			throw new IllegalArgumentException("bad hunk header: " + header);
+		}
+	}
+}
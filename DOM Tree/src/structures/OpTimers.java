@@ -0,0 +1,46 @@
+package structures;
+
+/**
+ * Call counts and times of the Tree operations, kept while a tree is instrumented.
+ *
+ */
+class OpTimers {
+
+	/**
+	 * Operations timed
+	 */
+	static final int BUILD=0, REPLACE_TAG=1, BOLD_ROW=2, REMOVE_TAG=3, ADD_TAG=4, GET_HTML=5, EDIT=6;
+
+	/**
+	 * Names of the operations, by number
+	 */
+	static final String[] NAMES = {"build", "replaceTag", "boldRow", "removeTag", "addTag", "getHTML", "edit"};
+
+	private long[] count = new long[NAMES.length];
+	private long[] total = new long[NAMES.length];
+	private long[] max = new long[NAMES.length];
+
+	/**
+	 * Records a call that started at a System.nanoTime() reading and has just ended.
+	 *
+	 * @param op Operation
+	 * @param start Start time, in nanoseconds
+	 */
+	synchronized void record(int op, long start) {
+		long t = System.nanoTime()-start;
+		count[op]++;
+		total[op] += t;
+		if (t > max[op]) {
+			max[op] = t;
+		}
+	}
+
+	/**
+	 * Returns copies of the counts, total times and longest times, in that order.
+	 *
+	 * @return Arrays indexed by operation
+	 */
+	synchronized long[][] read() {
+		return new long[][] {count.clone(), total.clone(), max.clone()};
+	}
+}
@@ -0,0 +1,194 @@
+package structures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * Index of the elements of a DOM tree for Tree.select. The elements are numbered in document
+ * order, and for each one the index keeps its parent, its depth, its position among its
+ * element siblings, and the number of its last descendant, so that "x is under y" is a
+ * comparison of two numbers. Elements are also listed by tag name, in document order.
+ *
+ * A selector is evaluated left to right, one step at a time, against two sorted lists: the
+ * elements matched so far, and the elements with the tag of the next step. A descendant step
+ * is a merge of the two; a child step looks up each candidate's parent by binary search.
+ * Neither the tree nor the ancestors of a candidate are walked, so a step costs about the
+ * length of the two lists, and a selector on rare tags costs little however big the tree is.
+ *
+ * The index is built in one walk of the tree and does not follow later changes to it.
+ *
+ */
+public class QueryIndex {
+
+	/**
+	 * Elements, by number in document order
+	 */
+	private TagNode[] nodes;
+
+	/**
+	 * For each element: parent's number (-1 at the top level), depth (0 at the top level),
+	 * position among element siblings (from 1), number of last descendant (itself if none)
+	 */
+	private int[] parent, depth, position, last;
+
+	private int size;
+
+	/**
+	 * Tag name -> numbers of the elements with that tag, in document order
+	 */
+	private HashMap<String,int[]> byTag;
+
+	/**
+	 * Builds the index.
+	 *
+	 * @param root First top-level node of the tree
+	 * @param emptyElements Nodes with no children that are elements, not text
+	 */
+	public QueryIndex(TagNode root, Set<TagNode> emptyElements) {
+		nodes = new TagNode[64];
+		parent = new int[64];
+		depth = new int[64];
+		position = new int[64];
+		last = new int[64];
+		HashMap<String,IntStack> lists = new HashMap<String,IntStack>();
+		IntStack open = new IntStack(); // numbers of the open elements
+		IntStack count = new IntStack(); // element children so far of each open element, and of the top level
+		Stack<TagNode> siblings = new Stack<TagNode>(); // where to go on after each open element
+		count.push(0);
+		TagNode ptr = root;
+		while (ptr != null || !open.isEmpty()) {
+			if (ptr == null) {
+				int e = open.pop();
+				count.pop();
+				last[e] = size-1;
+				ptr = siblings.pop();
+				continue;
+			}
+			if (ptr.firstChild == null && !emptyElements.contains(ptr)) { // text
+				ptr = ptr.sibling;
+				continue;
+			}
+			if (size == nodes.length) {
+				grow();
+			}
+			int e = size++;
+			nodes[e] = ptr;
+			parent[e] = open.isEmpty() ? -1 : open.peek();
+			depth[e] = open.size();
+			count.addToTop(1);
+			position[e] = count.peek();
+			last[e] = e;
+			IntStack list = lists.get(ptr.tag);
+			if (list == null) {
+				list = new IntStack();
+				lists.put(ptr.tag, list);
+			}
+			list.push(e);
+			if (ptr.firstChild != null) {
+				open.push(e);
+				count.push(0);
+				siblings.push(ptr.sibling);
+				ptr = ptr.firstChild;
+			} else {
+				ptr = ptr.sibling;
+			}
+		}
+		byTag = new HashMap<String,int[]>();
+		for (String tag: lists.keySet()) {
+			IntStack list = lists.get(tag);
+			int[] numbers = new int[list.size()];
+			for (int i=numbers.length-1; i >= 0; i--) {
+				numbers[i] = list.pop();
+			}
+			byTag.put(tag, numbers);
+		}
+	}
+
+	/**
+	 * Returns the elements that match a selector, in document order.
+	 *
+	 * @param selector Compiled selector
+	 * @return Matching elements
+	 */
+	public ArrayList<TagNode> select(Selector selector) {
+		int[] matched = candidates(selector, 0);
+		int n = matched.length;
+		for (int step=1; step < selector.size() && n > 0; step++) {
+			int[] next = candidates(selector, step);
+			int m = 0;
+			if (selector.child[step]) {
+				for (int c: next) {
+					if (parent[c] >= 0 && Arrays.binarySearch(matched, 0, n, parent[c]) >= 0) {
+						next[m++] = c;
+					}
+				}
+			} else {
+				int j = 0, end = -1; // last descendant of the matched elements before c
+				for (int c: next) {
+					while (j < n && matched[j] < c) {
+						end = Math.max(end, last[matched[j]]);
+						j++;
+					}
+					if (c <= end) {
+						next[m++] = c;
+					}
+				}
+			}
+			matched = next;
+			n = m;
+		}
+		ArrayList<TagNode> result = new ArrayList<TagNode>(n);
+		for (int i=0; i < n; i++) {
+			result.add(nodes[matched[i]]);
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of elements.
+	 *
+	 * @return Number of elements
+	 */
+	public int size() {
+		return size;
+	}
+
+	/*
+	 * Elements that match one step on their own, in document order, in a new array. A step
+	 * after i combinators is at depth i or more, which rules out elements near the top.
+	 */
+	private int[] candidates(Selector selector, int step) {
+		int[] all;
+		int count;
+		if (selector.tags[step] != null) {
+			all = byTag.get(selector.tags[step]);
+			if (all == null) {
+				return new int[0];
+			}
+			count = all.length;
+		} else {
+			all = null;
+			count = size;
+		}
+		int[] out = new int[count];
+		int m = 0;
+		for (int i=0; i < count; i++) {
+			int e = all == null ? i : all[i];
+			if (depth[e] >= step && selector.position(step, position[e])) {
+				out[m++] = e;
+			}
+		}
+		return m == count ? out : Arrays.copyOf(out, m);
+	}
+
+	private void grow() {
+		int n = nodes.length*2;
+		nodes = Arrays.copyOf(nodes, n);
+		parent = Arrays.copyOf(parent, n);
+		depth = Arrays.copyOf(depth, n);
+		position = Arrays.copyOf(position, n);
+		last = Arrays.copyOf(last, n);
+	}
+}
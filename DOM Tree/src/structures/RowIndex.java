@@ -0,0 +1,190 @@
+package structures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+/**
+ * Index of the rows of every table in a DOM tree, for Tree.boldRow. Each table element (a node
+ * with tag "table" and at least one child) has an array of its children, which are its rows,
+ * so row n is found in O(1) instead of by walking n-1 siblings.
+ *
+ * The arrays are filled in by the tree builder. After that, the tree reports every change to
+ * a node's list of children, and every change of tag name, and the arrays of the tables
+ * affected are rebuilt the next time they are used, at the cost of one walk over their rows.
+ * Tables are kept in document order, which boldRow needs for nested tables.
+ *
+ */
+public class RowIndex {
+
+	/**
+	 * Rows of a table; null when they must be collected again from the table's children
+	 */
+	private static class Rows {
+		TagNode[] rows = new TagNode[4];
+		int size = 0;
+	}
+
+	/**
+	 * Table -> rows
+	 */
+	private IdentityHashMap<TagNode,Rows> tables;
+
+	/**
+	 * Tables in document order; may also hold nodes that are no longer tables, which are
+	 * skipped. Not used when ordered is false.
+	 */
+	private ArrayList<TagNode> order;
+	private boolean ordered;
+
+	/**
+	 * Initializes the index to empty.
+	 */
+	public RowIndex() {
+		tables = new IdentityHashMap<TagNode,Rows>();
+		order = new ArrayList<TagNode>();
+		ordered = true;
+	}
+
+	/**
+	 * Called by the tree builder for each node, in document order, after it has been linked
+	 * in under its parent.
+	 *
+	 * @param node New node
+	 * @param parent Parent of the node, null at the top level
+	 */
+	public void built(TagNode node, TagNode parent) {
+		if (parent != null && "table".equals(parent.tag)) {
+			Rows r = tables.get(parent);
+			if (r == null) {
+				r = new Rows();
+				tables.put(parent, r);
+				order.add(parent);
+			}
+			if (r.size == r.rows.length) {
+				r.rows = Arrays.copyOf(r.rows, r.size*2);
+			}
+			r.rows[r.size++] = node;
+		}
+	}
+
+	/**
+	 * Called after the list of children of a node has changed. If the node is a table, its
+	 * rows are collected again when next used.
+	 *
+	 * @param node Node whose children changed, null for the top level
+	 */
+	public void changed(TagNode node) {
+		if (node == null) {
+			return;
+		}
+		if (tables.containsKey(node)) {
+			tables.put(node, null);
+		} else if ("table".equals(node.tag) && node.firstChild != null) {
+			tables.put(node, null);
+			ordered = false;
+		}
+	}
+
+	/**
+	 * Called after the tag name of a node has changed.
+	 *
+	 * @param node Node
+	 */
+	public void renamed(TagNode node) {
+		if ("table".equals(node.tag)) {
+			changed(node);
+		} else {
+			tables.remove(node);
+		}
+	}
+
+	/**
+	 * Called when a node is discarded from the tree, for instance after its data has been
+	 * moved to another node.
+	 *
+	 * @param node Node
+	 */
+	public void removed(TagNode node) {
+		tables.remove(node);
+	}
+
+	/**
+	 * Called after nodes were built into the middle of the tree, whose tables were added out
+	 * of document order. The order is found again when the tables are next listed.
+	 */
+	public void inserted() {
+		ordered = false;
+	}
+
+	/**
+	 * Returns a row of a table.
+	 *
+	 * @param table Table node
+	 * @param row Row number, first row is numbered 1 (not 0)
+	 * @return Row node, or null if the table has no such row or is not a table
+	 */
+	public TagNode row(TagNode table, int row) {
+		if (!tables.containsKey(table)) {
+			return null;
+		}
+		Rows r = tables.get(table);
+		if (r == null) {
+			r = new Rows();
+			for (TagNode ptr=table.firstChild; ptr != null; ptr=ptr.sibling) {
+				if (r.size == r.rows.length) {
+					r.rows = Arrays.copyOf(r.rows, r.size*2);
+				}
+				r.rows[r.size++] = ptr;
+			}
+			tables.put(table, r);
+		}
+		return row >= 1 && row <= r.size ? r.rows[row-1] : null;
+	}
+
+	/**
+	 * Returns the tables in document order. If tables were added since the order was last
+	 * known, the tree is walked once to find it again.
+	 *
+	 * @param root Root of the tree
+	 * @return Table nodes, outer tables before the tables nested in them
+	 */
+	public ArrayList<TagNode> tables(TagNode root) {
+		if (!ordered) {
+			order.clear();
+			Stack<TagNode> stack = new Stack<TagNode>();
+			stack.push(root);
+			while (!stack.isEmpty()) {
+				TagNode ptr = stack.pop();
+				if (ptr == null) {
+					continue;
+				}
+				if (ptr.firstChild != null && "table".equals(ptr.tag)) {
+					if (!tables.containsKey(ptr)) {
+						tables.put(ptr, null);
+					}
+					order.add(ptr);
+				}
+				stack.push(ptr.sibling);
+				stack.push(ptr.firstChild);
+			}
+			ordered = true;
+		}
+		ArrayList<TagNode> list = new ArrayList<TagNode>();
+		for (TagNode t: order) {
+			if (tables.containsKey(t)) {
+				list.add(t);
+			}
+		}
+		return list;
+	}
+
+	/**
+	 * Returns the number of tables.
+	 *
+	 * @return Number of tables
+	 */
+	public int size() {
+		return tables.size();
+	}
+}
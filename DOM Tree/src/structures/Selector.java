@@ -0,0 +1,194 @@
+package structures;
+
+import java.util.ArrayList;
+
+/**
+ * A compiled CSS-style selector, for Tree.select. A selector is a chain of steps separated
+ * by combinators:
+ *
+ * <pre>
+ * table tr          tr elements anywhere under a table (descendant)
+ * table &gt; tr        tr elements whose parent is a table (child)
+ * tr:nth-child(2)   tr elements that are the second element among their siblings
+ * td:nth-child(odd) also even, 3n, 2n+1, -n+3 and so on, as in CSS
+ * *                 any element; a step with only :nth-child(...) means the same as *
+ * </pre>
+ *
+ * Tag names are matched case-sensitively against element nodes only; text nodes never match,
+ * and :nth-child counts element siblings only. Compile a selector once and use it on any
+ * number of trees.
+ *
+ */
+public class Selector {
+
+	/**
+	 * Tag of each step, null for *
+	 */
+	final String[] tags;
+
+	/**
+	 * :nth-child(a*n+b) of each step; hasNth false if the step has none
+	 */
+	final boolean[] hasNth;
+	final int[] a, b;
+
+	/**
+	 * True if step i must be a child of step i-1, false if a descendant (child[0] is unused)
+	 */
+	final boolean[] child;
+
+	private final String text;
+
+	private Selector(String text, ArrayList<String> tags, ArrayList<int[]> nth, ArrayList<Boolean> child) {
+		this.text = text;
+		int n = tags.size();
+		this.tags = tags.toArray(new String[n]);
+		hasNth = new boolean[n];
+		a = new int[n];
+		b = new int[n];
+		this.child = new boolean[n];
+		for (int i=0; i < n; i++) {
+			if (nth.get(i) != null) {
+				hasNth[i] = true;
+				a[i] = nth.get(i)[0];
+				b[i] = nth.get(i)[1];
+			}
+			this.child[i] = child.get(i);
+		}
+	}
+
+	/**
+	 * Compiles a selector.
+	 *
+	 * @param selector Selector text, for instance "table > tr:nth-child(2) td"
+	 * @return Compiled selector
+	 * @throws IllegalArgumentException If the selector is malformed
+	 */
+	public static Selector compile(String selector) {
+		ArrayList<String> tags = new ArrayList<String>();
+		ArrayList<int[]> nth = new ArrayList<int[]>();
+		ArrayList<Boolean> child = new ArrayList<Boolean>();
+		int i = 0, n = selector.length();
+		boolean isChild = false;
+		while (true) {
+			while (i < n && selector.charAt(i) == ' ') {
+				i++;
+			}
+			if (i < n && selector.charAt(i) == '>') {
+				if (tags.isEmpty() || isChild) {
+					throw error(selector, i);
+				}
+				isChild = true;
+				i++;
+				continue;
+			}
+			if (i == n) {
+				if (tags.isEmpty() || isChild) {
+					throw error(selector, i);
+				}
+				break;
+			}
+			if (!tags.isEmpty() && !isChild && selector.charAt(i-1) != ' ') {
+				throw error(selector, i); // two steps need a combinator between them
+			}
+			String tag = null;
+			int start = i;
+			if (selector.charAt(i) == '*') {
+				i++;
+			} else {
+				while (i < n && isNameChar(selector.charAt(i))) {
+					i++;
+				}
+				if (i > start) {
+					tag = selector.substring(start, i);
+				}
+			}
+			int[] ab = null;
+			if (selector.startsWith(":nth-child(", i)) {
+				int close = selector.indexOf(')', i);
+				if (close < 0) {
+					throw error(selector, i);
+				}
+				ab = nth(selector.substring(i+11, close).trim(), selector, i);
+				i = close+1;
+			}
+			if (i == start || (i < n && selector.charAt(i) != ' ' && selector.charAt(i) != '>')) {
+				throw error(selector, i);
+			}
+			tags.add(tag);
+			nth.add(ab);
+			child.add(isChild);
+			isChild = false;
+		}
+		return new Selector(selector, tags, nth, child);
+	}
+
+	/**
+	 * Tells if a child position (1 for the first element child) satisfies :nth-child of a
+	 * step, or the step has no :nth-child.
+	 *
+	 * @param step Step
+	 * @param position Position among element siblings, from 1
+	 * @return True if it matches
+	 */
+	boolean position(int step, int position) {
+		if (!hasNth[step]) {
+			return true;
+		}
+		int d = position - b[step];
+		if (a[step] == 0) {
+			return d == 0;
+		}
+		return d % a[step] == 0 && d / a[step] >= 0;
+	}
+
+	/**
+	 * Number of steps.
+	 *
+	 * @return Number of steps
+	 */
+	int size() {
+		return tags.length;
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return text;
+	}
+
+	private static boolean isNameChar(char c) {
+		return Character.isLetterOrDigit(c) || c == '-' || c == '_';
+	}
+
+	/*
+	 * Parses the argument of :nth-child into a and b of a*n+b.
+	 */
+	private static int[] nth(String arg, String selector, int at) {
+		if (arg.equals("odd")) {
+			return new int[] {2, 1};
+		}
+		if (arg.equals("even")) {
+			return new int[] {2, 0};
+		}
+		String s = arg.replace(" ", "");
+		try {
+			int npos = s.indexOf('n');
+			if (npos < 0) {
+				return new int[] {0, Integer.parseInt(s)};
+			}
+			String as = s.substring(0, npos);
+			int av = as.equals("") || as.equals("+") ? 1 : as.equals("-") ? -1 : Integer.parseInt(as);
+			String bs = s.substring(npos+1);
+			int bv = bs.equals("") ? 0 : Integer.parseInt(bs.startsWith("+") ? bs.substring(1) : bs);
+			return new int[] {av, bv};
+		} catch (NumberFormatException e) {
+			throw error(selector, at);
+		}
+	}
+
+	private static IllegalArgumentException error(String selector, int at) {
+		return new IllegalArgumentException("bad selector at " + at + ": " + selector);
+	}
+}
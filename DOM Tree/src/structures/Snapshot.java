@@ -0,0 +1,421 @@
+package structures;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Set;
+import java.util.StringTokenizer;
+
+/**
+ * An immutable version of a DOM tree. The operations of Tree (replaceTag, removeTag, boldRow
+ * and addTag) do not change a snapshot, but return a new one, which shares every subtree the
+ * operation did not change with the old one: only the nodes on the paths from the root to
+ * the changed nodes are copied. Since nothing is ever changed in place, any number of threads
+ * can read a snapshot, with getHTML or print, while new versions are being made from it,
+ * without locks and without seeing a half-done operation. See TreeHistory for undo and redo
+ * on top of snapshots.
+ *
+ * The result of each operation is the same as that of the Tree method on a tree that is not
+ * indexed, except that boldRow throws IllegalArgumentException for a table without the row,
+ * and the snapshot is then left as it was, since it is never changed.
+ *
+ */
+public class Snapshot {
+
+	/**
+	 * A node of a snapshot. Text nodes, and elements with no children, have null children.
+	 */
+	static final class Node {
+		final String tag;
+		final Node[] children;
+
+		Node(String tag, Node[] children) {
+			this.tag = tag;
+			this.children = children;
+		}
+	}
+
+	/**
+	 * Top-level nodes, as the children of a root with no tag
+	 */
+	private final Node root;
+
+	private Snapshot(Node root) {
+		this.root = root;
+	}
+
+	/**
+	 * Makes a snapshot of a tree, copying all of its nodes. Called by Tree.snapshot.
+	 *
+	 * @param first First top-level node of the tree
+	 * @return Snapshot
+	 */
+	static Snapshot of(TagNode first) {
+		Stack<TagNode> open = new Stack<TagNode>();
+		Stack<ArrayList<Node>> lists = new Stack<ArrayList<Node>>(); // children so far of each open element
+		lists.push(new ArrayList<Node>());
+		TagNode ptr = first;
+		while (ptr != null || !open.isEmpty()) {
+			if (ptr == null) {
+				ptr = open.pop();
+				Node[] children = lists.pop().toArray(new Node[0]);
+				lists.peek().add(new Node(ptr.tag, children));
+				ptr = ptr.sibling;
+			} else if (ptr.firstChild == null) {
+				lists.peek().add(new Node(ptr.tag, null));
+				ptr = ptr.sibling;
+			} else {
+				open.push(ptr);
+				lists.push(new ArrayList<Node>());
+				ptr = ptr.firstChild;
+			}
+		}
+		return new Snapshot(new Node(null, lists.pop().toArray(new Node[0])));
+	}
+
+	/**
+	 * Returns a snapshot with all occurrences of an old tag replaced with a new tag.
+	 *
+	 * @param oldTag Old tag
+	 * @param newTag Replacement tag
+	 * @return New snapshot, or this one if nothing changed
+	 */
+	public Snapshot replaceTag(final String oldTag, final String newTag) {
+		if (oldTag == null || newTag == null) {
+			return this;
+		}
+		return apply(new Pass() {
+			Node enter(Node node) {
+				return node.tag.equals(oldTag) ? new Node(newTag, node.children) : node;
+			}
+		});
+	}
+
+	/**
+	 * Returns a snapshot with all occurrences of a tag removed. If the tag is p, em, or b,
+	 * the children of each occurrence take its place. If the tag is ol or ul, the children
+	 * of each occurrence are converted to p tags first.
+	 *
+	 * @param tag Tag to be removed, can be p, em, b, ol, or ul
+	 * @return New snapshot, or this one if nothing changed
+	 */
+	public Snapshot removeTag(final String tag) {
+		final boolean list = tag.equals("ol") || tag.equals("ul");
+		if (!list && !tag.equals("p") && !tag.equals("em") && !tag.equals("b")) {
+			return this;
+		}
+		return apply(new Pass() {
+			Node enter(Node node) {
+				if (!list || !node.tag.equals(tag) || node.children == null) {
+					return node;
+				}
+				Node[] items = new Node[node.children.length];
+				for (int i=0; i < items.length; i++) {
+					items[i] = new Node("p", node.children[i].children);
+				}
+				return new Node(tag, items);
+			}
+			void leave(Node node, ArrayList<Node> out) {
+				if (node.tag.equals(tag) && node.children != null) {
+					Collections.addAll(out, node.children);
+				} else {
+					out.add(node);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Returns a snapshot with every column of the given row of every table in bold. The
+	 * boldface (b) tag appears directly under the td tag of every column of this row.
+	 *
+	 * @param row Row to bold, first row is numbered 1 (not 0).
+	 * @return New snapshot, or this one if row is less than 1
+	 * @throws IllegalArgumentException If a table does not have the row
+	 */
+	public Snapshot boldRow(final int row) {
+		if (row < 1) {
+			return this;
+		}
+		return apply(new Pass() {
+			/*
+			 * Text cells that have just been given a b child, and copies of them; they were not
+			 * tables when the operation started
+			 */
+			Set<Node> bolded = Collections.newSetFromMap(new IdentityHashMap<Node,Boolean>());
+
+			Node enter(Node node) {
+				if (!node.tag.equals("table") || node.children == null || bolded.contains(node)) {
+					return node;
+				}
+				if (row > node.children.length) {
+					throw new IllegalArgumentException("table does not have row " + row);
+				}
+				Node r = node.children[row-1];
+				if (r.children == null) {
+					return node;
+				}
+				Node[] cells = new Node[r.children.length];
+				for (int i=0; i < cells.length; i++) {
+					Node cell = r.children[i];
+					cells[i] = new Node(cell.tag, new Node[] {new Node("b", cell.children)});
+					if (cell.children == null || bolded.contains(cell)) {
+						bolded.add(cells[i]);
+					}
+				}
+				Node[] rows = node.children.clone();
+				rows[row-1] = new Node(r.tag, cells);
+				if (bolded.contains(r)) {
+					bolded.add(rows[row-1]);
+				}
+				return new Node(node.tag, rows);
+			}
+		});
+	}
+
+	/**
+	 * Returns a snapshot with a tag added around all occurrences of a word, as Tree.addTag.
+	 *
+	 * @param word Word around which tag is to be added
+	 * @param tag Tag to be added, em or b
+	 * @return New snapshot, or this one if nothing changed
+	 */
+	public Snapshot addTag(String word, String tag) {
+		if (!tag.equals("em") && !tag.equals("b")) {
+			return this;
+		}
+		final WordMatcher words = new WordMatcher(word, tag);
+		return apply(new Pass() {
+			void leave(Node node, ArrayList<Node> out) {
+				if (node.children != null || !words.find(node.tag.toLowerCase())) {
+					out.add(node);
+				} else {
+					split(node, words, out);
+				}
+			}
+		});
+	}
+
+	/**
+	 * Gets the HTML represented by this snapshot, as Tree.getHTML.
+	 *
+	 * @return HTML string, including new lines.
+	 */
+	public String getHTML() {
+		StringBuilder sb = new StringBuilder();
+		try {
+			getHTML(sb);
+		} catch (IOException e) { // StringBuilder does not throw
+			throw new UncheckedIOException(e);
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Writes the HTML represented by this snapshot to a writer, exactly as returned by
+	 * getHTML. The writer is flushed but not closed.
+	 *
+	 * @param out Writer
+	 * @throws IOException If writing fails
+	 */
+	public void writeHTML(Writer out)
+	throws IOException {
+		HTMLOutput buf = new HTMLOutput(out);
+		getHTML(buf);
+		buf.flush();
+	}
+
+	/**
+	 * Prints the snapshot, as Tree.print.
+	 */
+	public void print() {
+		Stack<Node> open = new Stack<Node>();
+		IntStack next = new IntStack(); // index of the next child of each open node
+		open.push(root);
+		next.push(0);
+		while (!open.isEmpty()) {
+			Node parent = open.peek();
+			int i = next.pop();
+			if (i == parent.children.length) {
+				open.pop();
+				continue;
+			}
+			next.push(i+1);
+			Node ptr = parent.children[i];
+			for (int k=1; k < open.size(); k++) {
+				System.out.print("      ");
+			}
+			if (open.size() > 1) {
+				System.out.print("|----");
+			} else {
+				System.out.print("     ");
+			}
+			System.out.println(ptr.tag);
+			if (ptr.children != null) {
+				open.push(ptr);
+				next.push(0);
+			}
+		}
+	}
+
+	private void getHTML(Appendable sb)
+	throws IOException {
+		Stack<Node> open = new Stack<Node>();
+		IntStack next = new IntStack();
+		open.push(root);
+		next.push(0);
+		while (!open.isEmpty()) {
+			Node parent = open.peek();
+			int i = next.pop();
+			if (i == parent.children.length) {
+				open.pop();
+				if (parent != root) {
+					sb.append("</");
+					sb.append(parent.tag);
+					sb.append(">\n");
+				}
+				continue;
+			}
+			next.push(i+1);
+			Node ptr = parent.children[i];
+			if (ptr.children == null) {
+				sb.append(ptr.tag);
+				sb.append("\n");
+			} else {
+				sb.append("<");
+				sb.append(ptr.tag);
+				sb.append(">\n");
+				open.push(ptr);
+				next.push(0);
+			}
+		}
+	}
+
+	/**
+	 * One operation, as a walk over the tree in document order. Each node is first passed to
+	 * enter, whose result is the node whose children are visited; once they have been
+	 * replaced, the node (with the new children) is passed to leave, which appends what
+	 * takes its place in its parent.
+	 */
+	private static abstract class Pass {
+
+		Node enter(Node node) {
+			return node;
+		}
+
+		void leave(Node node, ArrayList<Node> out) {
+			out.add(node);
+		}
+	}
+
+	/**
+	 * A node being walked: the node as it was, as returned by enter, the index of its next
+	 * child, and its new children, which are only collected once one of them has changed.
+	 */
+	private static class Frame {
+		Node old, node;
+		int next;
+		ArrayList<Node> out;
+
+		Frame(Node old, Node node) {
+			this.old = old;
+			this.node = node;
+		}
+	}
+
+	/*
+	 * Runs a pass over the tree, copying only what changes.
+	 */
+	private Snapshot apply(Pass pass) {
+		Stack<Frame> stack = new Stack<Frame>();
+		stack.push(new Frame(root, root));
+		ArrayList<Node> pieces = new ArrayList<Node>(); // what leave makes of one node
+		while (true) {
+			Frame f = stack.peek();
+			if (f.next < f.node.children.length) {
+				Node c = f.node.children[f.next++];
+				Node e = pass.enter(c);
+				if (e.children != null) {
+					stack.push(new Frame(c, e));
+					continue;
+				}
+				pieces.clear();
+				pass.leave(e, pieces);
+				add(f, c, pieces);
+				continue;
+			}
+			stack.pop();
+			Node n = f.node;
+			if (f.out != null) {
+				Node[] children = f.out.toArray(new Node[f.out.size()]);
+				n = new Node(n.tag, children.length == 0 && !stack.isEmpty() ? null : children);
+			}
+			if (stack.isEmpty()) {
+				return n == root ? this : new Snapshot(n);
+			}
+			pieces.clear();
+			pass.leave(n, pieces);
+			add(stack.peek(), f.old, pieces);
+		}
+	}
+
+	/*
+	 * Adds what took the place of a child to its parent's frame. The parent's new children
+	 * are only collected from the first child that does not stay as it was.
+	 */
+	private static void add(Frame parent, Node old, ArrayList<Node> pieces) {
+		if (parent.out == null) {
+			if (pieces.size() == 1 && pieces.get(0) == old) {
+				return;
+			}
+			parent.out = new ArrayList<Node>();
+			for (int i=0; i < parent.next-1; i++) {
+				parent.out.add(parent.node.children[i]);
+			}
+		}
+		parent.out.addAll(pieces);
+	}
+
+	/*
+	 * Adds a tag around each occurrence of the words in a text node, left to right, as
+	 * Tree.addTag does, and appends the pieces.
+	 */
+	private static void split(Node node, WordMatcher words, ArrayList<Node> out) {
+		String text = node.tag;
+		while (text != null) {
+			if (!words.find(text.toLowerCase())) {
+				out.add(text == node.tag ? node : new Node(text, null));
+				return;
+			}
+			String before = "";
+			String after = null;
+			StringTokenizer str = new StringTokenizer(text, " ", true);
+			while (str.hasMoreTokens()) {
+				String token = str.nextToken();
+				String tag = words.tagFor(token, !str.hasMoreTokens());
+				if (tag == null) {
+					before += token;
+					continue;
+				}
+				Node tagged = new Node(tag, new Node[] {new Node(token, null)});
+				if (!before.equals("") && !before.equals(" ")) {
+					out.add(new Node(before, null));
+				}
+				out.add(tagged);
+				after = "";
+				while (str.hasMoreTokens()) {
+					after += str.nextToken();
+				}
+				break;
+			}
+			if (after == null) { // no token matched
+				out.add(text == node.tag ? node : new Node(text, null));
+				return;
+			}
+			text = after.equals("") ? null : after;
+		}
+	}
+}
@@ -1,10 +1,11 @@
 package structures;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.NoSuchElementException;
 
 /**
- * A generic stack implementation.
+ * A generic stack implementation, on an array that doubles when full. Popped slots are
+ * cleared so the stack does not keep items alive. Not thread-safe; see ConcurrentStack.
  * 
  * @author Sesh Venugopal
  *
@@ -13,15 +14,16 @@ import java.util.NoSuchElementException;
 public class Stack<T> {
 
 	/**
-	 * Items in the stack.
+	 * Items in the stack, bottom first, in items[0..size-1].
 	 */
-	private ArrayList<T> items;
+	private Object[] items;
+	private int size;
 
 	/**
 	 * Initializes stack to empty.
 	 */
 	public Stack() {
-		items = new ArrayList<T>();
+		items = new Object[16];
 	}
 
 	/**
@@ -30,7 +32,10 @@ public class Stack<T> {
 	 * @param item Item to push.
 	 */
 	public void push(T item) {
-		items.add(item);
+		if (size == items.length) {
+			items = Arrays.copyOf(items, size*2);
+		}
+		items[size++] = item;
 	}
 
 	/**
@@ -39,12 +44,15 @@ public class Stack<T> {
 	 * @return Popped item.
 	 * @throws NoSuchElementException If stack is empty.
 	 */
+	@SuppressWarnings("unchecked")
 	public T pop() 
 	throws NoSuchElementException {
-		if (items.isEmpty()) {
+		if (size == 0) {
 			throw new NoSuchElementException("can't pop from an empty stack");
 		}
-		return items.remove(items.size()-1);
+		T item = (T)items[--size];
+		items[size] = null;
+		return item;
 	}
 
 	/**
@@ -53,12 +61,13 @@ public class Stack<T> {
 	 * @return Item at top of stack.
 	 * @throws NoSuchElementException If stack is empty.
 	 */
+	@SuppressWarnings("unchecked")
 	public T peek() 
 	throws NoSuchElementException {
-		if (items.size() == 0) {
+		if (size == 0) {
 			throw new NoSuchElementException("can't peek into an empty stack");
 		}
-		return items.get(items.size()-1);
+		return (T)items[size-1];
 	}
 
 	/**
@@ -67,7 +76,7 @@ public class Stack<T> {
 	 * @return True if stack is empty, false if not.
 	 */
 	public boolean isEmpty() {
-		return items.isEmpty();
+		return size == 0;
 	}
 
 	/**
@@ -76,13 +85,14 @@ public class Stack<T> {
 	 * @return Number of items in stack.
 	 */
 	public int size() {
-		return items.size();
+		return size;
 	}
 
 	/**
 	 * Empties the stack.
 	 */
 	public void clear() {
-		items.clear();
+		Arrays.fill(items, 0, size, null);
+		size = 0;
 	}
 }
@@ -0,0 +1,187 @@
+package structures;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CountDownLatch;
+
+/**
+ * Times the stacks in this package against the JDK alternatives.
+ *
+ * Usage: java structures.StackBench [operations] [threads]
+ *
+ * Single-threaded: Stack, IntStack and ArrayDeque, plus an ArrayList used as a stack, which is
+ * how Stack used to be implemented. Each round pushes and pops in a sawtooth of depth 1024,
+ * which is the pattern of the tree walks. Multi-threaded: ConcurrentStack against a Stack
+ * behind a lock and a ConcurrentLinkedDeque, each thread pushing and popping in pairs.
+ * Each run is repeated five times and the best is reported, so the JIT has warmed up.
+ *
+ */
+public class StackBench {
+
+	private static final int DEPTH = 1024;
+
+	/**
+	 * Keeps results alive so the work is not optimized away
+	 */
+	static volatile long sink;
+
+	private interface Run {
+		void run(int ops) throws Exception;
+	}
+
+	public static void main(String[] args)
+	throws Exception {
+		int ops = args.length > 0 ? Integer.parseInt(args[0]) : 20000000;
+		int threads = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+
+		time("ArrayList (old Stack)", ops, new Run() {
+			public void run(int ops) {
+				ArrayList<Integer> s = new ArrayList<Integer>();
+				long sum = 0;
+				for (int i=0; i < ops; i += 2*DEPTH) {
+					for (int j=0; j < DEPTH; j++) {
+						s.add(j);
+					}
+					while (!s.isEmpty()) {
+						sum += s.remove(s.size()-1);
+					}
+				}
+				sink = sum;
+			}
+		});
+		time("Stack", ops, new Run() {
+			public void run(int ops) {
+				Stack<Integer> s = new Stack<Integer>();
+				long sum = 0;
+				for (int i=0; i < ops; i += 2*DEPTH) {
+					for (int j=0; j < DEPTH; j++) {
+						s.push(j);
+					}
+					while (!s.isEmpty()) {
+						sum += s.pop();
+					}
+				}
+				sink = sum;
+			}
+		});
+		time("ArrayDeque", ops, new Run() {
+			public void run(int ops) {
+				ArrayDeque<Integer> s = new ArrayDeque<Integer>();
+				long sum = 0;
+				for (int i=0; i < ops; i += 2*DEPTH) {
+					for (int j=0; j < DEPTH; j++) {
+						s.push(j);
+					}
+					while (!s.isEmpty()) {
+						sum += s.pop();
+					}
+				}
+				sink = sum;
+			}
+		});
+		time("IntStack", ops, new Run() {
+			public void run(int ops) {
+				IntStack s = new IntStack();
+				long sum = 0;
+				for (int i=0; i < ops; i += 2*DEPTH) {
+					for (int j=0; j < DEPTH; j++) {
+						s.push(j);
+					}
+					while (!s.isEmpty()) {
+						sum += s.pop();
+					}
+				}
+				sink = sum;
+			}
+		});
+
+		System.out.println(threads + " threads:");
+		final Stack<Integer> locked = new Stack<Integer>();
+		concurrent("Stack, synchronized", ops, threads, new Run() {
+			public void run(int ops) {
+				long sum = 0;
+				for (int i=0; i < ops; i += 2) {
+					synchronized (locked) {
+						locked.push(i);
+					}
+					synchronized (locked) {
+						sum += locked.pop();
+					}
+				}
+				sink = sum;
+			}
+		});
+		final ConcurrentLinkedDeque<Integer> deque = new ConcurrentLinkedDeque<Integer>();
+		concurrent("ConcurrentLinkedDeque", ops, threads, new Run() {
+			public void run(int ops) {
+				long sum = 0;
+				for (int i=0; i < ops; i += 2) {
+					deque.push(i);
+					Integer x = deque.poll();
+					sum += x == null ? 0 : x;
+				}
+				sink = sum;
+			}
+		});
+		final ConcurrentStack<Integer> lockFree = new ConcurrentStack<Integer>();
+		concurrent("ConcurrentStack", ops, threads, new Run() {
+			public void run(int ops) {
+				long sum = 0;
+				for (int i=0; i < ops; i += 2) {
+					lockFree.push(i);
+					Integer x = lockFree.pop();
+					sum += x == null ? 0 : x;
+				}
+				sink = sum;
+			}
+		});
+	}
+
+	private static void time(String name, int ops, Run run)
+	throws Exception {
+		long best = Long.MAX_VALUE;
+		for (int rep=0; rep < 5; rep++) {
+			long t = System.nanoTime();
+			run.run(ops);
+			best = Math.min(best, System.nanoTime()-t);
+		}
+		report(name, ops, best);
+	}
+
+	/*
+	 * Runs ops operations in total, split evenly over the threads, started together.
+	 */
+	private static void concurrent(String name, final int ops, final int threads, final Run run)
+	throws Exception {
+		long best = Long.MAX_VALUE;
+		for (int rep=0; rep < 5; rep++) {
+			final CountDownLatch start = new CountDownLatch(1);
+			Thread[] workers = new Thread[threads];
+			for (int i=0; i < threads; i++) {
+				workers[i] = new Thread() {
+					public void run() {
+						try {
+							start.await();
+							run.run(ops/threads);
+						} catch (Exception e) {
+							throw new RuntimeException(e);
+						}
+					}
+				};
+				workers[i].start();
+			}
+			long t = System.nanoTime();
+			start.countDown();
+			for (Thread w: workers) {
+				w.join();
+			}
+			best = Math.min(best, System.nanoTime()-t);
+		}
+		report(name, ops, best);
+	}
+
+	private static void report(String name, int ops, long nanos) {
+		System.out.println(String.format("%-24s %8.2f ns/op", name, nanos/(double)ops));
+	}
+}
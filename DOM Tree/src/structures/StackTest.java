@@ -0,0 +1,212 @@
+package structures;
+
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Checks Stack, IntStack, LongStack and ConcurrentStack against java.util.ArrayDeque on random
+ * sequences of pushes, pops, peeks, changes to the top and clears, run on all of them in step;
+ * then checks that ConcurrentStack, pushed and popped by several threads at once, hands out
+ * every item pushed exactly once.
+ *
+ * Usage: java structures.StackTest [operations] [seed]
+ *
+ * Prints each failure, then the number of operations checked; exits with status 1 on a
+ * failure.
+ *
+ */
+public class StackTest {
+
+	private static int failures;
+
+	public static void main(String[] args)
+	throws InterruptedException {
+		int operations = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 1);
+		checkSequential(operations, random);
+		checkConcurrent(4, operations/4);
+		System.out.println(operations + " operations, " + failures + " failures");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/*
+	 * All four stacks against an ArrayDeque. Pushes win more often than pops for a while, then
+	 * lose, so the stacks grow past their first arrays and shrink back to empty many times.
+	 */
+	static void checkSequential(int operations, Random random) {
+		ArrayDeque<Long> expected = new ArrayDeque<Long>();
+		Stack<Long> stack = new Stack<Long>();
+		IntStack ints = new IntStack();
+		LongStack longs = new LongStack();
+		ConcurrentStack<Long> concurrent = new ConcurrentStack<Long>();
+		for (int i=0; i < operations; i++) {
+			boolean growing = (i/5000) % 2 == 0;
+			int op = random.nextInt(10);
+			if (op < (growing ? 5 : 3)) {
+				long item = random.nextInt(1000)-500;
+				expected.push(item);
+				stack.push(item);
+				ints.push((int)item);
+				longs.push(item);
+				concurrent.push(item);
+			} else if (op < 7) {
+				check(i, "pop", expected.poll(), pop(stack), pop(ints), pop(longs), concurrent.pop());
+			} else if (op < 8) {
+				check(i, "peek", expected.peek(), peek(stack), peek(ints), peek(longs), concurrent.peek());
+			} else if (op < 9) {
+				int delta = random.nextInt(100)-50;
+				Long top = expected.poll();
+				if (top != null) { // the stacks of objects have no addToTop: pop and push the sum
+					expected.push(top+delta);
+					stack.push(stack.pop()+delta);
+					concurrent.push(concurrent.pop()+delta);
+				}
+				check(i, "addToTop " + delta, expected.peek(), addToTop(ints, delta), addToTop(longs, delta));
+			} else if (random.nextInt(1000) == 0) {
+				expected.clear();
+				stack.clear();
+				ints.clear();
+				longs.clear();
+				while (concurrent.pop() != null) { // ConcurrentStack has no clear
+				}
+			} else {
+				long size = expected.size();
+				check(i, "size", size, (long)stack.size(), (long)ints.size(), (long)longs.size());
+			}
+			if (stack.isEmpty() != expected.isEmpty() || ints.isEmpty() != expected.isEmpty()
+					|| longs.isEmpty() != expected.isEmpty() || concurrent.isEmpty() != expected.isEmpty()) {
+				fail(i, "isEmpty", "expected " + expected.isEmpty());
+			}
+		}
+	}
+
+	/*
+	 * Threads that each push their own numbers and pop every other time, then pop what is left:
+	 * every number must come out exactly once, including those handed over in the elimination
+	 * array.
+	 */
+	static void checkConcurrent(int threads, final int perThread)
+	throws InterruptedException {
+		final ConcurrentStack<Integer> stack = new ConcurrentStack<Integer>(threads);
+		final AtomicIntegerArray seen = new AtomicIntegerArray(threads*perThread);
+		Thread[] workers = new Thread[threads];
+		for (int t=0; t < threads; t++) {
+			final int first = t*perThread;
+			workers[t] = new Thread(new Runnable() {
+				public void run() {
+					for (int i=0; i < perThread; i++) {
+						stack.push(first+i);
+						if (i % 2 == 0) {
+							Integer item = stack.pop();
+							if (item != null) {
+								seen.incrementAndGet(item);
+							}
+						}
+					}
+				}
+			});
+			workers[t].start();
+		}
+		for (Thread worker: workers) {
+			worker.join();
+		}
+		for (Integer item = stack.pop(); item != null; item = stack.pop()) {
+			seen.incrementAndGet(item);
+		}
+		for (int i=0; i < seen.length(); i++) {
+			if (seen.get(i) != 1) {
+				fail(i, "concurrent", "item popped " + seen.get(i) + " times");
+			}
+		}
+	}
+
+	private static Long pop(Stack<Long> stack) {
+		try {
+			return stack.pop();
+		} catch (NoSuchElementException e) {
+			return null;
+		}
+	}
+
+	private static Long pop(IntStack stack) {
+		try {
+			return (long)stack.pop();
+		} catch (NoSuchElementException e) {
+			return null;
+		}
+	}
+
+	private static Long pop(LongStack stack) {
+		try {
+			return stack.pop();
+		} catch (NoSuchElementException e) {
+			return null;
+		}
+	}
+
+	private static Long peek(Stack<Long> stack) {
+		try {
+			return stack.peek();
+		} catch (NoSuchElementException e) {
+			return null;
+		}
+	}
+
+	private static Long peek(IntStack stack) {
+		try {
+			return (long)stack.peek();
+		} catch (NoSuchElementException e) {
+			return null;
+		}
+	}
+
+	private static Long peek(LongStack stack) {
+		try {
+			return stack.peek();
+		} catch (NoSuchElementException e) {
+			return null;
+		}
+	}
+
+	private static Long addToTop(IntStack stack, int delta) {
+		try {
+			stack.addToTop(delta);
+			return (long)stack.peek();
+		} catch (NoSuchElementException e) {
+			return null;
+		}
+	}
+
+	private static Long addToTop(LongStack stack, long delta) {
+		try {
+			stack.addToTop(delta);
+			return stack.peek();
+		} catch (NoSuchElementException e) {
+			return null;
+		}
+	}
+
+	/*
+	 * Checks the results of one operation on each stack, null standing for an empty stack.
+	 */
+	private static void check(int i, String name, Long expected, Long... got) {
+		for (Long g: got) {
+			if (expected == null ? g != null : !expected.equals(g)) {
+				fail(i, name, "expected " + expected + ", got " + Arrays.toString(got));
+				return;
+			}
+		}
+	}
+
+	private static void fail(int i, String name, String message) {
+		failures++;
+		if (failures <= 20) {
+			System.out.println("operation " + i + ", " + name + ": " + message);
+		}
+	}
+}
@@ -0,0 +1,375 @@
+package structures;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.StringTokenizer;
+
+/**
+ * Streaming versions of the Tree transforms. Each filter is an HTMLHandler that rewrites the
+ * events it receives and passes them on to the next handler, so filters can be chained and
+ * ended with an HTMLWriter. Memory use does not depend on the length of the document.
+ * 
+ */
+public class TagFilters {
+	
+	/**
+	 * Base filter: passes all events on unchanged.
+	 */
+	static class Filter implements HTMLHandler {
+		
+		/**
+		 * Next handler in the chain
+		 */
+		HTMLHandler next;
+		
+		Filter(HTMLHandler next) {
+			this.next = next;
+		}
+		
+		public void startTag(String tag) throws IOException {
+			next.startTag(tag);
+		}
+		
+		public void endTag(String tag) throws IOException {
+			next.endTag(tag);
+		}
+		
+		public void text(String text) throws IOException {
+			next.text(text);
+		}
+		
+		public void end() throws IOException {
+			next.end();
+		}
+	}
+	
+	/**
+	 * Streaming Tree.replaceTag: replaces all occurrences of an old tag with a new tag.
+	 */
+	public static class ReplaceTag extends Filter {
+		
+		private String oldTag, newTag;
+		
+		/**
+		 * @param oldTag Old tag
+		 * @param newTag Replacement tag
+		 * @param next Next handler
+		 */
+		public ReplaceTag(String oldTag, String newTag, HTMLHandler next) {
+			super(next);
+			this.oldTag = oldTag;
+			this.newTag = newTag;
+		}
+		
+		public void startTag(String tag) throws IOException {
+			next.startTag(tag.equals(oldTag) ? newTag : tag);
+		}
+		
+		public void endTag(String tag) throws IOException {
+			next.endTag(tag.equals(oldTag) ? newTag : tag);
+		}
+		
+		public void text(String text) throws IOException {
+			next.text(text.equals(oldTag) ? newTag : text); // as Tree.replaceTag, which matches text nodes too
+		}
+	}
+	
+	/**
+	 * Several streaming Tree.replaceTag calls in a row, composed into one lookup per event.
+	 */
+	public static class ReplaceTags extends Filter {
+		
+		/**
+		 * Tag or text -> what the replacements turn it into; anything else is unchanged
+		 */
+		private HashMap<String,String> map;
+		
+		/**
+		 * Initializes the filter with no replacements.
+		 * 
+		 * @param next Next handler
+		 */
+		public ReplaceTags(HTMLHandler next) {
+			super(next);
+			map = new HashMap<String,String>();
+		}
+		
+		/**
+		 * Adds a replacement, applied after those already added.
+		 * 
+		 * @param oldTag Old tag
+		 * @param newTag Replacement tag
+		 */
+		public void add(String oldTag, String newTag) {
+			if (oldTag == null) {
+				return;
+			}
+			for (Map.Entry<String,String> e: map.entrySet()) {
+				if (oldTag.equals(e.getValue())) {
+					e.setValue(newTag);
+				}
+			}
+			if (!map.containsKey(oldTag)) {
+				map.put(oldTag, newTag);
+			}
+		}
+		
+		public void startTag(String tag) throws IOException {
+			next.startTag(replace(tag));
+		}
+		
+		public void endTag(String tag) throws IOException {
+			next.endTag(replace(tag));
+		}
+		
+		public void text(String text) throws IOException {
+			next.text(replace(text));
+		}
+		
+		private String replace(String s) {
+			return map.containsKey(s) ? map.get(s) : s;
+		}
+	}
+	
+	/**
+	 * Streaming Tree.removeTag: removes all occurrences of a tag, keeping their contents. If the
+	 * tag is ol or ul, the tags immediately under a removed list are converted to p tags. Only
+	 * the names of the open elements are kept, so memory is proportional to nesting depth.
+	 */
+	public static class RemoveTag extends Filter {
+		
+		private String tag;
+		
+		/**
+		 * Names written for the open elements: null for a removed element
+		 */
+		private Stack<String> open;
+		
+		/**
+		 * @param tag Tag to be removed, can be p, em, b, ol, or ul
+		 * @param next Next handler
+		 */
+		public RemoveTag(String tag, HTMLHandler next) {
+			super(next);
+			this.tag = tag;
+			open = new Stack<String>();
+		}
+		
+		public void startTag(String t) throws IOException {
+			boolean list = tag.equals("ol") || tag.equals("ul");
+			if (list && underRemoved()) { // as Tree.removeTag, converted to p before it could be removed
+				t = "p";
+			} else if (t.equals(tag) && (list || tag.equals("p") || tag.equals("em") || tag.equals("b"))) {
+				open.push(null);
+				return;
+			}
+			open.push(t);
+			next.startTag(t);
+		}
+		
+		public void text(String text) throws IOException {
+			boolean list = tag.equals("ol") || tag.equals("ul");
+			next.text(list && underRemoved() ? "p" : text); // Tree.removeTag converts text under a removed list too
+		}
+		
+		public void endTag(String t) throws IOException {
+			String written = open.pop();
+			if (written != null) {
+				next.endTag(written);
+			}
+		}
+		
+		private boolean underRemoved() {
+			return !open.isEmpty() && open.peek() == null;
+		}
+	}
+	
+	/**
+	 * Streaming Tree.boldRow: boldfaces every column of the given row of every table. A b tag
+	 * is put directly under each child of the row, around that child's contents. As in
+	 * Tree.boldRow, rows are counted among the children of the table as they are after any
+	 * enclosing table has been bolded, so tables nested in a bolded row are handled the same
+	 * way, and a table tag with no children is not a table. Only the open elements are kept,
+	 * so memory is proportional to nesting depth. A table with fewer rows than the row to
+	 * bold throws IllegalArgumentException when it ends.
+	 */
+	public static class BoldRow extends Filter {
+		
+		/**
+		 * An open element as written to the next handler
+		 */
+		private static class Open {
+			String tag;
+			boolean table, row, added; // added: a b tag put in by this filter
+			int children;
+			
+			Open(String tag, boolean row, boolean added) {
+				this.tag = tag;
+				this.table = tag.equals("table");
+				this.row = row;
+				this.added = added;
+			}
+		}
+		
+		private int row;
+		private Stack<Open> open;
+		
+		/**
+		 * @param row Row to bold, first row is numbered 1 (not 0); nothing is bolded if less than 1
+		 * @param next Next handler
+		 */
+		public BoldRow(int row, HTMLHandler next) {
+			super(next);
+			this.row = row;
+			open = new Stack<Open>();
+		}
+		
+		public void startTag(String t) throws IOException {
+			if (row < 1) {
+				next.startTag(t);
+				return;
+			}
+			start(t, false);
+		}
+		
+		public void endTag(String t) throws IOException {
+			if (row < 1) {
+				next.endTag(t);
+				return;
+			}
+			while (open.peek().added) {
+				close();
+			}
+			close();
+		}
+		
+		public void text(String text) throws IOException {
+			if (row < 1) {
+				next.text(text);
+				return;
+			}
+			boolean isRow = counted();
+			if (!open.isEmpty() && open.peek().row) { // a column with no children gets an empty b
+				next.startTag(text);
+				Open o = new Open(text, isRow, false);
+				o.table = false; // as in Tree.boldRow, not a table until it has rows
+				open.push(o);
+				text("b");
+				close();
+				return;
+			}
+			next.text(text);
+		}
+		
+		private void start(String t, boolean added) throws IOException {
+			boolean column = !open.isEmpty() && open.peek().row;
+			boolean isRow = counted();
+			next.startTag(t);
+			open.push(new Open(t, isRow, added));
+			if (column) {
+				start("b", true);
+			}
+		}
+		
+		private void close() throws IOException {
+			Open o = open.pop();
+			if (o.table && o.children < row) {
+				throw new IllegalArgumentException("table has no row " + row);
+			}
+			next.endTag(o.tag);
+		}
+		
+		/*
+		 * Counts a new child of the innermost open element, and tells if it is the row to bold.
+		 */
+		private boolean counted() {
+			if (open.isEmpty() || !open.peek().table) {
+				return false;
+			}
+			return ++open.peek().children == row;
+		}
+	}
+	
+	/**
+	 * Streaming Tree.addTag: adds a tag around all occurrences of a word in text. A word at
+	 * the end of a line may carry trailing punctuation, which is tagged along with it.
+	 */
+	public static class AddTag extends Filter {
+		
+		private String word, tag;
+		
+		/**
+		 * @param word Word around which tag is to be added
+		 * @param tag Tag to be added, em or b (otherwise nothing is tagged)
+		 * @param next Next handler
+		 */
+		public AddTag(String word, String tag, HTMLHandler next) {
+			super(next);
+			this.word = word.toLowerCase();
+			this.tag = tag.equals("em") || tag.equals("b") ? tag : null;
+		}
+		
+		public void text(String text) throws IOException {
+			if (tag == null || word.length() == 0) {
+				next.text(text);
+				return;
+			}
+			while (text.toLowerCase().contains(word)) {
+				StringTokenizer str = new StringTokenizer(text, " ", true);
+				String before = "";
+				String token = null;
+				boolean found = false;
+				while (str.hasMoreTokens()) {
+					token = str.nextToken();
+					if (isTarget(token, word, !str.hasMoreTokens())) {
+						found = true;
+						break;
+					}
+					before += token;
+				}
+				if (!found) {
+					break;
+				}
+				String after = "";
+				while (str.hasMoreTokens()) {
+					after += str.nextToken();
+				}
+				if (!before.equals("") && !before.equals(" ")) { // as Tree.addTag, a lone space before the word is dropped
+					next.text(before);
+				}
+				next.startTag(tag);
+				next.text(token);
+				next.endTag(tag);
+				if (after.equals("")) {
+					return;
+				}
+				text = after;
+			}
+			next.text(text);
+		}
+	}
+	
+	/**
+	 * Tells if a token of text is an occurrence of a word, using the same test as Tree.addTag.
+	 * 
+	 * @param token Token of text, no spaces
+	 * @param word Word, lower case
+	 * @param last True if the token ends its line, in which case it may have trailing punctuation
+	 * @return True if the token should be tagged
+	 */
+	static boolean isTarget(String token, String word, boolean last) {
+		if (token.equalsIgnoreCase(word)) {
+			return true;
+		}
+		if (!last) {
+			return false;
+		}
+		String lower = token.toLowerCase();
+		if (!lower.contains(word) || lower.charAt(0) != word.charAt(0)) {
+			return false;
+		}
+		String temp = lower.replace(word, "");
+		return temp.equals("!") || temp.equals("?") || temp.equals(".") || temp.equals(":") || temp.equals(";") || temp.equals("");
+	}
+}
@@ -0,0 +1,132 @@
+package structures;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashSet;
+
+/**
+ * Index of the nodes of a DOM tree by tag name, or by text for text nodes (a TagNode keeps
+ * either in its tag field), with a link from each node to its parent. The tree must keep the
+ * index up to date under every mutation, by removing a node before its tag or text is
+ * changed and adding it back after.
+ *
+ */
+public class TagIndex {
+
+	/**
+	 * Tag name or text -> nodes with that tag or text, in the order they were added
+	 */
+	private HashMap<String,LinkedHashSet<TagNode>> nodes;
+
+	/**
+	 * Node -> parent, null at the top level
+	 */
+	private IdentityHashMap<TagNode,TagNode> parents;
+
+	/**
+	 * Initializes the index to empty.
+	 */
+	public TagIndex() {
+		nodes = new HashMap<String,LinkedHashSet<TagNode>>();
+		parents = new IdentityHashMap<TagNode,TagNode>();
+	}
+
+	/**
+	 * Adds a node under its current tag name or text.
+	 *
+	 * @param node Node
+	 * @param parent Parent of the node, null at the top level
+	 */
+	public void add(TagNode node, TagNode parent) {
+		LinkedHashSet<TagNode> set = nodes.get(node.tag);
+		if (set == null) {
+			set = new LinkedHashSet<TagNode>();
+			nodes.put(node.tag, set);
+		}
+		set.add(node);
+		parents.put(node, parent);
+	}
+
+	/**
+	 * Removes a node, which must still have the tag name or text it was added with.
+	 *
+	 * @param node Node
+	 */
+	public void remove(TagNode node) {
+		LinkedHashSet<TagNode> set = nodes.get(node.tag);
+		if (set != null) {
+			set.remove(node);
+			if (set.isEmpty()) {
+				nodes.remove(node.tag);
+			}
+		}
+		parents.remove(node);
+	}
+
+	/**
+	 * Changes the tag name or text of an indexed node, keeping its parent.
+	 *
+	 * @param node Node
+	 * @param tag New tag name or text
+	 */
+	public void rename(TagNode node, String tag) {
+		TagNode parent = parents.get(node);
+		remove(node);
+		node.tag = tag;
+		add(node, parent);
+	}
+
+	/**
+	 * Tells if a node is indexed.
+	 *
+	 * @param node Node
+	 * @return True if the node is indexed
+	 */
+	public boolean contains(TagNode node) {
+		return parents.containsKey(node);
+	}
+
+	/**
+	 * Returns the parent of an indexed node.
+	 *
+	 * @param node Node
+	 * @return Parent, null if the node is at the top level or is not indexed
+	 */
+	public TagNode parent(TagNode node) {
+		return parents.get(node);
+	}
+
+	/**
+	 * Sets the parent of a node if it is indexed.
+	 *
+	 * @param node Node
+	 * @param parent New parent
+	 */
+	public void setParent(TagNode node, TagNode parent) {
+		if (parents.containsKey(node)) {
+			parents.put(node, parent);
+		}
+	}
+
+	/**
+	 * Returns the nodes with a given tag name or text. The returned list is a copy, so the
+	 * tree may be changed while going through it.
+	 *
+	 * @param tag Tag name or text
+	 * @return Nodes, empty if there are none
+	 */
+	public ArrayList<TagNode> get(String tag) {
+		LinkedHashSet<TagNode> set = nodes.get(tag);
+		return set == null ? new ArrayList<TagNode>() : new ArrayList<TagNode>(set);
+	}
+
+	/**
+	 * Returns the number of indexed nodes.
+	 *
+	 * @return Number of nodes
+	 */
+	public int size() {
+		return parents.size();
+	}
+}
@@ -1,6 +1,17 @@
 package structures;
 
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.WritableByteChannel;
 import java.util.*;
+import java.util.concurrent.CountedCompleter;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
 
 /**
  * This class implements an HTML DOM Tree. Each node of the tree is a TagNode, with fields for
@@ -19,14 +30,72 @@ public class Tree {
 	 */
 	Scanner sc;
 	
+	/**
+	 * Index of nodes by tag name or text, null if this tree is not indexed
+	 */
+	TagIndex index;
+	
+	/**
+	 * Rows of every table, for boldRow
+	 */
+	RowIndex rows;
+	
+	/**
+	 * Element nodes whose start tag was immediately followed by their end tag. They print as
+	 * text, but take two lines of input, which patch needs to know.
+	 */
+	Set<TagNode> emptyElements;
+	
+	/**
+	 * Number of input lines of each element that has children, null until the first patch
+	 */
+	IdentityHashMap<TagNode,Integer> lineCounts;
+	
+	/**
+	 * True once an operation has changed the tree, so it no longer matches its input
+	 */
+	boolean edited;
+	
+	/**
+	 * Elements by tag and position, for select; null until the next select after a change
+	 */
+	QueryIndex query;
+	
+	/**
+	 * Operation timers, null unless the tree is instrumented
+	 */
+	volatile OpTimers timers;
+	
+	/**
+	 * JMX view of the tree, null unless the tree is registered with registerMBean
+	 */
+	volatile TreeMonitor monitor;
+	
 	/**
 	 * Initializes this tree object with scanner for input HTML file
 	 * 
 	 * @param sc Scanner for input HTML file
 	 */
 	public Tree(Scanner sc) {
+		this(sc, false);
+	}
+	
+	/**
+	 * Initializes this tree object with scanner for input HTML file. An indexed tree keeps an
+	 * index of its nodes by tag name, and of its text nodes by text, built by build and updated
+	 * by every operation, so that replaceTag, removeTag and boldRow only visit the nodes with
+	 * the tags they work on. Text nodes are in it because replaceTag renames a line of text
+	 * that equals the old tag, as it does an element.
+	 * 
+	 * @param sc Scanner for input HTML file
+	 * @param indexed True to keep a tag name index
+	 */
+	public Tree(Scanner sc, boolean indexed) {
 		this.sc = sc;
 		root = null;
+		index = indexed ? new TagIndex() : null;
+		rows = new RowIndex();
+		emptyElements = Collections.newSetFromMap(new IdentityHashMap<TagNode,Boolean>());
 	}
 	
 	/**
@@ -36,7 +105,514 @@ public class Tree {
 	 * The root of the tree that is built is referenced by the root field of this object.
 	 */
 	public void build() {
-		/** COMPLETE THIS METHOD **/
+		long start = start();
+		reset();
+		Stack<TagNode> tagstack = new Stack<TagNode>(); //open elements
+		Stack<TagNode> lastChild = new Stack<TagNode>(); //last child of each open element, null if none yet
+		lastChild.push(null); //top level
+		while(sc.hasNextLine()) {
+			parseLine(sc.nextLine(), tagstack, lastChild);
+		}
+		stop(OpTimers.BUILD, start);
+	}
+	
+	/*
+	 * Empties the tree, and everything kept about it, before it is built again. An indexed
+	 * tree stays indexed.
+	 */
+	private void reset() {
+		root = null;
+		if(index!=null) {
+			index = new TagIndex();
+		}
+		rows = new RowIndex();
+		emptyElements = Collections.newSetFromMap(new IdentityHashMap<TagNode,Boolean>());
+		lineCounts = null;
+		edited = false;
+		query = null;
+	}
+	
+	private void parseLine(String next, Stack<TagNode> tagstack, Stack<TagNode> lastChild) {
+		if(next.length()>1 && next.charAt(0)=='<') {
+			if(next.charAt(1)=='/') {
+				close(tagstack, lastChild);
+			}
+			else {
+				append(next.substring(1, next.length()-1), true, tagstack, lastChild); //get brackets off
+			}
+		}
+		else {
+			append(next, false, tagstack, lastChild);
+		}
+	}
+	
+	/**
+	 * Builds the DOM tree from an input HTML file, as build() does, but tokenizes the file in
+	 * chunks on a pool of threads while this thread assembles the tree from the tokens in file
+	 * order. Use this for very large files; the scanner passed to the constructor is not used.
+	 * 
+	 * @param file Input HTML file, one tag or line of text per line, UTF-8 encoded
+	 * @param threads Number of tokenizer threads
+	 * @throws IOException If the file cannot be read
+	 */
+	public void build(File file, int threads) 
+	throws IOException {
+		long start = start();
+		reset();
+		Stack<TagNode> tagstack = new Stack<TagNode>();
+		Stack<TagNode> lastChild = new Stack<TagNode>();
+		lastChild.push(null);
+		ChunkedTokenizer tokens = new ChunkedTokenizer(file, threads);
+		try {
+			while(tokens.next()) {
+				if(tokens.kind()==ChunkedTokenizer.END) {
+					close(tagstack, lastChild);
+				}
+				else {
+					append(tokens.value(), tokens.kind()==ChunkedTokenizer.START, tagstack, lastChild);
+				}
+			}
+		} finally {
+			tokens.close();
+		}
+		stop(OpTimers.BUILD, start);
+	}
+	
+	/**
+	 * Writes the DOM tree to a file in a compact binary format (see TreeFile), from which
+	 * load builds it again several times faster than build does from HTML.
+	 * 
+	 * @param file File to write
+	 * @throws IOException If writing fails
+	 */
+	public void save(File file) 
+	throws IOException {
+		TreeFile.write(root, emptyElements, file);
+	}
+	
+	/**
+	 * Builds the DOM tree from a file written by save, as build() does from the HTML input;
+	 * the scanner passed to the constructor is not used. The file is memory-mapped, and its
+	 * tag names are decoded once and shared by all the elements that use them.
+	 * 
+	 * @param file File written by save
+	 * @throws IOException If the file cannot be read or was not written by save
+	 */
+	public void load(File file) 
+	throws IOException {
+		long start = start();
+		reset();
+		Stack<TagNode> tagstack = new Stack<TagNode>();
+		Stack<TagNode> lastChild = new Stack<TagNode>();
+		lastChild.push(null);
+		TreeFile tokens = new TreeFile(file);
+		try {
+			while(tokens.next()) {
+				if(tokens.kind()==TreeFile.END) {
+					if(tagstack.isEmpty()) {
+						throw new IOException("unmatched end tag in " + file);
+					}
+					close(tagstack, lastChild);
+				}
+				else {
+					append(tokens.value(), tokens.kind()==TreeFile.START, tagstack, lastChild);
+				}
+			}
+		} finally {
+			tokens.close();
+		}
+		stop(OpTimers.BUILD, start);
+	}
+	
+	/*
+	 * Appends a new node after the last child of the innermost open element, in O(1). The
+	 * first node appended becomes the root; nodes outside all elements follow it as siblings.
+	 * A start tag becomes the new innermost open element. lastChild starts with one null
+	 * entry, for the top level.
+	 */
+	private void append(String tag, boolean startTag, Stack<TagNode> tagstack, Stack<TagNode> lastChild) {
+		TagNode element= new TagNode(tag, null, null);
+		TagNode last= lastChild.pop();
+		if(last==null) {
+			if(tagstack.isEmpty()) {
+				root=element;
+			}
+			else {
+				tagstack.peek().firstChild = element;
+			}
+		}
+		else {
+			last.sibling = element;
+		}
+		lastChild.push(element);
+		rows.built(element, tagstack.isEmpty() ? null : tagstack.peek());
+		if(index!=null) {
+			index.add(element, tagstack.isEmpty() ? null : tagstack.peek());
+		}
+		if(startTag) {
+			tagstack.push(element);
+			lastChild.push(null);
+		}
+	}
+	
+	private void close(Stack<TagNode> tagstack, Stack<TagNode> lastChild) {
+		TagNode element= tagstack.pop();
+		if(element.firstChild==null) {
+			emptyElements.add(element);
+		}
+		lastChild.pop();
+	}
+	
+	/**
+	 * Brings the DOM tree up to date with a changed input file, given a line-based diff from
+	 * the input the tree was built from. The result is the same as building a new tree from
+	 * the changed input, but only the nodes for the changed lines are rebuilt: each edit is
+	 * applied inside the innermost element whose content contains all of its lines, and
+	 * every other node is kept. A line that is replaced by a line of the same kind (text,
+	 * start tag or end tag) only changes the text or tag of its node. An edit that unbalances
+	 * the tags around it is retried one element further out, up to a rebuild of the whole
+	 * tree from its lines.
+	 * 
+	 * The first patch counts the lines under every element, which takes one walk of the tree;
+	 * after that, an edit costs the depth of the tree times the number of children scanned
+	 * on the way down, plus the lines rebuilt.
+	 * 
+	 * @param diff Edits, with line numbers counted from 0 in the input the tree was built from
+	 * @throws IllegalStateException If an operation has changed the tree since it was built
+	 * @throws IllegalArgumentException If edits overlap or go past the end of the input
+	 */
+	public void patch(LineDiff diff) {
+		if(edited) {
+			throw new IllegalStateException("tree has been changed since it was built");
+		}
+		query= null;
+		ArrayList<LineDiff.Edit> edits= new ArrayList<LineDiff.Edit>(diff.edits);
+		Collections.sort(edits, new Comparator<LineDiff.Edit>() {
+			public int compare(LineDiff.Edit a, LineDiff.Edit b) {
+				return Integer.compare(a.start, b.start);
+			}
+		});
+		if(lineCounts==null) {
+			lineCounts= new IdentityHashMap<TagNode,Integer>();
+			countLines(root, null);
+		}
+		int total= 0;
+		for(TagNode ptr= root; ptr!=null; ptr=ptr.sibling) {
+			total+= lines(ptr);
+		}
+		for(int i=0; i<edits.size(); i++) {
+			LineDiff.Edit e= edits.get(i);
+			int end= i+1<edits.size() ? edits.get(i+1).start : total;
+			if(e.start+e.deleted>end) {
+				throw new IllegalArgumentException("edit at line " + e.start + " overlaps the next edit or the end of the input");
+			}
+		}
+		for(int i=edits.size()-1; i>=0; i--) { //last first, so line numbers before each edit still hold
+			LineDiff.Edit e= edits.get(i);
+			if(!patch(e.start, e.deleted, e.lines)) {
+				//this edit leaves the tags unbalanced until an earlier one is applied
+				rebuild(edits.subList(0, i+1));
+				break;
+			}
+		}
+		changed();
+	}
+	
+	/*
+	 * Replaces lines [s, s+d) of the input with new lines. Returns false, and changes nothing,
+	 * if the tags of the whole input would not match up.
+	 */
+	private boolean patch(int s, int d, ArrayList<String> newLines) {
+		//go down to the innermost element whose content holds all the edited lines
+		ArrayList<TagNode> path= new ArrayList<TagNode>();
+		ArrayList<Integer> starts= new ArrayList<Integer>(); //first line of each element on the path
+		TagNode list= root;
+		int pos= 0;
+		boolean down= true;
+		while(down) {
+			down= false;
+			for(TagNode ptr= list; ptr!=null && pos<=s; ptr=ptr.sibling) {
+				int n= lines(ptr);
+				if(n>1 && pos+1<=s && s+d<=pos+n-1) {
+					path.add(ptr);
+					starts.add(pos);
+					list= ptr.firstChild;
+					pos++;
+					down= true;
+					break;
+				}
+				pos+= n;
+			}
+		}
+		int lo= s, hi= s+d; //lines that must be rebuilt
+		for(int k=path.size(); k>=0; k--) {
+			TagNode parent= k==0 ? null : path.get(k-1);
+			TagNode ptr= k==0 ? root : parent.firstChild;
+			pos= k==0 ? 0 : starts.get(k-1)+1;
+			TagNode prev= null; //last child before the lines, and first child after them
+			while(ptr!=null && (pos+lines(ptr)<=lo && !(lo==hi && pos==lo))) {
+				pos+= lines(ptr);
+				prev= ptr;
+				ptr= ptr.sibling;
+			}
+			TagNode first= ptr; //children overlapping the lines
+			int from= Math.min(pos, lo);
+			int to= from;
+			if(lo<hi || pos<lo) {
+				while(ptr!=null && pos<hi) {
+					pos+= lines(ptr);
+					ptr= ptr.sibling;
+				}
+				to= Math.max(pos, hi);
+			}
+			TagNode next= ptr;
+			if(first==next) {
+				first= null;
+			}
+			if(first!=null && first.sibling==next && d==1 && newLines.size()==1 && relabel(first, from, s, newLines.get(0))) {
+				return true;
+			}
+			ArrayList<String> region= new ArrayList<String>();
+			if(first!=null) {
+				serialize(first, next, region);
+			}
+			ArrayList<String> changed= new ArrayList<String>(region.subList(0, s-from));
+			changed.addAll(newLines);
+			changed.addAll(region.subList(s+d-from, region.size()));
+			if(balanced(changed)) {
+				splice(path, k, prev, first, next, changed, to-from);
+				return true;
+			}
+			if(k>0) { //try again with the whole parent
+				lo= starts.get(k-1);
+				hi= lo+lines(parent);
+			}
+		}
+		return false;
+	}
+	
+	/*
+	 * Applies edits, in order of line, to the lines of the whole tree, and builds the tree
+	 * again from the result.
+	 */
+	private void rebuild(List<LineDiff.Edit> edits) {
+		ArrayList<String> all= new ArrayList<String>();
+		serialize(root, null, all);
+		ArrayList<String> changed= new ArrayList<String>();
+		int pos= 0;
+		for(LineDiff.Edit e: edits) {
+			changed.addAll(all.subList(pos, e.start));
+			changed.addAll(e.lines);
+			pos= e.start+e.deleted;
+		}
+		changed.addAll(all.subList(pos, all.size()));
+		reset();
+		Stack<TagNode> tagstack= new Stack<TagNode>();
+		Stack<TagNode> lastChild= new Stack<TagNode>();
+		lastChild.push(null);
+		for(String line: changed) {
+			parseLine(line, tagstack, lastChild);
+		}
+		lineCounts= new IdentityHashMap<TagNode,Integer>();
+		countLines(root, null);
+	}
+	
+	/*
+	 * Replaces the children first..next (exclusive) of path[k-1] (or the top level if k is 0),
+	 * which take the given number of lines, with the nodes built from the changed lines.
+	 */
+	private void splice(ArrayList<TagNode> path, int k, TagNode prev, TagNode first, TagNode next, ArrayList<String> changed, int oldLines) {
+		TagNode parent= k==0 ? null : path.get(k-1);
+		int[] before= new int[k];
+		for(int i=0; i<k; i++) {
+			before[i]= lines(path.get(i));
+		}
+		if(first!=null) {
+			forget(first, next);
+		}
+		if(prev!=null) {
+			prev.sibling= next;
+		}
+		else if(parent!=null) {
+			parent.firstChild= next;
+		}
+		else {
+			root= next;
+		}
+		Stack<TagNode> tagstack= new Stack<TagNode>();
+		Stack<TagNode> lastChild= new Stack<TagNode>();
+		if(parent!=null) {
+			tagstack.push(parent);
+		}
+		lastChild.push(prev);
+		for(String line: changed) {
+			parseLine(line, tagstack, lastChild);
+		}
+		TagNode last= lastChild.peek();
+		if(last!=null) {
+			last.sibling= next;
+		}
+		TagNode added= prev!=null ? prev.sibling : parent!=null ? parent.firstChild : root;
+		countLines(added, next);
+		for(int i=0; i<k; i++) { //the elements around the edit grow or shrink by the same number of lines
+			TagNode a= path.get(i);
+			if(a.firstChild==null) {
+				lineCounts.remove(a);
+				emptyElements.add(a);
+			}
+			else {
+				lineCounts.put(a, before[i]+changed.size()-oldLines);
+				emptyElements.remove(a);
+			}
+		}
+		rows.changed(parent);
+		rows.inserted();
+	}
+	
+	/*
+	 * Replaces a single line in place if it keeps its kind: the text of a text node, the tag
+	 * of an element for a start tag, nothing for an end tag. The node starts at line pos.
+	 */
+	private boolean relabel(TagNode node, int pos, int s, String line) {
+		int kind= line.length()>1 && line.charAt(0)=='<' ? (line.charAt(1)=='/' ? 2 : 1) : 0;
+		int n= lines(node);
+		if(n==1 && s==pos && kind==0) {
+			if(index!=null) {
+				index.rename(node, line);
+			}
+			else {
+				node.tag= line;
+			}
+			return true;
+		}
+		if(n>1 && s==pos && kind==1) {
+			String tag= line.substring(1, line.length()-1);
+			if(index!=null) {
+				index.rename(node, tag);
+			}
+			else {
+				node.tag= tag;
+			}
+			rows.renamed(node);
+			return true;
+		}
+		return n>1 && s==pos+n-1 && kind==2;
+	}
+	
+	/*
+	 * Number of input lines of a node and everything under it.
+	 */
+	private int lines(TagNode node) {
+		if(node.firstChild==null) {
+			return emptyElements.contains(node) ? 2 : 1;
+		}
+		return lineCounts.get(node);
+	}
+	
+	/*
+	 * Records the number of lines of every element with children in the sibling list from
+	 * first up to stop (exclusive), and below it. Returns the lines of the whole list.
+	 */
+	private int countLines(TagNode first, TagNode stop) {
+		int total= 0;
+		Stack<TagNode> open= new Stack<TagNode>();
+		IntStack counts= new IntStack(); //lines so far of each open element
+		TagNode ptr= first;
+		while(ptr!=stop || !open.isEmpty()) {
+			int n;
+			if(ptr==null) {
+				ptr= open.pop();
+				n= counts.pop()+1; //end tag
+				lineCounts.put(ptr, n);
+				ptr= ptr.sibling;
+			}
+			else if(ptr.firstChild==null) {
+				n= lines(ptr);
+				ptr= ptr.sibling;
+			}
+			else {
+				open.push(ptr);
+				counts.push(1); //start tag
+				ptr= ptr.firstChild;
+				continue;
+			}
+			if(open.isEmpty()) {
+				total+= n;
+			}
+			else {
+				counts.addToTop(n);
+			}
+		}
+		return total;
+	}
+	
+	/*
+	 * Appends the input lines of the sibling list from first up to stop (exclusive).
+	 */
+	private void serialize(TagNode first, TagNode stop, ArrayList<String> out) {
+		Stack<TagNode> open= new Stack<TagNode>();
+		TagNode ptr= first;
+		while(ptr!=stop || !open.isEmpty()) {
+			if(ptr==null) {
+				ptr= open.pop();
+				out.add("</" + ptr.tag + ">");
+				ptr= ptr.sibling;
+			}
+			else if(ptr.firstChild==null) {
+				if(emptyElements.contains(ptr)) {
+					out.add("<" + ptr.tag + ">");
+					out.add("</" + ptr.tag + ">");
+				}
+				else {
+					out.add(ptr.tag);
+				}
+				ptr= ptr.sibling;
+			}
+			else {
+				out.add("<" + ptr.tag + ">");
+				open.push(ptr);
+				ptr= ptr.firstChild;
+			}
+		}
+	}
+	
+	/*
+	 * Drops the sibling list from first up to stop (exclusive), and everything under it,
+	 * from the indexes.
+	 */
+	private void forget(TagNode first, TagNode stop) {
+		Stack<TagNode> stack= new Stack<TagNode>();
+		for(TagNode ptr= first; ptr!=stop; ptr=ptr.sibling) {
+			stack.push(ptr);
+		}
+		while(!stack.isEmpty()) {
+			TagNode ptr= stack.pop();
+			if(index!=null) {
+				index.remove(ptr);
+			}
+			rows.removed(ptr);
+			emptyElements.remove(ptr);
+			lineCounts.remove(ptr);
+			for(TagNode c= ptr.firstChild; c!=null; c=c.sibling) {
+				stack.push(c);
+			}
+		}
+	}
+	
+	/*
+	 * Tells if the start and end tags in some lines match up.
+	 */
+	private static boolean balanced(ArrayList<String> lines) {
+		int depth= 0;
+		for(String line: lines) {
+			if(line.length()>1 && line.charAt(0)=='<') {
+				depth+= line.charAt(1)=='/' ? -1 : 1;
+				if(depth<0) {
+					return false;
+				}
+			}
+		}
+		return depth==0;
 	}
 	
 	/**
@@ -46,17 +622,103 @@ public class Tree {
 	 * @param newTag Replacement tag
 	 */
 	public void replaceTag(String oldTag, String newTag) {
-		/** COMPLETE THIS METHOD **/
+		long start= start();
+		edited=true;
+		query=null;
+		if(oldTag!=null || newTag!=null) {
+			if(index!=null) { //only the matching tag nodes
+				for(TagNode node: index.get(oldTag)) {
+					index.rename(node, newTag);
+					rows.renamed(node);
+				}
+			}
+			else {
+				replacetag (oldTag, newTag, root);
+			}
+		}
+		stop(OpTimers.REPLACE_TAG, start);
+	}
+	private void replacetag(String oldTag, String newTag, TagNode root){
+		Stack<TagNode> stack= new Stack<TagNode>(); //pending first children and siblings, at most two per level
+		stack.push(root);
+		while(!stack.isEmpty()) {
+			TagNode ptr= stack.pop();
+			if(ptr==null) {
+				continue;
+			}
+			if(ptr.tag.equals(oldTag)) {
+				ptr.tag=newTag;
+				if(oldTag.equals("table")||"table".equals(newTag)) {
+					rows.renamed(ptr);
+				}
+			}
+			stack.push(ptr.sibling);
+			stack.push(ptr.firstChild);
+		}
 	}
-	
 	/**
 	 * Boldfaces every column of the given row of the table in the DOM tree. The boldface (b)
 	 * tag appears directly under the td tag of every column of this row.
 	 * 
+	 * The row of each table is found through the row index in O(1), so the cost is the number
+	 * of tables plus the number of cells bolded, however long the tables are.
+	 * 
 	 * @param row Row to bold, first row is numbered 1 (not 0).
+	 * @throws IllegalArgumentException If a table does not have the row; no table is changed
 	 */
 	public void boldRow(int row) {
-		/** COMPLETE THIS METHOD **/
+		long start= start();
+		if(row>=1) {
+			ArrayList<TagNode> tables= new ArrayList<TagNode>(rows.tables(root)); //outer tables first
+			checkRows(tables, row);
+			edited=true;
+			query=null;
+			for(TagNode table: tables) {
+				boldTableRow(rows.row(table, row));
+			}
+		}
+		stop(OpTimers.BOLD_ROW, start);
+	}
+	/*
+	 * Throws if a table will not have the row when its turn comes. A table that is a column of
+	 * a row bolded before it will have one row by then: the b put under it.
+	 */
+	private void checkRows(ArrayList<TagNode> tables, int row) {
+		Set<TagNode> wrapped= Collections.newSetFromMap(new IdentityHashMap<TagNode,Boolean>());
+		for(TagNode table: tables) {
+			TagNode columns;
+			if(wrapped.contains(table)) {
+				if(row!=1) {
+					throw new IllegalArgumentException("table has no row "+row);
+				}
+				columns= table.firstChild; //the b row holds what were the rows
+			}
+			else {
+				TagNode fc= rows.row(table, row); //null if there is no such row
+				if(fc==null) {
+					throw new IllegalArgumentException("table has no row "+row);
+				}
+				columns= fc.firstChild;
+			}
+			for(TagNode c= columns; c!=null; c=c.sibling) {
+				wrapped.add(c);
+			}
+		}
+	}
+	private void boldTableRow(TagNode fc) {
+        TagNode fam;
+        TagNode bold;
+        for(fam = fc.firstChild; fam != null; fam = fam.sibling){
+            bold = new TagNode("b",fam.firstChild,null);
+            fam.firstChild = bold;
+            rows.changed(fam);
+            if(index!=null) {
+                index.add(bold, fam);
+                for(TagNode c= bold.firstChild; c!=null; c=c.sibling) {
+                    index.setParent(c, bold);
+                }
+            }
+        }
 	}
 	
 	/**
@@ -67,7 +729,154 @@ public class Tree {
 	 * @param tag Tag to be removed, can be p, em, b, ol, or ul
 	 */
 	public void removeTag(String tag) {
-		/** COMPLETE THIS METHOD **/
+		long start= start();
+		edited=true;
+		query=null;
+		if(index!=null) { //only the matching tag nodes
+			if(tag.equals("p")||tag.equals("em")||tag.equals("b")||tag.equals("ol")||tag.equals("ul")) {
+				for(TagNode node: outermostFirst(index.get(tag))) {
+					if(index.contains(node) && node.tag.equals(tag)) { //not merged into its parent, or renamed to p under a list removed before it
+						removeIndexed(node, tag.equals("ol")||tag.equals("ul"));
+					}
+				}
+			}
+			stop(OpTimers.REMOVE_TAG, start);
+			return;
+		}
+		if(tag.equals("p")||tag.equals("em")||tag.equals("b")) {
+			removepemb(root,tag);
+		}
+		if(tag.equals("ol")||tag.equals("ul")) {
+			removeList(root, tag);
+		}
+		stop(OpTimers.REMOVE_TAG, start);
+	}
+	private void removepemb(TagNode root, String tag) {
+		Stack<TagNode> stack= new Stack<TagNode>();
+		Stack<TagNode> parents= new Stack<TagNode>(); //parent of each node on the stack
+		stack.push(root);
+		parents.push(null);
+		while(!stack.isEmpty()) {
+			TagNode ptr= stack.pop();
+			TagNode up= parents.pop();
+			if(ptr==null) {
+				continue;
+			}
+			while(ptr.tag.equals(tag)&&ptr.firstChild!=null) { //again if the first child had the same tag
+				liftFirstChild(ptr);
+				rows.changed(up);
+			}
+			stack.push(ptr.sibling);
+			parents.push(up);
+			stack.push(ptr.firstChild);
+			parents.push(ptr);
+		}
+	}
+	private void removeList(TagNode root, String tag) {
+		Stack<TagNode> stack= new Stack<TagNode>();
+		Stack<TagNode> parents= new Stack<TagNode>();
+		stack.push(root);
+		parents.push(null);
+		while(!stack.isEmpty()) {
+			TagNode ptr= stack.pop();
+			TagNode up= parents.pop();
+			if(ptr==null) {
+				continue;
+			}
+			if(ptr.tag.equals(tag)&&ptr.firstChild != null) {
+				for(TagNode liPtr = ptr.firstChild; liPtr!= null; liPtr = liPtr.sibling){ //change all li to p
+					liPtr.tag = "p"; 
+					rows.renamed(liPtr);
+				}
+				liftFirstChild(ptr);
+				rows.changed(up);
+			}
+			stack.push(ptr.sibling);
+			parents.push(up);
+			stack.push(ptr.firstChild);
+			parents.push(ptr);
+		}
+	}
+	/*
+	 * Removes a tag node by moving its first child's data into it, and its other children
+	 * in between it and its old siblings.
+	 */
+	private void liftFirstChild(TagNode root) {
+		rows.removed(root.firstChild); //its data moves into root
+		TagNode temp= root.sibling; //save sibling
+		root.tag=root.firstChild.tag; //transfer data
+		root.sibling= root.firstChild.sibling; //change pointer
+		root.firstChild=root.firstChild.firstChild;
+		TagNode ptr= root.sibling;
+		if(ptr!=null) {
+			while(ptr.sibling!=null) {
+				ptr=ptr.sibling;
+			}
+			ptr.sibling=temp;
+		}
+		else {
+			root.sibling=temp;
+		}
+		rows.renamed(root);
+	}
+	/*
+	 * Removes an indexed tag node as removepemb and removeList do: its first child moves
+	 * into it, and its other children in between it and its old siblings, again while the
+	 * first child has the same tag. For a list, the children are converted to p first. The
+	 * cost is the number of children moved, as no previous sibling has to be found.
+	 */
+	private void removeIndexed(TagNode node, boolean list) {
+		String tag= node.tag;
+		TagNode parent= index.parent(node);
+		while(node.tag.equals(tag)&&node.firstChild!=null) {
+			TagNode first= node.firstChild;
+			if(list) {
+				for(TagNode c= first; c!=null; c=c.sibling) {
+					index.rename(c, "p");
+					rows.renamed(c);
+				}
+			}
+			for(TagNode c= first.sibling; c!=null; c=c.sibling) {
+				index.setParent(c, parent);
+			}
+			for(TagNode c= first.firstChild; c!=null; c=c.sibling) {
+				index.setParent(c, node); //node takes the first child's place
+			}
+			index.remove(node);
+			index.remove(first);
+			liftFirstChild(node);
+			index.add(node, parent);
+			rows.changed(parent);
+		}
+	}
+	
+	/*
+	 * Sorts tag nodes so that every node comes after the ones that contain it, which is
+	 * the order in which removeTag walking the tree meets them. Depths are found through
+	 * the parent links of the index, each node's only once.
+	 */
+	private ArrayList<TagNode> outermostFirst(ArrayList<TagNode> nodes) {
+		final IdentityHashMap<TagNode,Integer> depth= new IdentityHashMap<TagNode,Integer>();
+		ArrayList<TagNode> path= new ArrayList<TagNode>();
+		for(TagNode node: nodes) {
+			TagNode ptr= node;
+			while(ptr!=null && !depth.containsKey(ptr)) {
+				path.add(ptr);
+				ptr= index.parent(ptr);
+			}
+			int d= ptr==null ? 0 : depth.get(ptr);
+			for(int i=path.size()-1; i>=0; i--) {
+				depth.put(path.get(i), ++d);
+			}
+			path.clear();
+		}
+		ArrayList<TagNode> sorted= new ArrayList<TagNode>(nodes);
+		Collections.sort(sorted, new Comparator<TagNode>() {
+			public int compare(TagNode a, TagNode b) {
+				return Integer.compare(depth.get(a), depth.get(b));
+			}
+		});
+		return sorted;
 	}
 	
 	/**
@@ -77,7 +886,512 @@ public class Tree {
 	 * @param tag Tag to be added
 	 */
 	public void addTag(String word, String tag) {
-		/** COMPLETE THIS METHOD **/
+		long start= start();
+		edited=true;
+		query=null;
+		if(tag.equals("em") || tag.equals("b")) {
+			addTag( root, null, new WordMatcher(word, tag));}
+		stop(OpTimers.ADD_TAG, start);
+	}
+	
+	/**
+	 * Adds tags around all occurrences of several words in the DOM tree, in a single traversal.
+	 * The words are compiled once into an Aho-Corasick automaton (see WordMatcher), so each
+	 * text node is scanned once for all of them. Words match as in addTag, including a
+	 * trailing punctuation mark on the last word of a line. Words whose tag is not em or b
+	 * are ignored. Each line is tagged left to right, so a blank between two tagged words is
+	 * dropped, as addTag does for two occurrences of its word. An occurrence that two words
+	 * match, such as "node." for node and node., is tagged once, with the tag of the word it
+	 * equals, or else the longest: addTag for each word in turn would tag it twice.
+	 * 
+	 * @param wordToTag Word -> tag to be added around it
+	 */
+	public void addTags(Map<String,String> wordToTag) {
+		long start= start();
+		edited=true;
+		query=null;
+		HashMap<String,String> valid= new HashMap<String,String>();
+		for(Map.Entry<String,String> e : wordToTag.entrySet()) {
+			if(e.getValue().equals("em") || e.getValue().equals("b")) {
+				valid.put(e.getKey(), e.getValue());
+			}
+		}
+		if(!valid.isEmpty()) {
+			addTag(root, null, new WordMatcher(valid));
+		}
+		stop(OpTimers.ADD_TAG, start);
+	}
+	private void addTag(TagNode root, TagNode parent, WordMatcher words) {
+		Stack<TagNode> stack= new Stack<TagNode>();
+		Stack<TagNode> parents= new Stack<TagNode>(); //parent of each node on the stack
+		stack.push(root);
+		parents.push(parent);
+		while(!stack.isEmpty()) {
+			TagNode ptr= stack.pop();
+			TagNode up= parents.pop();
+			if(ptr==null) {
+				continue;
+			}
+			TagNode oldSibling= ptr.sibling; //saved before the text is split
+			stack.push(oldSibling);
+			parents.push(up);
+			if(ptr.firstChild != null) {
+				stack.push(ptr.firstChild);
+				parents.push(ptr);
+				continue;
+			}
+			ptr.sibling=null; //if it's a text node, split it, then re-link the old siblings after the pieces
+			for(TagNode text= ptr; text!=null; ) {
+				text= tagText(text, up, words);
+			}
+			TagNode last= ptr;
+			while(last.sibling!=null) {
+				last=last.sibling;
+			}
+			last.sibling=oldSibling;
+		}
+	}
+	/*
+	 * Adds a tag around the first occurrence of any of the words in a text node with no sibling.
+	 * The text after the word becomes a new text node at the end, which is returned so it can be
+	 * searched next; null if there is no occurrence or no text after it.
+	 */
+	private TagNode tagText(TagNode root, TagNode parent, WordMatcher words) {
+		if(words.find(root.tag.toLowerCase())) {
+			String before="";
+			String after="";
+			StringTokenizer str = new StringTokenizer(root.tag, " ", true);
+			while(str.hasMoreTokens()) {
+				String token= str.nextToken();
+				String tag= words.tagFor(token, !str.hasMoreTokens());
+				
+				if(tag==null) {
+					before+=token;
+				}
+				
+				if(tag!=null) { //time to add the tag
+					if(index!=null) {
+						synchronized(index) { //text nodes may be split in parallel
+							index.remove(root); //added back with its new text or tag
+						}
+					}
+					root.tag=before;
+					while(str.hasMoreTokens()) {
+						after+=str.nextToken();
+					}
+					
+					TagNode tokenNode = new TagNode(token, null, null); //node of the token(target) to be put as the firstChild of TagNode adding
+					TagNode afterNode= new TagNode(after, null,null); //
+					if(after.equals("")) {
+						afterNode=null;
+					}
+					TagNode adding= new TagNode(tag, tokenNode, null);
+					if(root.tag.equals("")||root.tag.equals(" ")) {
+						root.tag=tag;
+						root.firstChild=tokenNode;
+						root.sibling=afterNode;
+						adding=root;
+					}
+					else {
+						root.sibling=adding;
+						adding.sibling=afterNode;
+					}
+					if(index!=null) {
+						synchronized(index) {
+							index.add(root, parent);
+							if(adding!=root) {
+								index.add(adding, parent);
+							}
+							index.add(tokenNode, adding);
+							if(afterNode!=null) {
+								index.add(afterNode, parent);
+							}
+						}
+					}
+					synchronized(rows) {
+						rows.changed(parent);
+					}
+					return afterNode;
+				}
+			}//while
+		}
+		return null;
+	}
+	
+	/**
+	 * Replaces all occurrences of an old tag in the DOM tree with a new tag, processing
+	 * subtrees in parallel on a fork-join pool. The resulting tree is the same as with
+	 * replaceTag(oldTag, newTag). An indexed tree only visits the matching nodes, so it
+	 * uses the sequential path.
+	 * 
+	 * @param oldTag Old tag
+	 * @param newTag Replacement tag
+	 * @param pool Pool to run on
+	 */
+	public void replaceTag(String oldTag, String newTag, ForkJoinPool pool) {
+		edited=true;
+		query=null;
+		if(index!=null || oldTag==null || newTag==null) {
+			replaceTag(oldTag, newTag); //timed there
+			return;
+		}
+		long start= start();
+		pool.invoke(new TransformTask(null, root, null, oldTag, newTag, null));
+		stop(OpTimers.REPLACE_TAG, start);
+	}
+	
+	/**
+	 * Adds a tag around all occurrences of a word in the DOM tree, processing subtrees in
+	 * parallel on a fork-join pool. The resulting tree is the same as with addTag(word, tag).
+	 * 
+	 * @param word Word around which tag is to be added
+	 * @param tag Tag to be added
+	 * @param pool Pool to run on
+	 */
+	public void addTag(String word, String tag, ForkJoinPool pool) {
+		long start= start();
+		edited=true;
+		query=null;
+		if(tag.equals("em") || tag.equals("b")) {
+			pool.invoke(new TransformTask(null, root, null, null, null, new WordMatcher(word, tag)));
+		}
+		stop(OpTimers.ADD_TAG, start);
+	}
+	
+	/**
+	 * Fork-join task that applies replaceTag or addTag to a sibling list and everything under
+	 * it. Each sibling list is handled by exactly one task, and both transforms only change
+	 * the node being visited and the links of its own list, so tasks never touch the same
+	 * links. The task walks its nodes with a stack of its own, so a deep chain of elements
+	 * takes no thread stack. Only an element that has siblings, and at least FORK_THRESHOLD
+	 * nodes under it, is handed to a new task, and only while the pool is short of queued
+	 * work. Counting the nodes under an element is paid for by the nodes the task has walked,
+	 * so a long chain of large elements is not counted over and over. A task never waits for
+	 * the ones it forks: it completes when they all have (see CountedCompleter), so tasks do
+	 * not pile up on a thread's stack either.
+	 */
+	private class TransformTask extends CountedCompleter<Void> {
+		
+		private static final long serialVersionUID = 1L;
+		
+		/**
+		 * Smallest subtree that is forked as a separate task
+		 */
+		static final int FORK_THRESHOLD = 4096;
+		
+		private TagNode first, parent;
+		private String oldTag, newTag;
+		private WordMatcher words;
+		
+		/**
+		 * Nodes this task may still walk to count the nodes under an element: one more for
+		 * every node it transforms
+		 */
+		private long budget;
+		
+		/**
+		 * Scratch stacks for count and for walks that do not fork, reused across calls
+		 */
+		private Stack<TagNode> sizing = new Stack<TagNode>();
+		private Stack<TagNode> smallLists = new Stack<TagNode>(), smallParents = new Stack<TagNode>();
+		
+		/*
+		 * For replaceTag words is null; for addTag the tags are null. The task that forked
+		 * this one completes after it; null for the first task, which may count right away.
+		 */
+		TransformTask(TransformTask forker, TagNode first, TagNode parent, String oldTag, String newTag, WordMatcher words) {
+			super(forker);
+			budget = forker == null ? FORK_THRESHOLD : 0;
+			this.first = first;
+			this.parent = parent;
+			this.oldTag = oldTag;
+			this.newTag = newTag;
+			this.words = words;
+		}
+		
+		public void compute() {
+			walk(first, parent, true);
+			tryComplete();
+		}
+		
+		/*
+		 * Applies the transform to a sibling list and everything under it. If split is false,
+		 * nothing is forked: the whole walk is done by this task.
+		 */
+		private void walk(TagNode list, TagNode parent, boolean split) {
+			Stack<TagNode> lists = split ? new Stack<TagNode>() : smallLists; //sibling lists still to walk, and their parents
+			Stack<TagNode> parents = split ? new Stack<TagNode>() : smallParents;
+			lists.push(list);
+			parents.push(parent);
+			while(!lists.isEmpty()) {
+				TagNode up = parents.pop();
+				TagNode head = lists.pop();
+				TagNode next;
+				for(TagNode ptr = head; ptr != null; ptr = next) {
+					next = ptr.sibling;
+					budget++;
+					if(ptr.firstChild != null) {
+						boolean siblings = ptr != head || next != null; //an only child is walked here
+						if(split && siblings && budget >= FORK_THRESHOLD && getSurplusQueuedTaskCount() < 2) {
+							int n = count(ptr.firstChild, FORK_THRESHOLD);
+							budget -= n;
+							if(n >= FORK_THRESHOLD) {
+								addToPendingCount(1);
+								new TransformTask(this, ptr.firstChild, ptr, oldTag, newTag, words).fork();
+							}
+							else {
+								walk(ptr.firstChild, ptr, false); //small, never split further
+							}
+						}
+						else {
+							lists.push(ptr.firstChild);
+							parents.push(ptr);
+						}
+					}
+					if(words == null) {
+						if(ptr.tag.equals(oldTag)) {
+							ptr.tag = newTag;
+							if(oldTag.equals("table") || "table".equals(newTag)) {
+								synchronized(rows) {
+									rows.renamed(ptr);
+								}
+							}
+						}
+					}
+					else if(ptr.firstChild == null) { //split a text node, keeping next after the pieces
+						ptr.sibling = null;
+						for(TagNode text = ptr; text != null; ) {
+							text = tagText(text, up, words);
+						}
+						TagNode last = ptr;
+						while(last.sibling != null) {
+							last = last.sibling;
+						}
+						last.sibling = next;
+					}
+				}
+			}
+		}
+		
+		/*
+		 * Counts the nodes of a sibling list and everything under it, up to at most max.
+		 */
+		private int count(TagNode list, int max) {
+			Stack<TagNode> stack = sizing;
+			stack.clear();
+			stack.push(list);
+			int n = 0;
+			while(!stack.isEmpty()) {
+				for(TagNode ptr = stack.pop(); ptr != null; ptr = ptr.sibling) {
+					if(++n >= max) {
+						return n;
+					}
+					if(ptr.firstChild != null) {
+						stack.push(ptr.firstChild);
+					}
+				}
+			}
+			return n;
+		}
+	}
+	/**
+	 * Applies a script of operations to the DOM tree in a single traversal. The result is the
+	 * same as calling the operations one after another on a tree that is not indexed. The tree
+	 * is walked once, every node going through the chain of operations, and a new tree is
+	 * built from what comes out, so 30 queued operations cost about as much as one or two
+	 * separate ones. If an operation fails, the tree is left as it was: its nodes, its indexes,
+	 * and whether patch may still be applied to it.
+	 * 
+	 * @param script Operations, in order
+	 * @throws IllegalArgumentException If a boldRow operation meets a table without that row
+	 */
+	public void edit(EditScript script) {
+		if(script.size()==0) {
+			return;
+		}
+		long start= start();
+		final TagNode oldRoot= root;
+		final TagIndex oldIndex= index;
+		final RowIndex oldRows= rows;
+		final Set<TagNode> oldEmpty= emptyElements;
+		final boolean oldEdited= edited;
+		final QueryIndex oldQuery= query;
+		final Stack<TagNode> tagstack = new Stack<TagNode>();
+		final Stack<TagNode> lastChild = new Stack<TagNode>();
+		lastChild.push(null);
+		HTMLHandler out= new HTMLHandler() { //builds the new tree, as build() does
+			public void startTag(String tag) {
+				append(tag, true, tagstack, lastChild);
+			}
+			public void endTag(String tag) {
+				close(tagstack, lastChild);
+			}
+			public void text(String text) {
+				append(text, false, tagstack, lastChild);
+			}
+			public void end() {
+			}
+		};
+		reset();
+		edited= true;
+		boolean done= false;
+		try {
+			HTMLHandler in= script.chain(out);
+			Stack<TagNode> open = new Stack<TagNode>(); //walk as getHTML does
+			TagNode ptr = oldRoot;
+			while(ptr != null || !open.isEmpty()) {
+				if(ptr == null) {
+					ptr = open.pop();
+					in.endTag(ptr.tag);
+					ptr = ptr.sibling;
+				}
+				else if(ptr.firstChild == null) {
+					in.text(ptr.tag);
+					ptr = ptr.sibling;
+				}
+				else {
+					in.startTag(ptr.tag);
+					open.push(ptr);
+					ptr = ptr.firstChild;
+				}
+			}
+			in.end();
+			done= true;
+		} catch (IOException e) { //the tree builder does not throw
+			throw new UncheckedIOException(e);
+		} finally {
+			if(!done) {
+				root= oldRoot;
+				index= oldIndex;
+				rows= oldRows;
+				emptyElements= oldEmpty;
+				edited= oldEdited;
+				query= oldQuery;
+			}
+		}
+		stop(OpTimers.EDIT, start);
+	}
+	
+	/**
+	 * Finds the elements that match a selector, such as "table > tr:nth-child(2) td" (see
+	 * Selector). The first select after the tree is built or changed indexes its elements in
+	 * one walk (see QueryIndex); after that, each select only looks at the elements with the
+	 * tags it names, so running many selectors on one tree is cheap.
+	 * 
+	 * @param selector Compiled selector
+	 * @return Matching elements, in document order
+	 */
+	public ArrayList<TagNode> select(Selector selector) {
+		QueryIndex q= query;
+		if(q==null) {
+			q= new QueryIndex(root, emptyElements);
+			query= q;
+		}
+		return q.select(selector);
+	}
+	
+	/**
+	 * Finds the elements that match a selector, as select(Selector.compile(selector)).
+	 * 
+	 * @param selector Selector
+	 * @return Matching elements, in document order
+	 * @throws IllegalArgumentException If the selector is malformed
+	 */
+	public ArrayList<TagNode> select(String selector) {
+		return select(Selector.compile(selector));
+	}
+	
+	/**
+	 * Makes an immutable snapshot of the DOM tree as it is now. Operations on the snapshot
+	 * return new snapshots that share unchanged nodes with it, and it can be read from any
+	 * number of threads while the tree or other snapshots are changed.
+	 * 
+	 * @return Snapshot of the tree
+	 */
+	public Snapshot snapshot() {
+		return Snapshot.of(root);
+	}
+	
+	/**
+	 * Turns timing of the operations on or off. While on, every build, load, replaceTag,
+	 * boldRow, removeTag, addTag(s), edit, getHTML and writeHTML call is counted and timed, and
+	 * the figures are in stats(); turning it off drops them. While off, each operation
+	 * only checks one field.
+	 * 
+	 * @param on True to time operations
+	 */
+	public void setInstrumented(boolean on) {
+		if(!on) {
+			timers= null;
+		}
+		else if(timers==null) {
+			timers= new OpTimers();
+		}
+	}
+	
+	/**
+	 * Gets the size and shape of the DOM tree as it is now, with an estimate of the memory
+	 * it holds, and the operation timings if the tree is instrumented. Walks the whole tree.
+	 * 
+	 * @return Stats of the tree
+	 */
+	public TreeStats stats() {
+		return new TreeStats(root, emptyElements, timers);
+	}
+	
+	/*
+	 * Stats with the timings only, without walking the tree.
+	 */
+	TreeStats timings() {
+		return new TreeStats(null, null, timers);
+	}
+	
+	/**
+	 * Registers a TreeStatsMXBean for this tree with the platform MBean server, so that
+	 * its stats can be watched from JConsole or any other JMX client while it is in use.
+	 * 
+	 * A Tree is not thread-safe, so the JMX threads never walk it. Instead, while the tree is
+	 * registered, the thread that changes it takes stats() at the end of every operation that
+	 * changes it, which costs one walk of the tree per operation; the structure attributes all
+	 * come from the latest of these. The timing attributes are read as they are. Unregistering
+	 * the bean stops the walks. A tree publishes to the bean it was registered as last.
+	 * 
+	 * @param name Name of the tree, unique among registered trees
+	 * @return Name it was registered under, structures:type=Tree,name=...
+	 * @throws JMException If the name is malformed or already registered
+	 */
+	public ObjectName registerMBean(String name) 
+	throws JMException {
+		ObjectName on= new ObjectName("structures:type=Tree,name=" + ObjectName.quote(name));
+		TreeMonitor m= new TreeMonitor(this, stats());
+		ManagementFactory.getPlatformMBeanServer().registerMBean(m, on);
+		monitor= m;
+		return on;
+	}
+	
+	/*
+	 * Hands new stats to the JMX view, if the tree is registered; called at the end of every
+	 * operation that changes the tree.
+	 */
+	private void changed() {
+		TreeMonitor m= monitor;
+		if(m!=null) {
+			m.publish(stats());
+		}
+	}
+	
+	private long start() {
+		return timers==null ? 0 : System.nanoTime();
+	}
+	
+	private void stop(int op, long start) {
+		OpTimers t= timers;
+		if(t!=null && start!=0) { //not turned on during the call
+			t.record(op, start);
+		}
+		if(op!=OpTimers.GET_HTML) {
+			changed();
+		}
 	}
 	
 	/**
@@ -88,24 +1402,73 @@ public class Tree {
 	 * @return HTML string, including new lines. 
 	 */
 	public String getHTML() {
+		long start = start();
 		StringBuilder sb = new StringBuilder();
-		getHTML(root, sb);
-		return sb.toString();
+		try {
+			getHTML(root, sb);
+		} catch (IOException e) { // StringBuilder does not throw
+			throw new UncheckedIOException(e);
+		}
+		String html = sb.toString();
+		stop(OpTimers.GET_HTML, start);
+		return html;
+	}
+	
+	/**
+	 * Writes the HTML represented by this DOM tree to a writer, exactly as returned by getHTML.
+	 * Output goes through a fixed-size buffer, so the whole document is never held in memory.
+	 * The writer is flushed but not closed.
+	 * 
+	 * @param out Writer
+	 * @throws IOException If writing fails
+	 */
+	public void writeHTML(Writer out) 
+	throws IOException {
+		long start = start();
+		HTMLOutput buf = new HTMLOutput(out);
+		getHTML(root, buf);
+		buf.flush();
+		stop(OpTimers.GET_HTML, start);
+	}
+	
+	/**
+	 * Writes the HTML represented by this DOM tree to a channel, as the UTF-8 bytes of the
+	 * string returned by getHTML. Output is encoded through fixed-size buffers, so the whole
+	 * document is never held in memory. The channel is not closed.
+	 * 
+	 * @param out Channel
+	 * @throws IOException If writing fails
+	 */
+	public void writeHTML(WritableByteChannel out) 
+	throws IOException {
+		long start = start();
+		HTMLOutput buf = new HTMLOutput(out);
+		getHTML(root, buf);
+		buf.flush();
+		stop(OpTimers.GET_HTML, start);
 	}
 	
-	private void getHTML(TagNode root, StringBuilder sb) {
-		for (TagNode ptr=root; ptr != null;ptr=ptr.sibling) {
-			if (ptr.firstChild == null) {
+	private void getHTML(TagNode root, Appendable sb) 
+	throws IOException {
+		Stack<TagNode> open = new Stack<TagNode>(); // tags whose end tag is still to be written
+		TagNode ptr = root;
+		while (ptr != null || !open.isEmpty()) {
+			if (ptr == null) {
+				ptr = open.pop();
+				sb.append("</");
+				sb.append(ptr.tag);
+				sb.append(">\n");
+				ptr = ptr.sibling;
+			} else if (ptr.firstChild == null) {
 				sb.append(ptr.tag);
 				sb.append("\n");
+				ptr = ptr.sibling;
 			} else {
 				sb.append("<");
 				sb.append(ptr.tag);
 				sb.append(">\n");
-				getHTML(ptr.firstChild, sb);
-				sb.append("</");
-				sb.append(ptr.tag);
-				sb.append(">\n");	
+				open.push(ptr);
+				ptr = ptr.firstChild;
 			}
 		}
 	}
@@ -115,23 +1478,28 @@ public class Tree {
 	 *
 	 */
 	public void print() {
-		print(root, 1);
-	}
-	
-	private void print(TagNode root, int level) {
-		for (TagNode ptr=root; ptr != null;ptr=ptr.sibling) {
-			for (int i=0; i < level-1; i++) {
+		Stack<TagNode> open = new Stack<TagNode>(); // ancestors of ptr; level is open.size()+1
+		TagNode ptr = root;
+		while (ptr != null || !open.isEmpty()) {
+			if (ptr == null) {
+				ptr = open.pop().sibling;
+				continue;
+			}
+			for (int i=0; i < open.size(); i++) {
 				System.out.print("      ");
 			};
-			if (root != this.root) {
+			if (!open.isEmpty()) {
 				System.out.print("|----");
 			} else {
 				System.out.print("     ");
 			}
 			System.out.println(ptr.tag);
 			if (ptr.firstChild != null) {
-				print(ptr.firstChild, level+1);
+				open.push(ptr);
+				ptr = ptr.firstChild;
+			} else {
+				ptr = ptr.sibling;
 			}
 		}
 	}
-}
+}
\ No newline at end of file
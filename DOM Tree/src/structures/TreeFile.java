@@ -0,0 +1,295 @@
+package structures;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Set;
+
+/**
+ * Binary file format for DOM trees, written by Tree.save and read by Tree.load. Loading a
+ * tree from this format skips all the line scanning of build: the file is memory-mapped and
+ * read as a stream of tokens, TEXT, START or END, and every tag name is decoded once however
+ * many elements use it.
+ *
+ * Layout, where n is an unsigned variable-length integer (7 bits per byte, low bits first,
+ * high bit set on all bytes but the last):
+ *
+ * <pre>
+ * "DOMT" 1               magic and version
+ * n (n bytes)...          number of distinct tag names, then each one as length and UTF-8 bytes
+ * token...                the nodes in document order, as in the HTML input:
+ *   n = index*4 + 1         start tag, index into the tag names
+ *   n = 2                   end tag
+ *   n = length*4 + 0        line of text, followed by its UTF-8 bytes
+ *   n = 3                   end of the tree
+ * </pre>
+ *
+ * An element with no children, such as &lt;ol&gt;&lt;/ol&gt;, is written as a start tag and an
+ * end tag, as in the input, so Tree.load knows it for an empty element as build does. A loaded
+ * tree is the same as one built from the HTML the saved tree was built from.
+ *
+ */
+public class TreeFile {
+
+	/**
+	 * File signature and format version
+	 */
+	private static final byte[] MAGIC = {'D', 'O', 'M', 'T', 1};
+
+	/**
+	 * Bytes mapped at a time; a token longer than this gets a window of its own
+	 */
+	private static final int WINDOW = 64<<20;
+
+	/**
+	 * Token kinds, which are the low two bits of each token number in the file
+	 */
+	public static final byte TEXT=0, START=1, END=2;
+
+	private static final int EOF = 3;
+
+	/**
+	 * Writes a tree.
+	 *
+	 * @param root First top-level node
+	 * @param empty Elements with no children, which print as text
+	 * @param file File to write
+	 * @throws IOException If writing fails
+	 */
+	static void write(TagNode root, Set<TagNode> empty, File file)
+	throws IOException {
+		HashMap<String,Integer> tags = new HashMap<String,Integer>();
+		ArrayList<String> names = new ArrayList<String>();
+		Stack<TagNode> stack = new Stack<TagNode>();
+		stack.push(root);
+		while (!stack.isEmpty()) { // collect the tag names
+			TagNode ptr = stack.pop();
+			if (ptr == null) {
+				continue;
+			}
+			if ((ptr.firstChild != null || empty.contains(ptr)) && !tags.containsKey(ptr.tag)) {
+				tags.put(ptr.tag, names.size());
+				names.add(ptr.tag);
+			}
+			stack.push(ptr.sibling);
+			stack.push(ptr.firstChild);
+		}
+		OutputStream out = new BufferedOutputStream(new FileOutputStream(file), 1<<16);
+		try {
+			out.write(MAGIC);
+			writeNumber(out, names.size());
+			for (String name: names) {
+				byte[] b = name.getBytes(StandardCharsets.UTF_8);
+				writeNumber(out, b.length);
+				out.write(b);
+			}
+			Stack<TagNode> open = new Stack<TagNode>();
+			TagNode ptr = root;
+			while (ptr != null || !open.isEmpty()) { // walk as getHTML does
+				if (ptr == null) {
+					ptr = open.pop();
+					writeNumber(out, END);
+					ptr = ptr.sibling;
+				} else if (ptr.firstChild == null && empty.contains(ptr)) {
+					writeNumber(out, (long)tags.get(ptr.tag)*4 + START);
+					writeNumber(out, END);
+					ptr = ptr.sibling;
+				} else if (ptr.firstChild == null) {
+					byte[] b = ptr.tag.getBytes(StandardCharsets.UTF_8);
+					writeNumber(out, (long)b.length*4 + TEXT);
+					out.write(b);
+					ptr = ptr.sibling;
+				} else {
+					writeNumber(out, (long)tags.get(ptr.tag)*4 + START);
+					open.push(ptr);
+					ptr = ptr.firstChild;
+				}
+			}
+			writeNumber(out, EOF);
+		} finally {
+			out.close();
+		}
+	}
+
+	private static void writeNumber(OutputStream out, long n)
+	throws IOException {
+		while (n >= 0x80) {
+			out.write((int)(n & 0x7F) | 0x80);
+			n >>>= 7;
+		}
+		out.write((int)n);
+	}
+
+	private final RandomAccessFile raf;
+	private final FileChannel channel;
+	private final long length;
+
+	/**
+	 * Mapped window of the file, and its position in the file
+	 */
+	private MappedByteBuffer buf;
+	private long base;
+
+	private String[] names;
+	private byte[] scratch = new byte[256];
+
+	/**
+	 * Current token
+	 */
+	private byte kind;
+	private String value;
+
+	/**
+	 * Opens a file written by Tree.save, and reads its tag names.
+	 *
+	 * @param file File to read
+	 * @throws IOException If the file cannot be read, or is not a tree file
+	 */
+	public TreeFile(File file)
+	throws IOException {
+		raf = new RandomAccessFile(file, "r");
+		channel = raf.getChannel();
+		length = channel.size();
+		try {
+			map(0, 0);
+			byte[] magic = new byte[MAGIC.length];
+			read(magic, magic.length);
+			for (int i=0; i < MAGIC.length; i++) {
+				if (magic[i] != MAGIC[i]) {
+					throw new IOException(file + " is not a DOM tree file");
+				}
+			}
+			names = new String[checked(readNumber())];
+			for (int i=0; i < names.length; i++) {
+				names[i] = readString(checked(readNumber()));
+			}
+		} catch (IOException e) {
+			close();
+			throw e;
+		}
+	}
+
+	/**
+	 * Advances to the next token.
+	 *
+	 * @return False at the end of the tree
+	 * @throws IOException If the file is cut short or damaged
+	 */
+	public boolean next()
+	throws IOException {
+		long n = readNumber();
+		if (n == EOF) {
+			return false;
+		}
+		kind = (byte)(n & 3);
+		if (kind == START) {
+			if (n/4 >= names.length) {
+				throw new IOException("bad tag index " + n/4);
+			}
+			value = names[(int)(n/4)];
+		} else if (kind == TEXT) {
+			value = readString(checked(n/4));
+		} else {
+			value = null;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the kind of the current token: TEXT, START or END.
+	 *
+	 * @return Token kind
+	 */
+	public byte kind() {
+		return kind;
+	}
+
+	/**
+	 * Returns the text or tag name of the current token, null for an end tag.
+	 *
+	 * @return Token value
+	 */
+	public String value() {
+		return value;
+	}
+
+	/**
+	 * Closes the file.
+	 *
+	 * @throws IOException If closing fails
+	 */
+	public void close()
+	throws IOException {
+		raf.close();
+	}
+
+	/*
+	 * Maps the window starting at a position of the file, at least need bytes long if the
+	 * file has that many.
+	 */
+	private void map(long pos, int need)
+	throws IOException {
+		long size = Math.min(length-pos, Math.max(WINDOW, need));
+		buf = channel.map(FileChannel.MapMode.READ_ONLY, pos, size);
+		base = pos;
+	}
+
+	/*
+	 * Makes sure the next n bytes are in the window.
+	 */
+	private void ensure(int n)
+	throws IOException {
+		if (buf.remaining() < n) {
+			long pos = base + buf.position();
+			if (length-pos < n) {
+				throw new IOException("tree file is cut short");
+			}
+			map(pos, n);
+		}
+	}
+
+	private long readNumber()
+	throws IOException {
+		long n = 0;
+		for (int shift=0; shift < 64; shift+=7) {
+			ensure(1);
+			byte b = buf.get();
+			n |= (long)(b & 0x7F) << shift;
+			if (b >= 0) {
+				return n;
+			}
+		}
+		throw new IOException("bad number in tree file");
+	}
+
+	private void read(byte[] b, int n)
+	throws IOException {
+		ensure(n);
+		buf.get(b, 0, n);
+	}
+
+	private String readString(int n)
+	throws IOException {
+		if (scratch.length < n) {
+			scratch = new byte[Math.max(n, scratch.length*2)];
+		}
+		read(scratch, n);
+		return new String(scratch, 0, n, StandardCharsets.UTF_8);
+	}
+
+	private int checked(long n)
+	throws IOException {
+		if (n > Integer.MAX_VALUE - 8) {
+			throw new IOException("bad length in tree file: " + n);
+		}
+		return (int)n;
+	}
+}
@@ -0,0 +1,125 @@
+package structures;
+
+/**
+ * An editable DOM tree with undo and redo, kept as a sequence of snapshots. Each operation
+ * makes a new snapshot from the current one, which shares every unchanged node with it, and
+ * becomes the current one; undo and redo only move between snapshots already made, in O(1).
+ *
+ * Readers get the current snapshot with current() and can read it for as long as they like
+ * without locking, while edits, undos and redos go on: a snapshot never changes, and a reader
+ * sees either all of an operation or none of it. Edits, undo and redo are synchronized with
+ * each other.
+ *
+ */
+public class TreeHistory {
+
+	/**
+	 * Current version, replaced as a whole by each edit, undo or redo
+	 */
+	private volatile Snapshot current;
+
+	/**
+	 * Versions before the current one, most recent on top, and versions undone
+	 */
+	private Stack<Snapshot> undo, redo;
+
+	/**
+	 * Initializes the history with a first version, which cannot be undone.
+	 *
+	 * @param initial First version, for instance from Tree.snapshot
+	 */
+	public TreeHistory(Snapshot initial) {
+		current = initial;
+		undo = new Stack<Snapshot>();
+		redo = new Stack<Snapshot>();
+	}
+
+	/**
+	 * Returns the current version.
+	 *
+	 * @return Current snapshot
+	 */
+	public Snapshot current() {
+		return current;
+	}
+
+	/**
+	 * Replaces all occurrences of an old tag with a new tag, as Snapshot.replaceTag.
+	 *
+	 * @param oldTag Old tag
+	 * @param newTag Replacement tag
+	 */
+	public synchronized void replaceTag(String oldTag, String newTag) {
+		commit(current.replaceTag(oldTag, newTag));
+	}
+
+	/**
+	 * Removes all occurrences of a tag, as Snapshot.removeTag.
+	 *
+	 * @param tag Tag to be removed, can be p, em, b, ol, or ul
+	 */
+	public synchronized void removeTag(String tag) {
+		commit(current.removeTag(tag));
+	}
+
+	/**
+	 * Boldfaces every column of the given row of every table, as Snapshot.boldRow. If a
+	 * table does not have the row, nothing changes.
+	 *
+	 * @param row Row to bold, first row is numbered 1 (not 0).
+	 * @throws IllegalArgumentException If a table does not have the row
+	 */
+	public synchronized void boldRow(int row) {
+		commit(current.boldRow(row));
+	}
+
+	/**
+	 * Adds a tag around all occurrences of a word, as Snapshot.addTag.
+	 *
+	 * @param word Word around which tag is to be added
+	 * @param tag Tag to be added
+	 */
+	public synchronized void addTag(String word, String tag) {
+		commit(current.addTag(word, tag));
+	}
+
+	/**
+	 * Goes back to the version before the last edit that has not been undone.
+	 *
+	 * @return False if there is nothing to undo
+	 */
+	public synchronized boolean undo() {
+		if (undo.isEmpty()) {
+			return false;
+		}
+		redo.push(current);
+		current = undo.pop();
+		return true;
+	}
+
+	/**
+	 * Goes forward to the version of the last edit undone, if there has been no edit since.
+	 *
+	 * @return False if there is nothing to redo
+	 */
+	public synchronized boolean redo() {
+		if (redo.isEmpty()) {
+			return false;
+		}
+		undo.push(current);
+		current = redo.pop();
+		return true;
+	}
+
+	/*
+	 * Makes a new version current. An edit that changed nothing is not recorded.
+	 */
+	private void commit(Snapshot next) {
+		if (next == current) {
+			return;
+		}
+		undo.push(current);
+		redo.clear();
+		current = next;
+	}
+}
@@ -0,0 +1,106 @@
+package structures;
+
+import java.util.Map;
+
+import javax.management.MBeanRegistration;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * JMX view of a live tree, registered by Tree.registerMBean. The structure attributes are
+ * read from the stats the tree's own thread published at the end of its latest change, so
+ * the JMX threads never walk a tree that may be changing, and the attributes of one refresh
+ * agree with each other. The timing attributes are read from the tree's timers, which are
+ * safe to read from any thread.
+ *
+ */
+class TreeMonitor implements TreeStatsMXBean, MBeanRegistration {
+
+	private final Tree tree;
+
+	/**
+	 * Stats of the tree at the end of its latest change
+	 */
+	private volatile TreeStats stats;
+
+	TreeMonitor(Tree tree, TreeStats stats) {
+		this.tree = tree;
+		this.stats = stats;
+	}
+
+	/**
+	 * Replaces the stats; called by the thread that changes the tree.
+	 *
+	 * @param stats New stats
+	 */
+	void publish(TreeStats stats) {
+		this.stats = stats;
+	}
+
+	public int getNodeCount() {
+		return stats.getNodeCount();
+	}
+
+	public int getElementCount() {
+		return stats.getElementCount();
+	}
+
+	public int getTextCount() {
+		return stats.getTextCount();
+	}
+
+	public int getMaxDepth() {
+		return stats.getMaxDepth();
+	}
+
+	public long getEstimatedBytes() {
+		return stats.getEstimatedBytes();
+	}
+
+	public Map<String,Integer> getCountsByTag() {
+		return stats.getCountsByTag();
+	}
+
+	public int[] getDepthHistogram() {
+		return stats.getDepthHistogram();
+	}
+
+	public int[] getFanOutHistogram() {
+		return stats.getFanOutHistogram();
+	}
+
+	public boolean isInstrumented() {
+		return tree.timers != null;
+	}
+
+	public Map<String,Long> getOperationCounts() {
+		return tree.timings().getOperationCounts();
+	}
+
+	public Map<String,Long> getOperationNanos() {
+		return tree.timings().getOperationNanos();
+	}
+
+	public Map<String,Long> getOperationMaxNanos() {
+		return tree.timings().getOperationMaxNanos();
+	}
+
+	public ObjectName preRegister(MBeanServer server, ObjectName name) {
+		return name;
+	}
+
+	public void postRegister(Boolean done) {
+	}
+
+	public void preDeregister() {
+	}
+
+	/*
+	 * Stops the tree publishing stats once nothing reads them.
+	 */
+	public void postDeregister() {
+		if (tree.monitor == this) {
+			tree.monitor = null;
+		}
+	}
+}
@@ -0,0 +1,218 @@
+package structures;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * Size, shape and timings of a DOM tree at one moment, returned by Tree.stats. The structure
+ * figures come from one walk of the tree; the timings are those of the operations since the
+ * tree was instrumented (see Tree.setInstrumented), and are all zero if it is not.
+ *
+ * Retained bytes are an estimate for a 64-bit JVM with compressed references: 24 bytes per
+ * node, plus 24 bytes per distinct String object and 16 bytes plus its characters (one byte
+ * each, or two if any is outside Latin-1) for its array, all rounded up to 8. Strings shared
+ * between nodes are counted once. The tag and row indexes are not counted.
+ *
+ */
+public class TreeStats {
+
+	private int nodes, elements, texts;
+	private long bytes;
+	private TreeMap<String,Integer> byTag;
+	private int[] depths, fanOuts;
+	private boolean instrumented;
+	private long[] count, total, max;
+
+	/**
+	 * Walks a tree and reads its timers.
+	 *
+	 * @param root First top-level node
+	 * @param emptyElements Nodes with no children that are elements, not text
+	 * @param timers Timers, null if the tree is not instrumented
+	 */
+	TreeStats(TagNode root, Set<TagNode> emptyElements, OpTimers timers) {
+		byTag = new TreeMap<String,Integer>();
+		depths = new int[0];
+		fanOuts = new int[0];
+		Set<String> strings = Collections.newSetFromMap(new IdentityHashMap<String,Boolean>());
+		Stack<TagNode> stack = new Stack<TagNode>();
+		IntStack level = new IntStack();
+		for (TagNode ptr=root; ptr != null; ptr=ptr.sibling) {
+			stack.push(ptr);
+			level.push(0);
+		}
+		while (!stack.isEmpty()) {
+			TagNode ptr = stack.pop();
+			int depth = level.pop();
+			nodes++;
+			bytes += 24;
+			if (strings.add(ptr.tag)) {
+				bytes += stringBytes(ptr.tag);
+			}
+			if (depth >= depths.length) {
+				depths = Arrays.copyOf(depths, Math.max(depth+1, depths.length*2));
+			}
+			depths[depth]++;
+			if (ptr.firstChild == null && !emptyElements.contains(ptr)) {
+				texts++;
+				continue;
+			}
+			elements++;
+			Integer n = byTag.get(ptr.tag);
+			byTag.put(ptr.tag, n == null ? 1 : n+1);
+			int children = 0;
+			for (TagNode c=ptr.firstChild; c != null; c=c.sibling) {
+				stack.push(c);
+				level.push(depth+1);
+				children++;
+			}
+			if (children > 0) {
+				int bucket = 31 - Integer.numberOfLeadingZeros(children); // 1, 2-3, 4-7, ...
+				if (bucket >= fanOuts.length) {
+					fanOuts = Arrays.copyOf(fanOuts, bucket+1);
+				}
+				fanOuts[bucket]++;
+			}
+		}
+		int deepest = depths.length-1;
+		while (deepest >= 0 && depths[deepest] == 0) {
+			deepest--;
+		}
+		depths = Arrays.copyOf(depths, deepest+1);
+		instrumented = timers != null;
+		if (timers != null) {
+			long[][] t = timers.read();
+			count = t[0];
+			total = t[1];
+			max = t[2];
+		} else {
+			count = new long[OpTimers.NAMES.length];
+			total = count;
+			max = count;
+		}
+	}
+
+	/**
+	 * @return Number of nodes, elements and text
+	 */
+	public int getNodeCount() {
+		return nodes;
+	}
+
+	/**
+	 * @return Number of element nodes
+	 */
+	public int getElementCount() {
+		return elements;
+	}
+
+	/**
+	 * @return Number of text nodes
+	 */
+	public int getTextCount() {
+		return texts;
+	}
+
+	/**
+	 * @return Depth of the deepest node, 0 for a top-level node, -1 for an empty tree
+	 */
+	public int getMaxDepth() {
+		return depths.length-1;
+	}
+
+	/**
+	 * @return Estimated bytes held by the nodes and their strings
+	 */
+	public long getEstimatedBytes() {
+		return bytes;
+	}
+
+	/**
+	 * @return Tag name -> number of elements with that tag, sorted by tag
+	 */
+	public Map<String,Integer> getCountsByTag() {
+		return Collections.unmodifiableMap(byTag);
+	}
+
+	/**
+	 * @return Number of nodes at each depth, from 0 to the maximum depth
+	 */
+	public int[] getDepthHistogram() {
+		return depths.clone();
+	}
+
+	/**
+	 * @return Number of elements with 1, 2-3, 4-7, 8-15, ... children; entry i counts
+	 * fan-outs from 2^i to 2^(i+1)-1
+	 */
+	public int[] getFanOutHistogram() {
+		return fanOuts.clone();
+	}
+
+	/**
+	 * @return True if the tree was instrumented when these stats were taken
+	 */
+	public boolean isInstrumented() {
+		return instrumented;
+	}
+
+	/**
+	 * @return Operation -> number of calls timed
+	 */
+	public Map<String,Long> getOperationCounts() {
+		return byOperation(count);
+	}
+
+	/**
+	 * @return Operation -> total time of the calls, in nanoseconds
+	 */
+	public Map<String,Long> getOperationNanos() {
+		return byOperation(total);
+	}
+
+	/**
+	 * @return Operation -> longest call, in nanoseconds
+	 */
+	public Map<String,Long> getOperationMaxNanos() {
+		return byOperation(max);
+	}
+
+	/* (non-Javadoc)
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		StringBuilder sb = new StringBuilder();
+		sb.append(nodes).append(" nodes (").append(elements).append(" elements, ").append(texts).append(" text), ");
+		sb.append("max depth ").append(getMaxDepth()).append(", about ").append(bytes >> 10).append(" KB\n");
+		sb.append("tags: ").append(byTag).append('\n');
+		sb.append("fan-out buckets (1, 2-3, 4-7, ...): ").append(Arrays.toString(fanOuts)).append('\n');
+		for (int op=0; op < OpTimers.NAMES.length; op++) {
+			if (count[op] > 0) {
+				sb.append(String.format("%-10s %6d calls, %10.3f ms total, %10.3f ms max%n",
+						OpTimers.NAMES[op], count[op], total[op]/1e6, max[op]/1e6));
+			}
+		}
+		return sb.toString();
+	}
+
+	private static long stringBytes(String s) {
+		boolean latin1 = true;
+		for (int i=0; i < s.length() && latin1; i++) {
+			latin1 = s.charAt(i) < 0x100;
+		}
+		long array = 16 + (latin1 ? s.length() : 2L*s.length());
+		return 24 + ((array+7) & ~7L);
+	}
+
+	private static Map<String,Long> byOperation(long[] values) {
+		TreeMap<String,Long> map = new TreeMap<String,Long>();
+		for (int op=0; op < values.length; op++) {
+			map.put(OpTimers.NAMES[op], values[op]);
+		}
+		return map;
+	}
+}
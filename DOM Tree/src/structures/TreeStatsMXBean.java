@@ -0,0 +1,71 @@
+package structures;
+
+import java.util.Map;
+
+/**
+ * Management interface of a tree registered with Tree.registerMBean. The structure attributes
+ * describe the tree at the end of its latest change (see Tree.registerMBean).
+ *
+ */
+public interface TreeStatsMXBean {
+
+	/**
+	 * @return Number of nodes, elements and text
+	 */
+	int getNodeCount();
+
+	/**
+	 * @return Number of element nodes
+	 */
+	int getElementCount();
+
+	/**
+	 * @return Number of text nodes
+	 */
+	int getTextCount();
+
+	/**
+	 * @return Depth of the deepest node, 0 for a top-level node, -1 for an empty tree
+	 */
+	int getMaxDepth();
+
+	/**
+	 * @return Estimated bytes held by the nodes and their strings
+	 */
+	long getEstimatedBytes();
+
+	/**
+	 * @return Tag name -> number of elements with that tag
+	 */
+	Map<String,Integer> getCountsByTag();
+
+	/**
+	 * @return Number of nodes at each depth
+	 */
+	int[] getDepthHistogram();
+
+	/**
+	 * @return Number of elements with 1, 2-3, 4-7, 8-15, ... children
+	 */
+	int[] getFanOutHistogram();
+
+	/**
+	 * @return True if operations are being timed
+	 */
+	boolean isInstrumented();
+
+	/**
+	 * @return Operation -> number of calls timed
+	 */
+	Map<String,Long> getOperationCounts();
+
+	/**
+	 * @return Operation -> total time of the calls, in nanoseconds
+	 */
+	Map<String,Long> getOperationNanos();
+
+	/**
+	 * @return Operation -> longest call, in nanoseconds
+	 */
+	Map<String,Long> getOperationMaxNanos();
+}
@@ -0,0 +1,1227 @@
+package structures;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringWriter;
+import java.io.UncheckedIOException;
+import java.lang.management.ManagementFactory;
+import java.nio.channels.Channels;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.Scanner;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ForkJoinPool;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Checks the classes and modes that offer the Tree operations another way against plain
+ * Tree, on random documents and random sequences of operations: the results must print the
+ * same HTML. Each check also runs a few documents built to hit a case that once went wrong.
+ *
+ * Usage: java structures.TreeTest [documents] [seed]
+ *
+ * Prints each failure, with the operations that led to it, then the number of documents
+ * checked; exits with status 1 on a failure.
+ *
+ */
+public class TreeTest {
+
+	/**
+	 * Operations: r = replaceTag, d = removeTag, a = addTag, b = boldRow
+	 */
+	static final String[][] OPS = {
+		{"r", "em", "b"}, {"r", "td", "th"}, {"r", "b", "em"}, {"r", "li", "p"}, {"r", "ol", "ul"},
+		{"r", "em", "ul"}, {"r", "p", "em"}, {"r", "ul", "p"}, {"r", "th", "td"},
+		{"d", "p"}, {"d", "em"}, {"d", "b"}, {"d", "ol"}, {"d", "ul"},
+		{"a", "the", "b"}, {"a", "tree", "em"}, {"a", "node", "b"}, {"a", "r1c2", "em"}, {"a", "em", "b"},
+		{"b", "1"}, {"b", "2"}
+	};
+
+	static final String[] WORDS = {
+		"the", "tree", "node", "a", "of", "R1C2", "em", "p", "The", "node.", "tree,", "child"
+	};
+
+	static final String[] ELEMENTS = {"p", "em", "b", "ol", "ul", "table", "p", "em"};
+
+	private static int failures;
+
+	public static void main(String[] args) {
+		int documents = args.length > 0 ? Integer.parseInt(args[0]) : 1000;
+		long seed = args.length > 1 ? Long.parseLong(args[1]) : 1;
+		checkChunked(documents, new Random(seed));
+		checkDeep();
+		checkWriter(documents, new Random(seed));
+		checkAddTags(documents, new Random(seed));
+		checkEditScript(documents, new Random(seed));
+		checkRows(documents, new Random(seed));
+		checkPatch(documents, new Random(seed));
+		checkSnapshot(documents, new Random(seed));
+		checkSelect(documents, new Random(seed));
+		checkStats(documents, new Random(seed));
+		checkMonitor(documents/10 + 1, new Random(seed));
+		checkGenerator();
+		checkCompact(documents, new Random(seed));
+		checkIndexed(documents, new Random(seed));
+		checkParallel(documents, new Random(seed));
+		checkSaved(documents, new Random(seed));
+		checkStreaming(documents, new Random(seed));
+		System.out.println(documents + " documents, " + failures + " failures");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/*
+	 * build(File, threads) against build(), plain and indexed, before and after the same
+	 * operations; and the tokens of ChunkedTokenizer against the lines of the file, with
+	 * chunks small enough that lines, and UTF-8 characters, are cut between them.
+	 */
+	static void checkChunked(int documents, Random random) {
+		File file;
+		try {
+			file = File.createTempFile("treetest", ".html");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		try {
+			compareChunked("UTF-8", "<html>\n<p>\nna\u00efve caf\u00e9 \u20ac5\n</p>\n<em>\n\u00fcber\n</em>\n</html>\n", ops(random, 4), true, file);
+			for (int d=0; d < documents; d++) {
+				compareChunked("document " + d, document(random, 20 + random.nextInt(200)), ops(random, 4), d % 2 == 0, file);
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static void compareChunked(String name, String html, String[][] ops, boolean indexed, File file) {
+		Tree tree = tree(html, indexed);
+		Tree chunked = new Tree(new Scanner(""), indexed);
+		try {
+			Files.write(file.toPath(), html.getBytes(StandardCharsets.UTF_8));
+			chunked.build(file, 3);
+			for (int chunk: new int[] {1, 7, 64}) {
+				StringBuilder sb = new StringBuilder();
+				ChunkedTokenizer tokens = new ChunkedTokenizer(file, 3, chunk);
+				try {
+					while (tokens.next()) {
+						switch (tokens.kind()) {
+						case ChunkedTokenizer.START: sb.append('<').append(tokens.value()).append(">\n"); break;
+						case ChunkedTokenizer.END: sb.append("</").append(tokens.value()).append(">\n"); break;
+						default: sb.append(tokens.value()).append('\n');
+						}
+					}
+				} finally {
+					tokens.close();
+				}
+				if (!html.equals(sb.toString())) {
+					fail("chunked", name, "tokens in chunks of " + chunk, html, sb.toString());
+					return;
+				}
+			}
+		} catch (IOException e) {
+			fail("chunked", name, "build", "", e.toString());
+			return;
+		}
+		compareOps("chunked", name, ops, tree, chunked);
+	}
+
+	/*
+	 * Every operation on a document 100000 elements deep, which must not overflow the stack:
+	 * Tree against the streaming filters, which keep their open elements on the heap, and an
+	 * indexed Tree and a CompactTree against Tree. Tables are nested in table cells, so boldRow
+	 * has work to do at every depth.
+	 */
+	static void checkDeep() {
+		String[] chain = {"p", "em", "table", "tr", "td", "ul", "li", "b", "ol", "li"};
+		StringBuilder sb = new StringBuilder();
+		int depth = 100000;
+		for (int i=0; i < depth; i++) {
+			sb.append('<').append(chain[i % chain.length]).append(">\n");
+			if (i % 3 == 0) {
+				sb.append("the tree ").append(i).append('\n');
+			}
+		}
+		for (int i=depth-1; i >= 0; i--) {
+			sb.append("</").append(chain[i % chain.length]).append(">\n");
+		}
+		String html = sb.toString();
+		String[][] ops = {{"r", "em", "b"}, {"a", "tree", "em"}, {"b", "1"}, {"d", "p"}, {"d", "ul"}, {"d", "b"}};
+		compareStreaming("deep", html, ops);
+		compareOps("indexed", "deep", ops, tree(html, false), tree(html, true));
+		compareCompact("deep", html, ops);
+	}
+
+	/*
+	 * writeHTML to a Writer and to a byte channel against getHTML, after random operations.
+	 * Characters outside the BMP are put where their surrogate pairs straddle the end of
+	 * the output buffer, and generated documents are many buffers long.
+	 */
+	static void checkWriter(int documents, Random random) {
+		for (int pad=HTMLOutput.BUFFER_SIZE-12; pad < HTMLOutput.BUFFER_SIZE+4; pad++) {
+			StringBuilder sb = new StringBuilder("<p>\n");
+			for (int i=0; i < pad; i++) {
+				sb.append('x');
+			}
+			sb.append("\n\ud83c\udf33 tree \u00e9t\u00e9 \ud83c\udf33\n</p>\n");
+			compareWriter("pad " + pad, sb.toString(), new String[0][]);
+		}
+		for (String shape: DocumentGenerator.SHAPES) {
+			compareWriter(shape, generate(shape, 1<<18, 1), ops(random, 4));
+		}
+		for (int d=0; d < documents; d++) {
+			compareWriter("document " + d, document(random, 20 + random.nextInt(200)), ops(random, 4));
+		}
+	}
+
+	private static void compareWriter(String name, String html, String[][] ops) {
+		Tree tree = tree(html, false);
+		for (String[] op: ops) {
+			apply(tree, op);
+		}
+		String expected = tree.getHTML();
+		StringWriter w = new StringWriter();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try {
+			tree.writeHTML(w);
+			tree.writeHTML(Channels.newChannel(bytes));
+		} catch (IOException e) { // neither output throws
+			throw new UncheckedIOException(e);
+		}
+		if (!expected.equals(w.toString())) {
+			fail("writer", name, "writeHTML(Writer)", expected, w.toString());
+		} else if (!Arrays.equals(expected.getBytes(StandardCharsets.UTF_8), bytes.toByteArray())) {
+			fail("writer", name, "writeHTML(WritableByteChannel)", expected, new String(bytes.toByteArray(), StandardCharsets.UTF_8));
+		}
+	}
+
+	/*
+	 * addTags against addTag called for each word in turn, on plain and indexed trees, with
+	 * up to five words that differ in lower case, in either case, some with a tag that is
+	 * neither em nor b. addTag keeps a line holding a single blank between two tagged words
+	 * that addTags drops, so such lines are left out of both. No two words match the same
+	 * occurrence, such as node and node., which addTags tags once and addTag twice.
+	 */
+	static void checkAddTags(int documents, Random random) {
+		for (int d=0; d < documents; d++) {
+			String html = document(random, 20 + random.nextInt(200));
+			LinkedHashMap<String,String> words = new LinkedHashMap<String,String>();
+			ArrayList<String> lower = new ArrayList<String>();
+			for (int i=random.nextInt(6); i > 0; i--) {
+				String word = WORDS[random.nextInt(WORDS.length)];
+				String bare = word.toLowerCase().replaceAll("[.!?:;]$", "");
+				if (lower.contains(bare)) {
+					continue;
+				}
+				lower.add(bare);
+				String[] tags = {"em", "b", "b", "p"};
+				words.put(random.nextBoolean() ? word : word.toUpperCase(), tags[random.nextInt(tags.length)]);
+			}
+			Tree tree = tree(html, false);
+			for (Map.Entry<String,String> e: words.entrySet()) {
+				tree.addTag(e.getKey(), e.getValue());
+			}
+			Tree all = tree(html, d % 2 == 0);
+			all.addTags(words);
+			String expected = tree.getHTML().replace("\n \n", "\n"), actual = all.getHTML().replace("\n \n", "\n");
+			if (!expected.equals(actual)) {
+				fail("addTags", "document " + d, words.toString(), expected, actual);
+			}
+		}
+	}
+
+	/*
+	 * Tree.edit against the operations applied one at a time, on plain and indexed trees.
+	 * Half of the scripts are read with EditScript.parse. A script that fails must leave the
+	 * tree as it was, and the tree must still take operations after it.
+	 */
+	static void checkEditScript(int documents, Random random) {
+		for (int d=0; d < documents; d++) {
+			String html = document(random, 20 + random.nextInt(200));
+			String[][] ops = ops(random, 1 + random.nextInt(12));
+			EditScript script = new EditScript();
+			StringBuilder text = new StringBuilder("# script\n");
+			String[] names = {"replace", "remove", "add", "bold"};
+			for (String[] op: ops) {
+				switch (op[0].charAt(0)) {
+				case 'r': script.replaceTag(op[1], op[2]); break;
+				case 'd': script.removeTag(op[1]); break;
+				case 'a': script.addTag(op[1], op[2]); break;
+				default: script.boldRow(Integer.parseInt(op[1]));
+				}
+				text.append(names["rdab".indexOf(op[0])]);
+				for (int i=1; i < op.length; i++) {
+					text.append(' ').append(op[i]);
+				}
+				text.append('\n');
+			}
+			if (d % 2 == 0) {
+				script = EditScript.parse(new Scanner(text.toString()));
+			}
+			Tree tree = tree(html, false);
+			boolean failed = false;
+			for (String[] op: ops) {
+				if (!apply(tree, op)) {
+					failed = true;
+					break;
+				}
+			}
+			Tree edited = tree(html, d % 4 < 2);
+			String before = edited.getHTML();
+			boolean editFailed = false;
+			try {
+				edited.edit(script);
+			} catch (RuntimeException e) {
+				editFailed = true;
+			}
+			String name = "document " + d;
+			if (failed != editFailed) {
+				fail("edit", name, describe(ops, ops.length-1), failed ? "threw" : "", editFailed ? "threw" : "");
+			} else if (failed && (!before.equals(edited.getHTML()) || edited.edited)) { // patch must still be allowed
+				fail("edit", name, describe(ops, ops.length-1) + ", failed", before, edited.getHTML() + (edited.edited ? ", edited" : ""));
+			} else if (failed) {
+				compareOps("edit", name + ", after a failed script", ops(random, 4), tree(html, false), edited);
+			} else {
+				compareOps("edit", name, ops(random, 4), tree, edited);
+			}
+		}
+	}
+
+	/*
+	 * boldRow, which finds rows through the row index, against the streaming BoldRow filter,
+	 * which counts them as it goes, on documents of tables whose rows are changed between
+	 * the calls: rows wrapped in p or em that removeTag moves into their table, lists that
+	 * become rows, and elements that become tables or stop being tables.
+	 */
+	static void checkRows(int documents, Random random) {
+		for (int d=0; d < documents; d++) {
+			String[][] ops = new String[6][];
+			for (int i=0; i < ops.length; i++) {
+				ops[i] = i % 2 == 1 ? new String[] {"b", Integer.toString(1 + random.nextInt(3))} : ROW_OPS[random.nextInt(ROW_OPS.length)];
+			}
+			String html = tables(random);
+			compareStreaming("tables " + d, html, ops);
+			compareOps("indexed", "tables " + d, ops, tree(html, false), tree(html, true));
+		}
+	}
+
+	static final String[][] ROW_OPS = {
+		{"d", "p"}, {"d", "em"}, {"d", "ol"}, {"r", "p", "table"}, {"r", "table", "p"}, {"r", "em", "table"},
+		{"r", "tr", "p"}, {"r", "li", "tr"}, {"r", "ul", "table"}, {"a", "r1c2", "b"}
+	};
+
+	/*
+	 * A document of tables of three to six rows, some rows wrapped in p or em, some of them
+	 * lists, text or empty tables, with tables nested in cells.
+	 */
+	private static String tables(Random random) {
+		StringBuilder sb = new StringBuilder("<html>\n");
+		for (int t=1 + random.nextInt(3); t > 0; t--) {
+			table(sb, random, 0);
+		}
+		return sb.append("</html>\n").toString();
+	}
+
+	private static void table(StringBuilder sb, Random random, int depth) {
+		String wrap = random.nextInt(4) == 0 ? (random.nextBoolean() ? "p" : "em") : null;
+		if (wrap != null) {
+			sb.append('<').append(wrap).append(">\n");
+		}
+		sb.append("<table>\n");
+		for (int r=3 + random.nextInt(4); r > 0; r--) {
+			switch (random.nextInt(8)) {
+			case 0:
+				sb.append("<p>\n<tr>\n<td>\nR").append(r).append("C1\n</td>\n</tr>\n<tr>\n<td>\nR1C2\n</td>\n</tr>\n</p>\n");
+				break;
+			case 1:
+				sb.append("<ol>\n<li>\nR1C2\n</li>\n<li>\nitem\n</li>\n</ol>\n");
+				break;
+			case 2:
+				sb.append("<em>\n<tr>\n<td>\nR1C2\n</td>\n</tr>\n</em>\n");
+				break;
+			case 3:
+				sb.append("<table>\n</table>\n");
+				break;
+			case 4:
+				sb.append("<ul>\n<li>\nrow\n</li>\n</ul>\n");
+				break;
+			default:
+				sb.append("<tr>\n");
+				for (int c=1 + random.nextInt(3); c > 0; c--) {
+					sb.append("<td>\n");
+					if (depth < 2 && random.nextInt(6) == 0) {
+						table(sb, random, depth+1);
+					} else {
+						sb.append("R1C").append(c).append('\n');
+					}
+					sb.append("</td>\n");
+				}
+				sb.append("</tr>\n");
+			}
+		}
+		sb.append("</table>\n");
+		if (wrap != null) {
+			sb.append("</").append(wrap).append(">\n");
+		}
+	}
+
+	/*
+	 * patch against a tree built from the changed lines, plain and indexed, through several
+	 * diffs in a row. Each diff has up to three edits, given in random order, that delete,
+	 * insert or change lines, tags included, as long as the tags of the result still match.
+	 * After the diffs both trees must take the same operations, and patch must then refuse.
+	 */
+	static void checkPatch(int documents, Random random) {
+		String[] kinds = {"<p>", "</p>", "<em>", "</em>", "<ol>", "</ol>", "<li>", "</li>", "<table>", "</table>"};
+		for (int d=0; d < documents; d++) {
+			boolean indexed = d % 2 == 0;
+			ArrayList<String> lines = new ArrayList<String>(Arrays.asList(document(random, 20 + random.nextInt(200)).split("\n")));
+			Tree tree = tree(join(lines), indexed);
+			String name = "document " + d;
+			for (int round=0; round < 6; round++) {
+				ArrayList<int[]> edits = new ArrayList<int[]>();
+				ArrayList<ArrayList<String>> added = new ArrayList<ArrayList<String>>();
+				ArrayList<String> changed = new ArrayList<String>();
+				int pos = 0, next = 0; // next edit starts after a line no edit touches, so edits in any order do not overlap
+				for (int e=1 + random.nextInt(3); e > 0 && next <= lines.size(); e--) {
+					int start = next + random.nextInt(Math.min(20, lines.size()-next+1));
+					int deleted = random.nextInt(Math.min(3, lines.size()-start) + 1);
+					ArrayList<String> add = new ArrayList<String>();
+					for (int k=random.nextInt(3); k > 0; k--) {
+						add.add(random.nextBoolean() ? text(random) : kinds[random.nextInt(kinds.length)]);
+					}
+					if (deleted > 0 && random.nextBoolean()) { // same kind of line: text for text, a tag for a tag
+						add.clear();
+						String old = lines.get(start);
+						add.add(old.startsWith("</") ? old : old.startsWith("<") ? "<" + ELEMENTS[random.nextInt(ELEMENTS.length)] + ">" : text(random));
+						add.addAll(lines.subList(start+1, start+deleted));
+					}
+					changed.addAll(lines.subList(pos, start));
+					changed.addAll(add);
+					edits.add(new int[] {start, deleted});
+					added.add(add);
+					pos = start + deleted;
+					next = pos + 1;
+				}
+				changed.addAll(lines.subList(pos, lines.size()));
+				if (!balanced(changed)) {
+					continue;
+				}
+				ArrayList<Integer> order = new ArrayList<Integer>();
+				for (int e=0; e < edits.size(); e++) {
+					order.add(e);
+				}
+				Collections.shuffle(order, random);
+				LineDiff diff = new LineDiff();
+				StringBuilder ops = new StringBuilder();
+				for (int e: order) {
+					diff.replace(edits.get(e)[0], edits.get(e)[1], added.get(e));
+					ops.append(Arrays.toString(edits.get(e))).append(added.get(e));
+				}
+				tree.patch(diff);
+				lines = changed;
+				String expected = tree(join(lines), indexed).getHTML();
+				if (!expected.equals(tree.getHTML())) {
+					fail("patch", name, "round " + round + ": " + ops, expected, tree.getHTML());
+					break;
+				}
+			}
+			String[][] ops = ops(random, 4);
+			compareOps("patch", name, ops, tree(join(lines), false), tree);
+			try {
+				tree.patch(new LineDiff());
+				fail("patch", name, "patch after " + describe(ops, ops.length-1), "IllegalStateException", "patched");
+			} catch (IllegalStateException e) { // expected
+			}
+		}
+	}
+
+	private static String join(ArrayList<String> lines) {
+		StringBuilder sb = new StringBuilder();
+		for (String line: lines) {
+			sb.append(line).append('\n');
+		}
+		return sb.toString();
+	}
+
+	/*
+	 * Tells if every end tag closes an open element and every element is closed, which is
+	 * what build needs; tag names need not match, as build does not check them.
+	 */
+	private static boolean balanced(ArrayList<String> lines) {
+		int depth = 0;
+		for (String line: lines) {
+			if (line.length() > 1 && line.charAt(0) == '<') {
+				depth += line.charAt(1) == '/' ? -1 : 1;
+				if (depth < 0) {
+					return false;
+				}
+			}
+		}
+		return depth == 0;
+	}
+
+	/*
+	 * Operations through a TreeHistory against the same operations on a Tree. Every version
+	 * must print as the tree did at that point, still do so after all the later versions were
+	 * made from it, and come back in order through undo and redo. A boldRow that fails must
+	 * leave the current version as it was.
+	 */
+	static void checkSnapshot(int documents, Random random) {
+		for (int d=0; d < documents; d++) {
+			String html = document(random, 20 + random.nextInt(200));
+			String[][] ops = ops(random, 8);
+			String name = "document " + d;
+			Tree tree = tree(html, false);
+			TreeHistory history = new TreeHistory(tree.snapshot());
+			ArrayList<Snapshot> versions = new ArrayList<Snapshot>();
+			ArrayList<String> expected = new ArrayList<String>();
+			versions.add(history.current());
+			expected.add(tree.getHTML());
+			for (int k=0; k < ops.length; k++) {
+				String[] op = ops[k];
+				boolean failed = !apply(tree, op);
+				boolean historyFailed = false;
+				try {
+					switch (op[0].charAt(0)) {
+					case 'r': history.replaceTag(op[1], op[2]); break;
+					case 'd': history.removeTag(op[1]); break;
+					case 'a': history.addTag(op[1], op[2]); break;
+					default: history.boldRow(Integer.parseInt(op[1]));
+					}
+				} catch (RuntimeException e) {
+					historyFailed = true;
+				}
+				String current = history.current().getHTML();
+				if (failed != historyFailed) {
+					fail("snapshot", name, describe(ops, k), failed ? "threw" : "", historyFailed ? "threw" : "");
+					return;
+				}
+				if (failed) {
+					if (!current.equals(expected.get(expected.size()-1))) {
+						fail("snapshot", name, describe(ops, k) + ", failed", expected.get(expected.size()-1), current);
+					}
+					break;
+				}
+				if (!current.equals(tree.getHTML())) {
+					fail("snapshot", name, describe(ops, k), tree.getHTML(), current);
+					return;
+				}
+				if (history.current() != versions.get(versions.size()-1)) { // an operation that changes nothing makes no version
+					versions.add(history.current());
+					expected.add(current);
+				}
+			}
+			for (int v=0; v < versions.size(); v++) {
+				StringWriter w = new StringWriter();
+				try {
+					versions.get(v).writeHTML(w);
+				} catch (IOException e) { // StringWriter does not throw
+					throw new UncheckedIOException(e);
+				}
+				if (!expected.get(v).equals(versions.get(v).getHTML()) || !expected.get(v).equals(w.toString())) {
+					fail("snapshot", name, "version " + v + " after the later ones", expected.get(v), versions.get(v).getHTML());
+					return;
+				}
+			}
+			for (int v=versions.size()-1; v >= 0; v--) {
+				if (!expected.get(v).equals(history.current().getHTML()) || history.undo() != (v > 0)) {
+					fail("snapshot", name, "undo to version " + v, expected.get(v), history.current().getHTML());
+					return;
+				}
+			}
+			for (int v=0; v < versions.size(); v++) {
+				if (!expected.get(v).equals(history.current().getHTML()) || history.redo() != (v < versions.size()-1)) {
+					fail("snapshot", name, "redo to version " + v, expected.get(v), history.current().getHTML());
+					return;
+				}
+			}
+		}
+	}
+
+	/*
+	 * select against matching every element of the tree with the selector step by step, on
+	 * random selectors with child and descendant combinators and :nth-child. Operations on
+	 * the tree between the queries must make select see the changed tree.
+	 */
+	static void checkSelect(int documents, Random random) {
+		String[] tags = {"html", "p", "em", "b", "ol", "ul", "li", "table", "tr", "td", "*"};
+		String[] nth = {"1", "2", "3", "odd", "even", "2n+1", "-n+2", "3n", "n", "0n+2"};
+		for (int d=0; d < documents; d++) {
+			String html = document(random, 20 + random.nextInt(200));
+			Tree tree = tree(html, d % 2 == 0);
+			StringBuilder ops = new StringBuilder();
+			for (int round=0; round < 3; round++) {
+				IdentityHashMap<TagNode,TagNode> parents = new IdentityHashMap<TagNode,TagNode>();
+				IdentityHashMap<TagNode,Integer> positions = new IdentityHashMap<TagNode,Integer>();
+				ArrayList<TagNode> elements = new ArrayList<TagNode>();
+				elements(tree.root, null, tree.emptyElements, parents, positions, elements);
+				for (int q=0; q < 10; q++) {
+					StringBuilder text = new StringBuilder();
+					for (int k=1 + random.nextInt(4); k > 0; k--) {
+						if (text.length() > 0) {
+							text.append(random.nextBoolean() ? " " : " > ");
+						}
+						text.append(tags[random.nextInt(tags.length)]);
+						if (random.nextInt(3) == 0) {
+							text.append(":nth-child(").append(nth[random.nextInt(nth.length)]).append(')');
+						}
+					}
+					Selector selector = Selector.compile(text.toString());
+					ArrayList<TagNode> expected = new ArrayList<TagNode>();
+					for (TagNode e: elements) {
+						if (matches(selector, selector.tags.length-1, e, parents, positions)) {
+							expected.add(e);
+						}
+					}
+					ArrayList<TagNode> actual = tree.select(selector);
+					boolean same = expected.size() == actual.size();
+					for (int k=0; same && k < expected.size(); k++) {
+						same = expected.get(k) == actual.get(k);
+					}
+					if (!same) {
+						fail("select", "document " + d, ops + text.toString(), expected.size() + " elements", actual.size() + " elements");
+						return;
+					}
+				}
+				String[] op = OPS[random.nextInt(OPS.length)];
+				if (!apply(tree, op)) {
+					break;
+				}
+				ops.append(Arrays.toString(op));
+			}
+		}
+	}
+
+	/*
+	 * Collects the elements under a list of siblings in document order: the nodes with
+	 * children, and the elements that were built with none. Records the parent of each, and
+	 * its position among its sibling elements, from 1.
+	 */
+	private static void elements(TagNode first, TagNode parent, Set<TagNode> empty,
+			IdentityHashMap<TagNode,TagNode> parents, IdentityHashMap<TagNode,Integer> positions, ArrayList<TagNode> elements) {
+		int position = 0;
+		for (TagNode ptr=first; ptr != null; ptr=ptr.sibling) {
+			if (ptr.firstChild == null && !empty.contains(ptr)) {
+				continue;
+			}
+			parents.put(ptr, parent);
+			positions.put(ptr, ++position);
+			elements.add(ptr);
+			elements(ptr.firstChild, ptr, empty, parents, positions, elements);
+		}
+	}
+
+	/*
+	 * Tells if an element matches steps 0 to i of a selector, with step i on the element.
+	 */
+	private static boolean matches(Selector selector, int i, TagNode e, IdentityHashMap<TagNode,TagNode> parents, IdentityHashMap<TagNode,Integer> positions) {
+		if (selector.tags[i] != null && !selector.tags[i].equals(e.tag)) {
+			return false;
+		}
+		if (selector.hasNth[i]) {
+			boolean found = false;
+			int p = positions.get(e);
+			for (int n=0; n <= p + Math.abs(selector.b[i]); n++) { // p = a*n + b for some n >= 0
+				if (selector.a[i]*n + selector.b[i] == p) {
+					found = true;
+				}
+			}
+			if (!found) {
+				return false;
+			}
+		}
+		if (i == 0) {
+			return true;
+		}
+		for (TagNode p=parents.get(e); p != null; p=parents.get(p)) {
+			if (matches(selector, i-1, p, parents, positions)) {
+				return true;
+			}
+			if (selector.child[i]) {
+				return false;
+			}
+		}
+		return false;
+	}
+
+	/*
+	 * Tree.stats of a tree just built against the counts taken from its input lines, an empty
+	 * element counting as an element with no children; then the operation timers of an
+	 * instrumented tree against the calls made.
+	 */
+	static void checkStats(int documents, Random random) {
+		for (int d=0; d < documents; d++) {
+			String html = document(random, 20 + random.nextInt(200));
+			String name = "document " + d;
+			int elements = 0, texts = 0;
+			TreeMap<String,Integer> byTag = new TreeMap<String,Integer>();
+			int[] depths = new int[64], fanOuts = new int[32];
+			ArrayList<int[]> open = new ArrayList<int[]>(); // children so far of each open element
+			for (String line: html.split("\n")) {
+				if (line.startsWith("</")) {
+					int children = open.remove(open.size()-1)[0];
+					if (children > 0) {
+						fanOuts[31 - Integer.numberOfLeadingZeros(children)]++;
+					}
+					continue;
+				}
+				depths[open.size()]++;
+				if (!open.isEmpty()) {
+					open.get(open.size()-1)[0]++;
+				}
+				if (line.startsWith("<")) {
+					String tag = line.substring(1, line.length()-1);
+					elements++;
+					byTag.put(tag, byTag.containsKey(tag) ? byTag.get(tag)+1 : 1);
+					open.add(new int[1]);
+				} else {
+					texts++;
+				}
+			}
+			Tree tree = new Tree(new Scanner(html), d % 2 == 0);
+			tree.setInstrumented(true);
+			tree.build();
+			TreeStats stats = tree.stats();
+			int deepest = depths.length-1;
+			while (depths[deepest] == 0) {
+				deepest--;
+			}
+			String expected = (elements+texts) + " nodes, " + elements + " elements, " + texts + " text, depth " + deepest
+					+ " " + Arrays.toString(Arrays.copyOf(depths, deepest+1)) + ", " + byTag + ", fan-out " + Arrays.toString(fanOuts);
+			int[] gotFanOuts = Arrays.copyOf(stats.getFanOutHistogram(), fanOuts.length);
+			String actual = stats.getNodeCount() + " nodes, " + stats.getElementCount() + " elements, " + stats.getTextCount() + " text, depth " + stats.getMaxDepth()
+					+ " " + Arrays.toString(stats.getDepthHistogram()) + ", " + stats.getCountsByTag() + ", fan-out " + Arrays.toString(gotFanOuts);
+			if (!expected.equals(actual) || stats.getEstimatedBytes() < 24L*(elements+texts)) {
+				fail("stats", name, "build", expected, actual + ", " + stats.getEstimatedBytes() + " bytes");
+				continue;
+			}
+			String[][] ops = ops(random, 8);
+			TreeMap<String,Long> calls = new TreeMap<String,Long>();
+			calls.put("build", 1L);
+			for (String[] op: ops) {
+				if (!apply(tree, op)) { // a call that throws is not timed
+					break;
+				}
+				String call = op[0].equals("r") ? "replaceTag" : op[0].equals("d") ? "removeTag" : op[0].equals("a") ? "addTag" : "boldRow";
+				calls.put(call, calls.containsKey(call) ? calls.get(call)+1 : 1);
+			}
+			tree.edit(new EditScript().replaceTag("em", "i").removeTag("i"));
+			calls.put("edit", 1L);
+			stats = tree.stats();
+			Map<String,Long> counts = stats.getOperationCounts(), nanos = stats.getOperationNanos(), longest = stats.getOperationMaxNanos();
+			for (String op: counts.keySet()) {
+				long n = calls.containsKey(op) ? calls.get(op) : 0;
+				if (counts.get(op) != n || (n == 0 && nanos.get(op) != 0) || longest.get(op) > nanos.get(op)) { // a fast call may take 0 ns on a coarse clock
+					fail("stats", name, describe(ops, ops.length-1), op + " " + n + " calls", counts.get(op) + " calls, " + nanos.get(op) + " ns, " + longest.get(op) + " ns max");
+				}
+			}
+			tree.setInstrumented(false);
+			if (tree.stats().isInstrumented() || tree.stats().getOperationCounts().get("build") != 0) {
+				fail("stats", name, "setInstrumented(false)", "no timings", tree.stats().getOperationCounts().toString());
+			}
+		}
+	}
+
+	/*
+	 * The JMX view of a registered tree against Tree.stats after each operation, which must
+	 * be published by the operation itself; unregistering must stop the publishing.
+	 */
+	static void checkMonitor(int documents, Random random) {
+		MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+		for (int d=0; d < documents; d++) {
+			String name = "document " + d;
+			Tree tree = tree(document(random, 20 + random.nextInt(200)), d % 2 == 0);
+			try {
+				ObjectName on = tree.registerMBean("treetest " + d);
+				String[][] ops = ops(random, 6);
+				for (int k=0; k < ops.length; k++) {
+					apply(tree, ops[k]);
+					TreeStats stats = tree.stats();
+					String expected = stats.getNodeCount() + " nodes, " + stats.getElementCount() + " elements, depth " + stats.getMaxDepth();
+					String actual = server.getAttribute(on, "NodeCount") + " nodes, " + server.getAttribute(on, "ElementCount") + " elements, depth "
+							+ server.getAttribute(on, "MaxDepth");
+					if (!expected.equals(actual)) {
+						fail("monitor", name, describe(ops, k), expected, actual);
+						break;
+					}
+				}
+				server.unregisterMBean(on);
+				if (tree.monitor != null) {
+					fail("monitor", name, "unregister", "no monitor", "still publishing");
+				}
+			} catch (JMException e) {
+				fail("monitor", name, "register", "", e.toString());
+			}
+		}
+	}
+
+	/*
+	 * The documents TreeBenchmark times: the same shape, size and seed must give the same
+	 * document, of at least that size, which Tree builds and prints back unchanged; and an
+	 * operation TreeBenchmark runs must change it wherever what the operation works on is there.
+	 */
+	static void checkGenerator() {
+		String[][] ops = {{"r", "em", "i"}, {"b", "1"}, {"d", "ul"}, {"d", "p"}, {"a", "the", "b"}};
+		String[] needs = {"<em>", "<table>", "<ul>", "<p>", " the "};
+		for (String shape: DocumentGenerator.SHAPES) {
+			for (int size: new int[] {1, 1<<10, 40<<10, 200<<10}) {
+				String html = generate(shape, size, 1);
+				String name = shape + " " + size;
+				if (!html.equals(generate(shape, size, 1)) || html.length() < size) {
+					fail("generator", name, "generate", "the same document, at least " + size + " bytes", html.length() + " bytes");
+					continue;
+				}
+				Tree tree = tree(html, false);
+				if (!html.equals(tree.getHTML())) {
+					fail("generator", name, "build", html, tree.getHTML());
+					continue;
+				}
+				for (int k=0; k < ops.length; k++) {
+					String before = tree.getHTML();
+					if (!apply(tree, ops[k]) || before.contains(needs[k]) && before.equals(tree.getHTML())) {
+						fail("generator", name, describe(ops, k), "a change", "none, or threw");
+						break;
+					}
+				}
+			}
+		}
+	}
+
+	private static String generate(String shape, long bytes, long seed) {
+		StringWriter w = new StringWriter();
+		try {
+			DocumentGenerator.write(w, shape, bytes, seed);
+		} catch (IOException e) { // StringWriter does not throw
+			throw new UncheckedIOException(e);
+		}
+		return w.toString();
+	}
+
+	/*
+	 * CompactTree against Tree. The arrays of a CompactTree start at 1024 rows, so tables
+	 * after about that many lines make boldRow grow them while it links in the b tags. A row
+	 * with a line of text among its columns makes boldRow turn the text into a tag.
+	 */
+	static void checkCompact(int documents, Random random) {
+		compareCompact("text column", "<table>\n<tr>\nthe tree\n<td>\nx\n</td>\n</tr>\n</table>\n", new String[][] {{"b", "1"}});
+		for (int pad=1000; pad < 1040; pad++) {
+			StringBuilder sb = new StringBuilder("<html>\n<p>\n");
+			for (int i=0; i < pad; i++) {
+				sb.append("line ").append(i).append('\n');
+			}
+			sb.append("</p>\n<table>\n<tr>\n");
+			for (int c=1; c <= 7; c++) {
+				sb.append("<td>\nR1C").append(c).append("\n</td>\n");
+			}
+			sb.append("</tr>\n</table>\n</html>\n");
+			compareCompact("grow " + pad, sb.toString(), new String[][] {{"b", "1"}});
+		}
+		for (int d=0; d < documents; d++) {
+			compareCompact("document " + d, document(random, 20 + random.nextInt(d % 10 == 0 ? 1500 : 200)), ops(random, 8));
+		}
+	}
+
+	/*
+	 * An indexed Tree against one that is not. Removal must splice out top-level elements
+	 * without losing their earlier siblings, handle nested matches outermost first, and take
+	 * time in the number of matches, not matches times siblings.
+	 */
+	static void checkIndexed(int documents, Random random) {
+		compareIndexed("top level", "<p>\n<em>\nfirst\n</em>\n<em>\nsecond\n</em>\n</p>\n",
+				new String[][] {{"d", "p"}, {"d", "em"}});
+		compareIndexed("nested lists", "<html>\n<em>\n<ul>\n<li>\nx\n</li>\n</ul>\n</em>\n</html>\n",
+				new String[][] {{"r", "em", "ul"}, {"d", "ul"}});
+		StringBuilder sb = new StringBuilder("<html>\n<body>\n");
+		for (int i=0; i < 50000; i++) {
+			sb.append("<p>\nline ").append(i).append("\n</p>\n");
+		}
+		sb.append("</body>\n</html>\n");
+		String[][] remove = {{"d", "p"}};
+		long plain = System.nanoTime();
+		apply(tree(sb.toString(), false), remove[0]);
+		plain = System.nanoTime()-plain;
+		long indexed = System.nanoTime();
+		compareIndexed("50000 siblings", sb.toString(), remove);
+		indexed = System.nanoTime()-indexed;
+		if (indexed > 20*plain + 2000000000L) {
+			fail("indexed", "50000 siblings", "[d, p]", "about " + plain/1000000 + " ms", indexed/1000000 + " ms");
+		}
+		for (int d=0; d < documents; d++) {
+			compareIndexed("document " + d, document(random, 20 + random.nextInt(d % 10 == 0 ? 1500 : 200)), ops(random, 8));
+		}
+	}
+
+	/*
+	 * replaceTag and addTag on a fork-join pool against the sequential ones, on random
+	 * documents, on generated ones large enough to be split among tasks, and on chains of
+	 * elements tens of thousands deep, which must not overflow the stack.
+	 */
+	static void checkParallel(int documents, Random random) {
+		ForkJoinPool pool = new ForkJoinPool(4);
+		try {
+			String[][] ops = {{"r", "em", "b"}, {"a", "the", "b"}, {"r", "td", "th"}, {"a", "tree", "em"}};
+			for (int depth: new int[] {20000, 50000}) {
+				StringBuilder chain = new StringBuilder(), siblings = new StringBuilder();
+				for (int i=0; i < depth; i++) {
+					chain.append(i % 2 == 0 ? "<em>\n" : "<td>\n");
+					siblings.append(i % 2 == 0 ? "<em>\nthe tree\n" : "<td>\n");
+				}
+				chain.append("the tree\n");
+				for (int i=depth-1; i >= 0; i--) {
+					chain.append(i % 2 == 0 ? "</em>\n" : "</td>\n");
+					siblings.append(i % 2 == 0 ? "</em>\n" : "</td>\n");
+				}
+				compareParallel("chain " + depth, chain.toString(), ops, pool);
+				compareParallel("chain with siblings " + depth, siblings.toString(), ops, pool);
+			}
+			for (String shape: DocumentGenerator.SHAPES) {
+				compareParallel(shape, generate(shape, 1<<19, 1), ops, pool);
+			}
+			for (int d=0; d < documents; d++) {
+				compareParallel("document " + d, document(random, 20 + random.nextInt(200)), ops(random, 4), pool);
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/*
+	 * A Tree loaded from what save wrote against the Tree that was saved, plain and indexed:
+	 * the loaded tree must have the same elements, empty ones included, print the same, and go
+	 * on to print the same after the same operations. A file cut short must be refused with an IOException.
+	 */
+	static void checkSaved(int documents, Random random) {
+		File file;
+		try {
+			file = File.createTempFile("treetest", ".domt");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+		try {
+			for (int d=0; d < documents; d++) {
+				compareSaved("document " + d, document(random, 20 + random.nextInt(200)), ops(random, 8), d % 2 == 0, file);
+			}
+			try {
+				RandomAccessFile raf = new RandomAccessFile(file, "rw");
+				try {
+					raf.setLength(raf.length()-1);
+				} finally {
+					raf.close();
+				}
+				new Tree(new Scanner(""), false).load(file);
+				fail("saved", "cut short", "load", "IOException", "loaded");
+			} catch (IOException e) { // expected
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	private static void compareSaved(String name, String html, String[][] ops, boolean indexed, File file) {
+		Tree tree = tree(html, indexed);
+		Tree loaded = new Tree(new Scanner(""), indexed);
+		try {
+			tree.save(file);
+			loaded.load(file);
+		} catch (IOException e) {
+			fail("saved", name, "save and load", "", e.toString());
+			return;
+		}
+		if (tree.stats().getElementCount() != loaded.stats().getElementCount()
+				|| tree.select("ol").size() != loaded.select("ol").size()) { // empty elements are still elements
+			fail("saved", name, "load", tree.stats().getElementCount() + " elements, " + tree.select("ol").size() + " ol",
+					loaded.stats().getElementCount() + " elements, " + loaded.select("ol").size() + " ol");
+			return;
+		}
+		compareOps("saved", name, ops, tree, loaded);
+	}
+
+	/*
+	 * HTMLStream through a chain of TagFilters against the Tree operations, one chain per
+	 * prefix of the operations. An element with no children, such as <ol></ol>, is a line of
+	 * text to Tree, so it must stay one through every filter.
+	 */
+	static void checkStreaming(int documents, Random random) {
+		String empty = "<html>\n<p>\n<ol>\n</ol>\n</p>\n<em>\n</em>\n<ul>\n<ol>\n</ol>\n</ul>\n</html>\n";
+		compareStreaming("empty elements", empty, new String[][] {{"d", "ol"}, {"d", "em"}, {"d", "ul"}});
+		compareStreaming("empty elements", empty, new String[][] {{"a", "em", "b"}, {"r", "ol", "p"}, {"d", "p"}});
+		for (int d=0; d < documents; d++) {
+			compareStreaming("document " + d, document(random, 20 + random.nextInt(200)), ops(random, 4));
+		}
+	}
+
+	private static void compareStreaming(String name, String html, String[][] ops) {
+		Tree tree = tree(html, false);
+		for (int k=0; k < ops.length; k++) {
+			boolean failed = !apply(tree, ops[k]);
+			StringBuilder sb = new StringBuilder();
+			HTMLHandler chain = new HTMLWriter(sb);
+			for (int j=k; j >= 0; j--) {
+				String[] op = ops[j];
+				switch (op[0].charAt(0)) {
+				case 'r': chain = new TagFilters.ReplaceTag(op[1], op[2], chain); break;
+				case 'd': chain = new TagFilters.RemoveTag(op[1], chain); break;
+				case 'a': chain = new TagFilters.AddTag(op[1], op[2], chain); break;
+				default: chain = new TagFilters.BoldRow(Integer.parseInt(op[1]), chain);
+				}
+			}
+			boolean streamFailed = false;
+			try {
+				HTMLStream.parse(new Scanner(html), chain);
+			} catch (IOException e) { // StringBuilder does not throw
+				throw new UncheckedIOException(e);
+			} catch (RuntimeException e) {
+				streamFailed = true;
+			}
+			if (failed || streamFailed) { // a table without the row
+				if (failed != streamFailed) {
+					fail("streaming", name, describe(ops, k), failed ? "threw" : "", streamFailed ? "threw" : "");
+				}
+				return;
+			}
+			if (!tree.getHTML().equals(sb.toString())) {
+				fail("streaming", name, describe(ops, k), tree.getHTML(), sb.toString());
+				return;
+			}
+		}
+	}
+
+	private static void compareParallel(String name, String html, String[][] ops, ForkJoinPool pool) {
+		Tree tree = tree(html, false);
+		Tree parallel = tree(html, false);
+		for (int k=0; k < ops.length; k++) {
+			String[] op = ops[k];
+			if (op[0].equals("r")) {
+				tree.replaceTag(op[1], op[2]);
+				parallel.replaceTag(op[1], op[2], pool);
+			} else if (op[0].equals("a")) {
+				tree.addTag(op[1], op[2]);
+				parallel.addTag(op[1], op[2], pool);
+			} else {
+				continue;
+			}
+			if (!tree.getHTML().equals(parallel.getHTML())) {
+				fail("parallel", name, describe(ops, k), tree.getHTML(), parallel.getHTML());
+				return;
+			}
+		}
+	}
+
+	private static void compareIndexed(String name, String html, String[][] ops) {
+		compareOps("indexed", name, ops, tree(html, false), tree(html, true));
+	}
+
+	/*
+	 * Checks that two trees print the same, then applies the operations to both in turn and
+	 * checks that they go on printing the same, and throw on the same operation.
+	 */
+	private static void compareOps(String check, String name, String[][] ops, Tree tree, Tree other) {
+		if (!tree.getHTML().equals(other.getHTML())) {
+			fail(check, name, "build", tree.getHTML(), other.getHTML());
+			return;
+		}
+		for (int k=0; k < ops.length; k++) {
+			String before = tree.getHTML();
+			boolean failed = !apply(tree, ops[k]);
+			if (failed != !apply(other, ops[k])) {
+				fail(check, name, describe(ops, k), failed ? "threw" : "", failed ? "" : "threw");
+				return;
+			}
+			if (failed && !before.equals(tree.getHTML())) { // a failed boldRow changes no table
+				fail(check, name, describe(ops, k) + ", failed", before, tree.getHTML());
+				return;
+			}
+			if (!tree.getHTML().equals(other.getHTML())) {
+				fail(check, name, describe(ops, k), tree.getHTML(), other.getHTML());
+				return;
+			}
+		}
+	}
+
+	private static void compareCompact(String name, String html, String[][] ops) {
+		Tree tree = tree(html, false);
+		CompactTree compact = new CompactTree(new Scanner(html));
+		compact.build();
+		if (!tree.getHTML().equals(compact.getHTML())) {
+			fail("compact", name, "build", tree.getHTML(), compact.getHTML());
+			return;
+		}
+		for (int k=0; k < ops.length; k++) {
+			String[] op = ops[k];
+			boolean failed = !apply(tree, op);
+			boolean compactFailed = false;
+			try {
+				switch (op[0].charAt(0)) {
+				case 'r': compact.replaceTag(op[1], op[2]); break;
+				case 'd': compact.removeTag(op[1]); break;
+				case 'a': compact.addTag(op[1], op[2]); break;
+				default: compact.boldRow(Integer.parseInt(op[1]));
+				}
+			} catch (RuntimeException e) {
+				compactFailed = true;
+			}
+			if (failed || compactFailed) { // a table without the row; what was done before differs
+				if (failed != compactFailed) {
+					fail("compact", name, describe(ops, k), failed ? "threw" : "", compactFailed ? "threw" : "");
+				}
+				return;
+			}
+			if (!tree.getHTML().equals(compact.getHTML())) {
+				fail("compact", name, describe(ops, k), tree.getHTML(), compact.getHTML());
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Builds a Tree from HTML.
+	 */
+	static Tree tree(String html, boolean indexed) {
+		Tree tree = new Tree(new Scanner(html), indexed);
+		tree.build();
+		return tree;
+	}
+
+	/**
+	 * Applies an operation to a tree; returns false if it threw IllegalArgumentException, which
+	 * boldRow does on a table without the row.
+	 */
+	static boolean apply(Tree tree, String[] op) {
+		try {
+			switch (op[0].charAt(0)) {
+			case 'r': tree.replaceTag(op[1], op[2]); break;
+			case 'd': tree.removeTag(op[1]); break;
+			case 'a': tree.addTag(op[1], op[2]); break;
+			default: tree.boldRow(Integer.parseInt(op[1]));
+			}
+			return true;
+		} catch (IllegalArgumentException e) {
+			return false;
+		}
+	}
+
+	static String[][] ops(Random random, int n) {
+		String[][] ops = new String[n][];
+		for (int i=0; i < n; i++) {
+			ops[i] = OPS[random.nextInt(OPS.length)];
+		}
+		return ops;
+	}
+
+	/**
+	 * Operations up to and including the k-th.
+	 */
+	static String describe(String[][] ops, int k) {
+		StringBuilder sb = new StringBuilder();
+		for (int i=0; i <= k && i < ops.length; i++) {
+			sb.append(Arrays.toString(ops[i]));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * A random document of about the given number of lines, one tag or line of text per
+	 * line: paragraphs, em and b, lists of li, tables of tr and td, text with the words of
+	 * OPS in it, and empty elements such as &lt;ol&gt;&lt;/ol&gt;. One document in four has
+	 * no html element around it, so it has several nodes at the top level.
+	 */
+	static String document(Random random, int lines) {
+		boolean html = random.nextInt(4) > 0;
+		StringBuilder sb = new StringBuilder(html ? "<html>\n" : "");
+		ArrayList<String> open = new ArrayList<String>();
+		open.add(html ? "html" : null);
+		int written = 0;
+		while (written < lines) {
+			String top = open.get(open.size()-1);
+			int choice = random.nextInt(10);
+			if ("table".equals(top)) {
+				if (choice < 7) {
+					open.add("tr");
+					sb.append("<tr>\n");
+				} else {
+					close(sb, open);
+				}
+			} else if ("tr".equals(top)) {
+				if (choice < 7) {
+					sb.append("<td>\n").append(word(random)).append("\n</td>\n");
+					written += 2;
+				} else {
+					close(sb, open);
+				}
+			} else if ("ol".equals(top) || "ul".equals(top)) {
+				if (choice < 6) {
+					open.add("li");
+					sb.append("<li>\n");
+				} else {
+					close(sb, open);
+				}
+			} else if (choice < 4 || open.size() > 8) {
+				sb.append(text(random)).append('\n');
+				if (open.size() > 1 && random.nextInt(3) == 0) {
+					close(sb, open);
+				}
+			} else if (choice == 4) {
+				String tag = ELEMENTS[random.nextInt(ELEMENTS.length)];
+				sb.append('<').append(tag).append(">\n</").append(tag).append(">\n");
+			} else {
+				String tag = ELEMENTS[random.nextInt(ELEMENTS.length)];
+				open.add(tag);
+				sb.append('<').append(tag).append(">\n");
+				if (!tag.equals("table") && !tag.equals("ol") && !tag.equals("ul")) {
+					sb.append(text(random)).append('\n');
+				}
+			}
+			written++;
+		}
+		while (open.size() > 1) {
+			close(sb, open);
+		}
+		if (html) {
+			close(sb, open);
+		}
+		return sb.toString();
+	}
+
+	private static void close(StringBuilder sb, ArrayList<String> open) {
+		sb.append("</").append(open.remove(open.size()-1)).append(">\n");
+	}
+
+	private static String word(Random random) {
+		return WORDS[random.nextInt(WORDS.length)];
+	}
+
+	private static String text(Random random) {
+		StringBuilder sb = new StringBuilder(word(random));
+		for (int n=random.nextInt(5); n > 0; n--) {
+			sb.append(' ').append(word(random));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * Reports a failure, with the first line where the output differs.
+	 */
+	static void fail(String check, String document, String ops, String expected, String actual) {
+		failures++;
+		String[] e = expected.split("\n", -1), a = actual.split("\n", -1);
+		int line = 0;
+		while (line < e.length && line < a.length && e[line].equals(a[line])) {
+			line++;
+		}
+		System.out.println(check + ", " + document + ", " + ops + ": line " + (line+1) + " is \""
+				+ (line < a.length ? a[line] : "") + "\", expected \"" + (line < e.length ? e[line] : "") + "\"");
+	}
+}
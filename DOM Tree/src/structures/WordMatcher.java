@@ -0,0 +1,203 @@
+package structures;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Matches the words of Tree.addTag and Tree.addTags against text. The words are compiled
+ * once into an Aho-Corasick automaton, so a line of text is checked for all of them in one
+ * pass over its characters, and most lines, which contain none of the words, are skipped
+ * without being split into tokens.
+ *
+ * A token (as split off by StringTokenizer on spaces) matches a word if it equals the word
+ * ignoring case, or, for the last token of a line, if TagFilters.isTarget accepts it, which
+ * allows a trailing punctuation mark. Words are matched in lower case.
+ *
+ */
+public class WordMatcher {
+
+	/**
+	 * Word (lower case) -> tag to add around it
+	 */
+	private HashMap<String,String> tags;
+
+	/**
+	 * Words, by index
+	 */
+	private ArrayList<String> words;
+
+	/**
+	 * Automaton: goto edges keyed by state and character, failure link, index of the longest
+	 * word ending at each state (-1 if none), and the next state down the failure chain at
+	 * which some word ends (-1 if none).
+	 */
+	private HashMap<Long,Integer> edges;
+	private int[] fail, word, output;
+	private int states;
+
+	/**
+	 * Initializes a matcher for a single word.
+	 *
+	 * @param word Word
+	 * @param tag Tag to add around the word
+	 */
+	public WordMatcher(String word, String tag) {
+		this(singleton(word, tag));
+	}
+
+	/**
+	 * Initializes a matcher for a set of words. Words are lower-cased; if two words are the
+	 * same ignoring case, the first one met keeps its tag.
+	 *
+	 * @param wordToTag Word -> tag to add around it
+	 */
+	public WordMatcher(Map<String,String> wordToTag) {
+		tags = new HashMap<String,String>();
+		words = new ArrayList<String>();
+		edges = new HashMap<Long,Integer>();
+		fail = new int[16];
+		word = new int[16];
+		word[0] = -1;
+		states = 1;
+		for (Map.Entry<String,String> e: wordToTag.entrySet()) {
+			String w = e.getKey().toLowerCase();
+			if (w.length() == 0 || tags.containsKey(w)) {
+				continue;
+			}
+			tags.put(w, e.getValue());
+			insert(w, words.size());
+			words.add(w);
+		}
+		link();
+	}
+
+	/**
+	 * Tells if a line of text contains any of the words, anywhere.
+	 *
+	 * @param text Text, in lower case
+	 * @return True if some word occurs in the text
+	 */
+	public boolean find(String text) {
+		int s = 0;
+		for (int i=0; i < text.length(); i++) {
+			s = step(s, text.charAt(i));
+			if (word[s] >= 0 || output[s] >= 0) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Returns the tag to add around a token, or null if it matches none of the words. If more
+	 * than one word matches the last token of a line, the longest one wins.
+	 *
+	 * @param token Token
+	 * @param last True if the token is the last one of its line
+	 * @return Tag, or null
+	 */
+	public String tagFor(String token, boolean last) {
+		String lower = token.toLowerCase();
+		String tag = tags.get(lower);
+		if (tag != null || !last) {
+			return tag;
+		}
+		String best = null;
+		int s = 0;
+		for (int i=0; i < lower.length(); i++) {
+			s = step(s, lower.charAt(i));
+			for (int o = word[s] >= 0 ? s : output[s]; o >= 0; o = output[o]) {
+				String w = words.get(word[o]);
+				if ((best == null || w.length() > best.length()) && TagFilters.isTarget(token, w, true)) {
+					best = w;
+				}
+			}
+		}
+		return best == null ? null : tags.get(best);
+	}
+
+	/**
+	 * Returns the number of distinct words.
+	 *
+	 * @return Number of words
+	 */
+	public int size() {
+		return words.size();
+	}
+
+	private static Map<String,String> singleton(String word, String tag) {
+		HashMap<String,String> map = new HashMap<String,String>();
+		map.put(word, tag);
+		return map;
+	}
+
+	private Integer edge(int s, char c) {
+		return edges.get(((long)s << 16) | c);
+	}
+
+	private void insert(String w, int index) {
+		int s = 0;
+		for (int i=0; i < w.length(); i++) {
+			Integer t = edge(s, w.charAt(i));
+			if (t == null) {
+				if (states == word.length) {
+					fail = Arrays.copyOf(fail, states*2);
+					word = Arrays.copyOf(word, states*2);
+				}
+				word[states] = -1;
+				t = states++;
+				edges.put(((long)s << 16) | w.charAt(i), t);
+			}
+			s = t;
+		}
+		word[s] = index;
+	}
+
+	/*
+	 * Sets the failure and output links, breadth first from the root.
+	 */
+	private void link() {
+		output = new int[states];
+		output[0] = -1;
+		fail[0] = 0;
+		ArrayList<ArrayList<long[]>> children = new ArrayList<ArrayList<long[]>>();
+		for (int i=0; i < states; i++) {
+			children.add(new ArrayList<long[]>());
+		}
+		for (Map.Entry<Long,Integer> e: edges.entrySet()) {
+			long key = e.getKey();
+			children.get((int)(key >>> 16)).add(new long[] {key & 0xFFFF, e.getValue()});
+		}
+		int[] queue = new int[states];
+		int head = 0, tail = 0;
+		for (long[] c: children.get(0)) {
+			fail[(int)c[1]] = 0;
+			output[(int)c[1]] = -1;
+			queue[tail++] = (int)c[1];
+		}
+		while (head < tail) {
+			int s = queue[head++];
+			for (long[] c: children.get(s)) {
+				int t = (int)c[1];
+				fail[t] = step(fail[s], (char)c[0]);
+				output[t] = word[fail[t]] >= 0 ? fail[t] : output[fail[t]];
+				queue[tail++] = t;
+			}
+		}
+	}
+
+	private int step(int s, char c) {
+		while (true) {
+			Integer t = edge(s, c);
+			if (t != null) {
+				return t;
+			}
+			if (s == 0) {
+				return 0;
+			}
+			s = fail[s];
+		}
+	}
+}
@@ -22,12 +22,32 @@ public class LittleSearchEngine {
 	 */
 	HashSet<String> noiseWords;
 	
+	/**
+	 * Off-heap postings store, used in place of keywordsIndex when the engine is created in
+	 * off-heap mode. Null in the default (on-heap) mode.
+	 */
+	OffHeapPostings offHeapIndex;
+	
 	/**
 	 * Creates the keyWordsIndex and noiseWords hash tables.
 	 */
 	public LittleSearchEngine() {
+		this(false);
+	}
+	
+	/**
+	 * Creates the noiseWords hash table, and either the keywordsIndex hash table or, if offHeap
+	 * is true, an off-heap postings store. In off-heap mode only the term dictionary stays on the
+	 * heap, and keywordsIndex is left empty.
+	 * 
+	 * @param offHeap True to keep postings outside the Java heap
+	 */
+	public LittleSearchEngine(boolean offHeap) {
 		keywordsIndex = new HashMap<String,ArrayList<Occurrence>>(1000,2.0f); //keeps track of duplicates with key
 		noiseWords = new HashSet<String>(100,2.0f); //array w/ no duplicate
+		if (offHeap) {
+			offHeapIndex = new OffHeapPostings(1<<20);
+		}
 	}
 	
 	/**
@@ -75,6 +95,12 @@ public class LittleSearchEngine {
 	 * 
 	 */
 	public void mergeKeywords(HashMap<String,Occurrence> kws) {
+		if (offHeapIndex != null) { //postings kept off-heap, in the same order
+			for(String word:kws.keySet()) {
+				offHeapIndex.add(word, kws.get(word));
+			}
+			return;
+		}
 		for(String word:kws.keySet()) { //traverse through HashMap
 			ArrayList<Occurrence> listOfWord = keywordsIndex.get(word);
 			if(listOfWord==null) { //new occurrence
@@ -239,8 +265,8 @@ public class LittleSearchEngine {
 	 *         returns null or empty array list.
 	 */
 	public ArrayList<String> top5search(String kw1, String kw2) {
-		ArrayList<Occurrence> occ1= keywordsIndex.get(kw1.toLowerCase());	
-		ArrayList<Occurrence> occ2= keywordsIndex.get(kw2.toLowerCase());	
+		List<Occurrence> occ1= postings(kw1.toLowerCase());	
+		List<Occurrence> occ2= postings(kw2.toLowerCase());	
 		if(occ1==null && occ2==null) {
 		return null;}
 		ArrayList<String> top5 = new ArrayList<String>(5);
@@ -317,4 +343,17 @@ public class LittleSearchEngine {
 		}
 		return top5;
 	}
+	
+	/**
+	 * Returns the occurrence list of a keyword from whichever index this engine uses.
+	 * 
+	 * @param kw Keyword, lower case
+	 * @return Occurrences in descending order of frequency, null if the keyword is not indexed
+	 */
+	private List<Occurrence> postings(String kw) {
+		if (offHeapIndex != null) {
+			return offHeapIndex.get(kw);
+		}
+		return keywordsIndex.get(kw);
+	}
 }
\ No newline at end of file
@@ -0,0 +1,89 @@
+package lse;
+
+import java.io.*;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.util.*;
+
+/**
+ * Compares garbage collection activity of the on-heap and off-heap postings modes of
+ * LittleSearchEngine under sustained top5search load.
+ *
+ * Usage: java lse.GCPauseBench docsFile noiseWordsFile [seconds] [copies]
+ *
+ * Each document list is indexed "copies" times (as if every document were that many distinct
+ * documents) to grow the postings, then random keyword pairs are queried for the given number
+ * of seconds while collector counts and times are sampled.
+ *
+ */
+public class GCPauseBench {
+
+	public static void main(String[] args)
+	throws Exception {
+		if (args.length < 2) {
+			System.out.println("Usage: java lse.GCPauseBench docsFile noiseWordsFile [seconds] [copies]");
+			return;
+		}
+		int seconds = args.length > 2 ? Integer.parseInt(args[2]) : 10;
+		int copies = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+		run("on-heap", new LittleSearchEngine(false), args[0], args[1], seconds, copies);
+		run("off-heap", new LittleSearchEngine(true), args[0], args[1], seconds, copies);
+	}
+
+	private static void run(String mode, LittleSearchEngine lse, String docsFile, String noiseWordsFile,
+			int seconds, int copies)
+	throws Exception {
+		lse.makeIndex(docsFile, noiseWordsFile);
+		ArrayList<String> words = new ArrayList<String>();
+		Scanner sc = new Scanner(new File(docsFile));
+		ArrayList<String> docs = new ArrayList<String>();
+		while (sc.hasNext()) {
+			docs.add(sc.next());
+		}
+		sc.close();
+		for (String doc: docs) {
+			HashMap<String,Occurrence> kws = lse.loadKeywordsFromDocument(doc);
+			words.addAll(kws.keySet());
+			for (int c=1; c < copies; c++) {
+				HashMap<String,Occurrence> copy = new HashMap<String,Occurrence>();
+				for (String kw: kws.keySet()) {
+					copy.put(kw, new Occurrence(doc + "#" + c, kws.get(kw).frequency));
+				}
+				lse.mergeKeywords(copy);
+			}
+		}
+
+		System.gc();
+		long count0 = gcCount(), time0 = gcTime();
+		long queries = 0;
+		Random rnd = new Random(42);
+		long end = System.nanoTime() + seconds*1000000000L;
+		while (System.nanoTime() < end) {
+			lse.top5search(words.get(rnd.nextInt(words.size())), words.get(rnd.nextInt(words.size())));
+			queries++;
+		}
+		long count = gcCount()-count0, time = gcTime()-time0;
+		System.out.println(mode + ": " + queries + " queries, " + count + " collections, "
+				+ time + " ms total GC time" + (count > 0 ? ", " + (time/(double)count) + " ms/collection" : ""));
+		System.gc();
+		System.out.println(mode + ": full GC after load took " + (gcTime()-time0-time) + " ms, heap used "
+				+ ((Runtime.getRuntime().totalMemory()-Runtime.getRuntime().freeMemory())>>20) + " MB"
+				+ (lse.offHeapIndex != null ? ", off-heap " + (lse.offHeapIndex.offHeapBytes()>>20) + " MB" : ""));
+	}
+
+	private static long gcCount() {
+		long n = 0;
+		for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans()) {
+			n += Math.max(0, gc.getCollectionCount());
+		}
+		return n;
+	}
+
+	private static long gcTime() {
+		long t = 0;
+		for (GarbageCollectorMXBean gc: ManagementFactory.getGarbageCollectorMXBeans()) {
+			t += Math.max(0, gc.getCollectionTime());
+		}
+		return t;
+	}
+}
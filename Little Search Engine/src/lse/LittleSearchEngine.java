@@ -22,12 +22,32 @@ public class LittleSearchEngine {
 	 */
 	HashSet<String> noiseWords;
 	
+	/**
+	 * Off-heap postings store, used in place of keywordsIndex when the engine is created in
+	 * off-heap mode. Null in the default (on-heap) mode.
+	 */
+	OffHeapPostings offHeapIndex;
+	
 	/**
 	 * Creates the keyWordsIndex and noiseWords hash tables.
 	 */
 	public LittleSearchEngine() {
-		keywordsIndex = new HashMap<String,ArrayList<Occurrence>>(1000,2.0f);
-		noiseWords = new HashSet<String>(100,2.0f);
+		this(false);
+	}
+	
+	/**
+	 * Creates the noiseWords hash table, and either the keywordsIndex hash table or, if offHeap
+	 * is true, an off-heap postings store. In off-heap mode only the term dictionary stays on the
+	 * heap, and keywordsIndex is left empty.
+	 * 
+	 * @param offHeap True to keep postings outside the Java heap
+	 */
+	public LittleSearchEngine(boolean offHeap) {
+		keywordsIndex = new HashMap<String,ArrayList<Occurrence>>(1000,2.0f); //keeps track of duplicates with key
+		noiseWords = new HashSet<String>(100,2.0f); //array w/ no duplicate
+		if (offHeap) {
+			offHeapIndex = new OffHeapPostings(1<<20);
+		}
 	}
 	
 	/**
@@ -40,11 +60,28 @@ public class LittleSearchEngine {
 	 */
 	public HashMap<String,Occurrence> loadKeywordsFromDocument(String docFile) 
 	throws FileNotFoundException {
-		/** COMPLETE THIS METHOD **/
-		
-		// following line is a placeholder to make the program compile
-		// you should modify it as needed when you write your code
-		return null;
+		if (docFile == null) {
+			throw new FileNotFoundException("File not found");
+		}
+		File doc= new File(docFile);
+		Scanner sc = new Scanner(doc); //scan doc file
+		HashMap<String,Occurrence> loadkw = new HashMap<String,Occurrence>(); //create HashMap 
+		while (sc.hasNext()) { //traverse through words
+			String test=sc.next().trim();
+			String keyword = getKeyword(test); //check if word is keyword
+			if (keyword == null) { //if it doesn't pass the keyword test, move on
+				continue;
+			}
+			if(!loadkw.containsKey(keyword)) { //if it's the first occurrence
+				Occurrence occ=  new Occurrence(docFile,1); //create new occurrence object with 1
+				loadkw.put(keyword,occ); //put into HashMap
+			}
+			else{ //if it's not the first occurrence
+				loadkw.get(keyword).frequency++; //frequency++
+			}
+		}
+		sc.close();
+		return loadkw;
 	}
 	
 	/**
@@ -55,9 +92,29 @@ public class LittleSearchEngine {
 	 * This is done by calling the insertLastOccurrence method.
 	 * 
 	 * @param kws Keywords hash table for a document
+	 * 
 	 */
 	public void mergeKeywords(HashMap<String,Occurrence> kws) {
-		/** COMPLETE THIS METHOD **/
+		if (offHeapIndex != null) { //postings kept off-heap, in the same order
+			for(String word:kws.keySet()) {
+				offHeapIndex.add(word, kws.get(word));
+			}
+			return;
+		}
+		for(String word:kws.keySet()) { //traverse through HashMap
+			ArrayList<Occurrence> listOfWord = keywordsIndex.get(word);
+			if(listOfWord==null) { //new occurrence
+				listOfWord= new ArrayList<Occurrence>(); //create first
+				listOfWord.add(kws.get(word)); //add new item
+			}
+			else {
+				listOfWord.add(kws.get(word)); //add new item
+			}
+			
+			insertLastOccurrence(listOfWord); //sort
+			keywordsIndex.put(word, listOfWord); //put modified list back in Master HashMap
+	
+		}
 	}
 	
 	/**
@@ -78,11 +135,31 @@ public class LittleSearchEngine {
 	 * @return Keyword (word without trailing punctuation, LOWER CASE)
 	 */
 	public String getKeyword(String word) {
-		/** COMPLETE THIS METHOD **/
+		/*
+		 * 1.check if every letter is alphabetic 
+		 * 2.strip
+		 * 3. lowercase
+		 * 4. check if it's noiseword
+		 * 5. return result
+		 */
+		if(word.equals("")||word.equals(".")||word.equals(",")||word.equals(":")||word.equals(";")||word.equals("!")||word.equals("?")) {
+			word="";
+		}
+		while(word.length()>1&&(word.charAt(word.length()-1)=='.'||word.charAt(word.length()-1)==','||word.charAt(word.length()-1)=='?'||word.charAt(word.length()-1)==':'||word.charAt(word.length()-1)==';'||word.charAt(word.length()-1)=='!')) {
+			word=word.substring(0,word.length()-1);
 		
-		// following line is a placeholder to make the program compile
-		// you should modify it as needed when you write your code
-		return null;
+		}
+		if(word.equals("")) {return null;}
+		for(int i=0;i<word.length();i++) {
+			if(!Character.isLetter(word.charAt(i))) {
+				return null;
+			}
+		}
+		word=word.toLowerCase();
+		if(noiseWords.contains(word)) {
+			return null;
+		}
+		return word;
 	}
 	
 	/**
@@ -97,11 +174,42 @@ public class LittleSearchEngine {
 	 *         your code - it is not used elsewhere in the program.
 	 */
 	public ArrayList<Integer> insertLastOccurrence(ArrayList<Occurrence> occs) {
-		/** COMPLETE THIS METHOD **/
-		
-		// following line is a placeholder to make the program compile
-		// you should modify it as needed when you write your code
-		return null;
+		ArrayList<Integer> mp = new ArrayList<Integer>(); //
+		Occurrence toInsert= occs.get(occs.size()-1);
+		int last= occs.size()-1;
+		if (occs.size() <= 1) {
+			return null;
+		}
+		int lo=0;
+		int mid=0;
+		int hi=occs.size()-2;
+		while(lo<=hi) {
+			mid=(lo+hi)/2;
+			mp.add(mid);
+			if(occs.get(mid).frequency==toInsert.frequency) { //same frequency
+				occs.add(mid+1, toInsert);
+				last++;
+				occs.remove(last);
+				return mp;
+			}
+			if(occs.get(mid).frequency>toInsert.frequency) {
+				lo=mid+1;
+			}
+			if(occs.get(mid).frequency<toInsert.frequency) {
+				hi=mid-1;
+			}
+		}
+		//out of the while loop
+		if(toInsert.frequency>occs.get(mid).frequency) {
+			occs.add(mid, toInsert);
+			last++;
+		}
+		if(toInsert.frequency<occs.get(mid).frequency) {
+			occs.add(mid+1, toInsert);
+			last++;
+		}
+		occs.remove(last);
+		return mp;
 	}
 	
 	/**
@@ -128,9 +236,12 @@ public class LittleSearchEngine {
 		while (sc.hasNext()) {
 			String docFile = sc.next();
 			HashMap<String,Occurrence> kws = loadKeywordsFromDocument(docFile);
+		
 			mergeKeywords(kws);
+		
 		}
 		sc.close();
+	
 	}
 	
 	/**
@@ -154,11 +265,95 @@ public class LittleSearchEngine {
 	 *         returns null or empty array list.
 	 */
 	public ArrayList<String> top5search(String kw1, String kw2) {
-		/** COMPLETE THIS METHOD **/
-		
-		// following line is a placeholder to make the program compile
-		// you should modify it as needed when you write your code
-		return null;
+		List<Occurrence> occ1= postings(kw1.toLowerCase());	
+		List<Occurrence> occ2= postings(kw2.toLowerCase());	
+		if(occ1==null && occ2==null) {
+		return null;}
+		ArrayList<String> top5 = new ArrayList<String>(5);
+		if(occ1!=null && occ2==null) { //if kw2 is empty
+			for(int doc=0; doc<top5.size();doc++) { //copy occ1 upto 5 items
+				if(doc<occ1.size()) {
+					top5.add(occ1.get(doc).document);
+				}
+			}
+		}
+		if(occ1==null && occ2!=null) { //if kw1 is empty
+			for(int doc=0; doc<top5.size();doc++) {
+				if(doc<occ2.size()) {
+					top5.add(occ2.get(doc).document);
+				}
+			}
+		}
+		if(occ1!=null && occ2!=null) { //if they are both not empty
+			int ptr1=0,ptr2=0;
+			while(top5.size() != 5) {
+			if(ptr1 < occ1.size() && ptr2 < occ2.size()) {
+			
+				int c= occ1.get(ptr1).frequency-occ2.get(ptr2).frequency;
+				if(c>=0) { //occ1 is greater than occ2 || frequency is same
+					if (!top5.contains(occ1.get(ptr1).document)) {
+						top5.add(occ1.get(ptr1).document);
+						ptr1++;
+					}
+					else if(!top5.contains(occ2.get(ptr2).document)) {
+						top5.add(occ2.get(ptr2).document);
+						ptr1++;
+						ptr2++;
+					}
+					else {
+						ptr1++;
+						ptr2++;
+					}
+				}
+				if(c<0) { //occ2 is greater than occ2
+					if (!top5.contains(occ2.get(ptr2).document)) {
+						top5.add(occ2.get(ptr2).document);
+						ptr2++;
+					}
+					else if(!top5.contains(occ1.get(ptr1).document)) {
+						top5.add(occ1.get(ptr1).document);
+						ptr1++;
+						ptr2++;
+					}
+					else {
+						ptr1++;
+						ptr2++;
+					}
+				}
+			}
+			
+			else if (ptr1 < occ1.size() && ptr2 >= occ2.size()) {
+				if(!top5.contains(occ1.get(ptr1).document)) {
+				top5.add(occ1.get(ptr1).document);
+				ptr1++;}
+				else ptr1++;
+			}
+			else if (ptr1 >= occ1.size() && ptr2 < occ2.size()) {
+				if(!top5.contains(occ2.get(ptr2).document)) {
+				top5.add(occ2.get(ptr2).document);
+				ptr2++;}
+				else ptr2++;
+			}
+			
+			else {
+			
+				break;
+			}
+		}
+		}
+		return top5;
+	}
 	
+	/**
+	 * Returns the occurrence list of a keyword from whichever index this engine uses.
+	 * 
+	 * @param kw Keyword, lower case
+	 * @return Occurrences in descending order of frequency, null if the keyword is not indexed
+	 */
+	private List<Occurrence> postings(String kw) {
+		if (offHeapIndex != null) {
+			return offHeapIndex.get(kw);
+		}
+		return keywordsIndex.get(kw);
 	}
-}
+}
\ No newline at end of file
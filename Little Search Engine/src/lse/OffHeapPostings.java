@@ -0,0 +1,225 @@
+package lse;
+
+import java.nio.ByteBuffer;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * Postings storage that keeps all (document, frequency) pairs outside the Java heap, in
+ * a direct byte buffer. Only the term dictionary and the (small) document name table live
+ * on the heap, so the garbage collector never has to trace the postings themselves.
+ *
+ * Every term owns a block of the buffer holding its postings as consecutive (document id,
+ * frequency) int pairs, kept in DESCENDING order of frequency exactly as the on-heap
+ * Occurrence lists of LittleSearchEngine. A full block is moved to the end of the buffer
+ * with twice the capacity; the old space is not reused.
+ *
+ */
+public class OffHeapPostings {
+
+	/**
+	 * Bytes taken by one posting: document id and frequency.
+	 */
+	private static final int ENTRY_BYTES = 8;
+
+	/**
+	 * Number of postings a new term block has room for.
+	 */
+	private static final int INITIAL_BLOCK = 4;
+
+	/**
+	 * Off-heap storage for all postings blocks.
+	 */
+	private ByteBuffer arena;
+
+	/**
+	 * First unused byte in the arena.
+	 */
+	private int top;
+
+	/**
+	 * Term dictionary: keyword -> term id.
+	 */
+	private HashMap<String,Integer> terms;
+
+	/**
+	 * Byte offset, capacity (in postings) and size (in postings) of each term's block,
+	 * indexed by term id.
+	 */
+	private int[] blockOffset, blockCapacity, blockSize;
+
+	/**
+	 * Document names, indexed by document id.
+	 */
+	private ArrayList<String> documents;
+
+	/**
+	 * Document name -> document id.
+	 */
+	private HashMap<String,Integer> documentIds;
+
+	/**
+	 * Initializes an empty store with the given initial off-heap capacity.
+	 *
+	 * @param capacity Initial size of the off-heap buffer, in bytes
+	 */
+	public OffHeapPostings(int capacity) {
+		arena = ByteBuffer.allocateDirect(Math.max(capacity, INITIAL_BLOCK*ENTRY_BYTES));
+		top = 0;
+		terms = new HashMap<String,Integer>(1000,2.0f);
+		blockOffset = new int[64];
+		blockCapacity = new int[64];
+		blockSize = new int[64];
+		documents = new ArrayList<String>();
+		documentIds = new HashMap<String,Integer>();
+	}
+
+	/**
+	 * Adds the occurrence of a keyword in a document, in the correct place according to
+	 * descending order of frequency. Ties are resolved with the same binary search used by
+	 * LittleSearchEngine.insertLastOccurrence, so both modes produce identical orderings.
+	 *
+	 * @param keyword Keyword
+	 * @param occ Occurrence of the keyword in a document
+	 */
+	public void add(String keyword, Occurrence occ) {
+		int t = termId(keyword);
+		if (blockSize[t] == blockCapacity[t]) {
+			growBlock(t);
+		}
+		int base = blockOffset[t];
+		int n = blockSize[t];
+		int pos = insertPosition(base, n, occ.frequency);
+		for (int i=n; i > pos; i--) { // shift lower frequencies right by one posting
+			arena.putLong(base + i*ENTRY_BYTES, arena.getLong(base + (i-1)*ENTRY_BYTES));
+		}
+		arena.putInt(base + pos*ENTRY_BYTES, documentId(occ.document));
+		arena.putInt(base + pos*ENTRY_BYTES + 4, occ.frequency);
+		blockSize[t] = n+1;
+	}
+
+	/**
+	 * Returns the postings of a keyword as a read-only list view. Occurrence objects are
+	 * created on demand by get, and are not retained.
+	 *
+	 * @param keyword Keyword
+	 * @return Occurrences in descending order of frequency, or null if keyword is not indexed
+	 */
+	public List<Occurrence> get(String keyword) {
+		Integer t = terms.get(keyword);
+		if (t == null) {
+			return null;
+		}
+		final int base = blockOffset[t];
+		final int n = blockSize[t];
+		return new AbstractList<Occurrence>() {
+			public Occurrence get(int i) {
+				if (i < 0 || i >= n) {
+					throw new IndexOutOfBoundsException("Index: " + i + ", Size: " + n);
+				}
+				return new Occurrence(documents.get(arena.getInt(base + i*ENTRY_BYTES)),
+						arena.getInt(base + i*ENTRY_BYTES + 4));
+			}
+			public int size() {
+				return n;
+			}
+		};
+	}
+
+	/**
+	 * Returns the number of keywords in the store.
+	 *
+	 * @return Number of keywords
+	 */
+	public int size() {
+		return terms.size();
+	}
+
+	/**
+	 * Returns the number of off-heap bytes in use, including space left behind by moved blocks.
+	 *
+	 * @return Off-heap bytes used
+	 */
+	public long offHeapBytes() {
+		return top;
+	}
+
+	private int insertPosition(int base, int n, int freq) {
+		if (n == 0) {
+			return 0;
+		}
+		int lo=0, mid=0, hi=n-1;
+		while (lo <= hi) {
+			mid = (lo+hi)/2;
+			int f = arena.getInt(base + mid*ENTRY_BYTES + 4);
+			if (f == freq) {
+				return mid+1;
+			}
+			if (f > freq) {
+				lo = mid+1;
+			} else {
+				hi = mid-1;
+			}
+		}
+		return freq > arena.getInt(base + mid*ENTRY_BYTES + 4) ? mid : mid+1;
+	}
+
+	private int termId(String keyword) {
+		Integer t = terms.get(keyword);
+		if (t != null) {
+			return t;
+		}
+		int id = terms.size();
+		if (id == blockOffset.length) {
+			int cap = id*2;
+			blockOffset = Arrays.copyOf(blockOffset, cap);
+			blockCapacity = Arrays.copyOf(blockCapacity, cap);
+			blockSize = Arrays.copyOf(blockSize, cap);
+		}
+		blockOffset[id] = allocate(INITIAL_BLOCK*ENTRY_BYTES);
+		blockCapacity[id] = INITIAL_BLOCK;
+		blockSize[id] = 0;
+		terms.put(keyword, id);
+		return id;
+	}
+
+	private int documentId(String document) {
+		Integer d = documentIds.get(document);
+		if (d == null) {
+			d = documents.size();
+			documents.add(document);
+			documentIds.put(document, d);
+		}
+		return d;
+	}
+
+	private void growBlock(int t) {
+		int bytes = blockSize[t]*ENTRY_BYTES;
+		int offset = allocate(bytes*2);
+		for (int i=0; i < bytes; i += ENTRY_BYTES) {
+			arena.putLong(offset+i, arena.getLong(blockOffset[t]+i));
+		}
+		blockOffset[t] = offset;
+		blockCapacity[t] *= 2;
+	}
+
+	private int allocate(int bytes) {
+		if ((long)top + bytes > arena.capacity()) {
+			long cap = Math.max(Math.min((long)arena.capacity()*2, Integer.MAX_VALUE-8), (long)top+bytes);
+			if (cap > Integer.MAX_VALUE-8) {
+				throw new OutOfMemoryError("postings exceed 2GB off-heap buffer");
+			}
+			ByteBuffer bigger = ByteBuffer.allocateDirect((int)cap);
+			ByteBuffer old = arena.duplicate();
+			old.position(0).limit(top);
+			bigger.put(old);
+			arena = bigger;
+		}
+		int offset = top;
+		top += bytes;
+		return offset;
+	}
+}
@@ -0,0 +1,153 @@
+package lse;
+
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Checks the off-heap postings mode of LittleSearchEngine against the on-heap mode. Random
+ * documents are merged into an engine of each mode, enough of them to move term blocks and
+ * grow the off-heap buffer many times; then every keyword's occurrence list, and top5search
+ * on random pairs of keywords, must be the same in both. An OffHeapPostings with a buffer of
+ * a few bytes is also checked against insertLastOccurrence directly.
+ *
+ * Usage: java lse.PostingsTest [documents] [seed] [docsFile noiseWordsFile]
+ *
+ * Given a document list and noise words, both modes also index those files and are compared
+ * the same way. Prints each failure, then the number of documents checked; exits with status
+ * 1 on a failure.
+ *
+ */
+public class PostingsTest {
+
+	private static int failures;
+
+	public static void main(String[] args)
+	throws FileNotFoundException {
+		int documents = args.length > 0 ? Integer.parseInt(args[0]) : 400;
+		Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 1);
+		checkMerged(documents, random);
+		checkSmallBuffer(documents, random);
+		if (args.length > 3) {
+			LittleSearchEngine onHeap = new LittleSearchEngine(false);
+			LittleSearchEngine offHeap = new LittleSearchEngine(true);
+			onHeap.makeIndex(args[2], args[3]);
+			offHeap.makeIndex(args[2], args[3]);
+			compare(args[2], onHeap, offHeap, random);
+		}
+		System.out.println(documents + " documents, " + failures + " failures");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/*
+	 * Both modes fed the same keyword tables. Frequencies are drawn from a small range so
+	 * that most insertions tie, which is where the two orderings could part.
+	 */
+	static void checkMerged(int documents, Random random) {
+		LittleSearchEngine onHeap = new LittleSearchEngine(false);
+		LittleSearchEngine offHeap = new LittleSearchEngine(true);
+		for (int d=0; d < documents; d++) {
+			HashMap<String,Occurrence> kws = keywords("doc" + d, random);
+			onHeap.mergeKeywords(kws);
+			offHeap.mergeKeywords(kws);
+		}
+		if (offHeap.offHeapIndex.size() != onHeap.keywordsIndex.size()) {
+			fail("merged", "expected " + onHeap.keywordsIndex.size() + " keywords, got " + offHeap.offHeapIndex.size());
+		}
+		compare("merged", onHeap, offHeap, random);
+	}
+
+	/*
+	 * OffHeapPostings starting from a buffer too small for one block, against occurrence
+	 * lists kept with insertLastOccurrence.
+	 */
+	static void checkSmallBuffer(int documents, Random random) {
+		LittleSearchEngine engine = new LittleSearchEngine();
+		HashMap<String,ArrayList<Occurrence>> expected = new HashMap<String,ArrayList<Occurrence>>();
+		OffHeapPostings postings = new OffHeapPostings(1);
+		for (int d=0; d < documents; d++) {
+			HashMap<String,Occurrence> kws = keywords("doc" + d, random);
+			for (String kw: kws.keySet()) {
+				ArrayList<Occurrence> occs = expected.get(kw);
+				if (occs == null) {
+					occs = new ArrayList<Occurrence>();
+					expected.put(kw, occs);
+				}
+				occs.add(kws.get(kw));
+				engine.insertLastOccurrence(occs);
+				postings.add(kw, kws.get(kw));
+			}
+		}
+		for (String kw: expected.keySet()) {
+			compare("small buffer, " + kw, expected.get(kw), postings.get(kw));
+		}
+		if (postings.get("absent") != null) {
+			fail("small buffer", "postings for a keyword never added");
+		}
+	}
+
+	private static void compare(String check, LittleSearchEngine onHeap, LittleSearchEngine offHeap, Random random) {
+		ArrayList<String> words = new ArrayList<String>(onHeap.keywordsIndex.keySet());
+		for (String kw: words) {
+			compare(check + ", " + kw, onHeap.keywordsIndex.get(kw), offHeap.offHeapIndex.get(kw));
+		}
+		words.add("absent");
+		for (int i=0; i < 1000 && !words.isEmpty(); i++) {
+			String kw1 = words.get(random.nextInt(words.size()));
+			String kw2 = words.get(random.nextInt(words.size()));
+			ArrayList<String> expected = onHeap.top5search(kw1, kw2);
+			ArrayList<String> actual = offHeap.top5search(kw1, kw2);
+			if (expected == null ? actual != null : !expected.equals(actual)) {
+				fail(check + ", top5search " + kw1 + " " + kw2, "expected " + expected + ", got " + actual);
+			}
+		}
+	}
+
+	private static void compare(String check, List<Occurrence> expected, List<Occurrence> actual) {
+		if (actual == null) {
+			fail(check, "no postings");
+			return;
+		}
+		if (!expected.toString().equals(actual.toString())) {
+			fail(check, "expected " + expected + ", got " + actual);
+		}
+	}
+
+	/*
+	 * Keywords of one document: some drawn from a few hundred common words, which build
+	 * long occurrence lists, and some from a large set that are seen only a few times.
+	 */
+	private static HashMap<String,Occurrence> keywords(String document, Random random) {
+		HashMap<String,Occurrence> kws = new HashMap<String,Occurrence>();
+		for (int k=random.nextInt(300); k > 0; k--) {
+			String kw = random.nextInt(3) == 0 ? word(10000 + random.nextInt(50000)) : word(random.nextInt(300));
+			Occurrence occ = kws.get(kw);
+			if (occ == null) {
+				kws.put(kw, new Occurrence(document, 1 + random.nextInt(4)));
+			} else {
+				occ.frequency++;
+			}
+		}
+		return kws;
+	}
+
+	private static String word(int n) {
+		StringBuilder word = new StringBuilder();
+		do {
+			word.append((char)('a' + n % 26));
+			n /= 26;
+		} while (n > 0);
+		return word.toString();
+	}
+
+	private static void fail(String check, String message) {
+		failures++;
+		if (failures <= 20) {
+			System.out.println(check + ": " + message);
+		}
+	}
+}
@@ -0,0 +1,276 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import structures.Arc;
+import structures.ConcurrentDisjointSets;
+import structures.EdgeList;
+import structures.Graph;
+
+/**
+ * Finds a minimum spanning tree with Boruvka's algorithm, on a pool of threads. Each round
+ * finds, for every component at once, its cheapest edge to another component, then merges
+ * the components along those edges; the number of components at least halves each round,
+ * so there are at most log2(V) rounds.
+ *
+ * The edges are kept in three int arrays (see EdgeList), split evenly among the threads.
+ * In a round each thread scans its share of the edges, drops those inside a component,
+ * and lowers the cheapest edge of both components of each remaining edge with a
+ * compare-and-set; then the components are merged in a concurrent union-find, also by
+ * all the threads. Edges are ordered by weight, then by position, so all components agree
+ * on which of two equal edges is cheaper, and the edges picked never form a cycle.
+ *
+ */
+public class Boruvka {
+
+	/**
+	 * Smallest share of edges or components worth a thread of its own
+	 */
+	private static final int MIN_SHARE = 1<<14;
+
+	/**
+	 * No cheapest edge found yet
+	 */
+	private static final long NONE = Long.MAX_VALUE;
+
+	private final ExecutorService pool;
+	private final int threads;
+
+	/**
+	 * Edges still between components: ends, weights; and spare arrays to compact into
+	 */
+	private int[] v1, v2, weight, w1, w2, ww;
+	private int edges;
+
+	private final ConcurrentDisjointSets sets;
+
+	/**
+	 * Cheapest edge out of each component, by root, as weight*2^32 + position
+	 */
+	private final AtomicLongArray cheapest;
+
+	/**
+	 * Edges of the tree, as ends and weights
+	 */
+	private final int[] t1, t2, tw;
+	private final AtomicInteger treeSize;
+
+	private Boruvka(EdgeList list, int vertices, ExecutorService pool, int threads) {
+		this.pool = pool;
+		this.threads = threads;
+		edges = list.size;
+		v1 = list.v1.clone();
+		v2 = list.v2.clone();
+		weight = list.weight.clone();
+		w1 = new int[edges];
+		w2 = new int[edges];
+		ww = new int[edges];
+		sets = new ConcurrentDisjointSets(vertices);
+		cheapest = new AtomicLongArray(vertices);
+		for (int i=0; i < vertices; i++) {
+			cheapest.set(i, NONE);
+		}
+		int n = Math.max(vertices-1, 0);
+		t1 = new int[n];
+		t2 = new int[n];
+		tw = new int[n];
+		treeSize = new AtomicInteger();
+	}
+
+	/**
+	 * Finds a minimum spanning tree of a graph, using all the processors. If the graph is
+	 * not connected, finds a minimum spanning tree of each of its components.
+	 *
+	 * @param graph Graph for which the MST is to be found
+	 * @return Array list of all arcs that are in the MST - sequence of arcs is irrelevant
+	 */
+	public static ArrayList<Arc> execute(Graph graph) {
+		return execute(graph, Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Finds a minimum spanning tree of a graph, as execute(graph) does, on a given number
+	 * of threads.
+	 *
+	 * @param graph Graph for which the MST is to be found
+	 * @param threads Number of threads
+	 * @return Array list of all arcs that are in the MST - sequence of arcs is irrelevant
+	 */
+	public static ArrayList<Arc> execute(Graph graph, int threads) {
+		ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+			public Thread newThread(Runnable r) {
+				Thread t = new Thread(r, "mst-boruvka");
+				t.setDaemon(true);
+				return t;
+			}
+		});
+		try {
+			Boruvka b = new Boruvka(new EdgeList(graph), graph.vertices.length, pool, threads);
+			b.run();
+			int n = b.treeSize.get();
+			ArrayList<Arc> mst = new ArrayList<Arc>(n);
+			for (int i=0; i < n; i++) {
+				mst.add(new Arc(graph.vertices[b.t1[i]], graph.vertices[b.t2[i]], b.tw[i]));
+			}
+			return mst;
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	private void run() {
+		int[] roots = new int[cheapest.length()];
+		for (int i=0; i < roots.length; i++) {
+			roots[i] = i;
+		}
+		int count = roots.length;
+		while (edges > 0) {
+			final int[] kept = new int[shares(edges)];
+			parallel(edges, new Share() {
+				public void run(int share, int from, int to) {
+					kept[share] = findCheapest(from, to);
+				}
+			});
+			final int[] r = roots;
+			parallel(count, new Share() {
+				public void run(int share, int from, int to) {
+					merge(r, from, to);
+				}
+			});
+			compact(kept); // after the merges, which find the cheapest edges by position
+			int n = 0; // components still with edges out
+			for (int i=0; i < count; i++) {
+				if (sets.find(roots[i]) == roots[i]) {
+					roots[n++] = roots[i];
+				}
+			}
+			count = n;
+		}
+	}
+
+	/*
+	 * Drops the edges inside a component from positions from to to-1, moving the others
+	 * down to the start of the range, and offers each one as the cheapest edge of its two
+	 * components. Returns the number of edges kept.
+	 */
+	private int findCheapest(int from, int to) {
+		int k = from;
+		for (int e=from; e < to; e++) {
+			int r1 = sets.find(v1[e]), r2 = sets.find(v2[e]);
+			if (r1 == r2) {
+				continue;
+			}
+			v1[k] = v1[e];
+			v2[k] = v2[e];
+			weight[k] = weight[e];
+			long key = ((long)weight[k] << 32) | k;
+			lower(r1, key);
+			lower(r2, key);
+			k++;
+		}
+		return k-from;
+	}
+
+	private void lower(int root, long key) {
+		long cur = cheapest.get(root);
+		while (key < cur && !cheapest.compareAndSet(root, cur, key)) {
+			cur = cheapest.get(root);
+		}
+	}
+
+	/*
+	 * Merges each of the components roots[from..to-1] along its cheapest edge, if it has
+	 * one, and records the edge if the merge joined two components.
+	 */
+	private void merge(int[] roots, int from, int to) {
+		for (int i=from; i < to; i++) {
+			long key = cheapest.get(roots[i]);
+			if (key == NONE) {
+				continue;
+			}
+			cheapest.set(roots[i], NONE);
+			int e = (int)key;
+			if (sets.union(v1[e], v2[e])) {
+				int t = treeSize.getAndIncrement();
+				t1[t] = v1[e];
+				t2[t] = v2[e];
+				tw[t] = weight[e];
+			}
+		}
+	}
+
+	/*
+	 * Moves the edges kept by each share together into the spare arrays, which become
+	 * the edge arrays.
+	 */
+	private void compact(final int[] kept) {
+		final int[] start = new int[kept.length+1];
+		for (int i=0; i < kept.length; i++) {
+			start[i+1] = start[i] + kept[i];
+		}
+		final int total = edges;
+		parallel(total, new Share() {
+			public void run(int share, int from, int to) {
+				System.arraycopy(v1, from, w1, start[share], kept[share]);
+				System.arraycopy(v2, from, w2, start[share], kept[share]);
+				System.arraycopy(weight, from, ww, start[share], kept[share]);
+			}
+		});
+		int[] t = v1; v1 = w1; w1 = t;
+		t = v2; v2 = w2; w2 = t;
+		t = weight; weight = ww; ww = t;
+		edges = start[kept.length];
+	}
+
+	/**
+	 * Work on one share of a range
+	 */
+	private interface Share {
+		void run(int share, int from, int to);
+	}
+
+	private int shares(int n) {
+		return Math.max(1, Math.min(threads*4, n/MIN_SHARE));
+	}
+
+	/*
+	 * Splits 0..n-1 into shares(n) ranges of nearly equal size and runs the work on each,
+	 * in the pool. Positions from share i start at i*n/shares.
+	 */
+	private void parallel(final int n, final Share work) {
+		final int shares = shares(n);
+		if (shares == 1) {
+			work.run(0, 0, n);
+			return;
+		}
+		List<Callable<Void>> tasks = new ArrayList<Callable<Void>>(shares);
+		for (int i=0; i < shares; i++) {
+			final int share = i;
+			tasks.add(new Callable<Void>() {
+				public Void call() {
+					work.run(share, (int)((long)share*n/shares), (int)((long)(share+1)*n/shares));
+					return null;
+				}
+			});
+		}
+		try {
+			for (Future<Void> f: pool.invokeAll(tasks)) {
+				f.get();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+	}
+}
@@ -0,0 +1,238 @@
+package app;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import structures.Arc;
+import structures.DisjointSets;
+import structures.EdgeList;
+import structures.Graph;
+
+/**
+ * Filter-Kruskal: Kruskal's algorithm without sorting most of the edges. The edges are
+ * split around a pivot weight as in quicksort; the lighter part is solved first, then
+ * every edge of the heavier part whose ends are already connected is filtered out before
+ * it is solved in turn. A part small enough is sorted and run through Kruskal's algorithm.
+ * On all but the sparsest graphs most heavy edges are filtered out long before they
+ * would be sorted.
+ *
+ * Filtering only reads the union-find, so a large part is filtered by several threads at
+ * once, each on a share of its edges.
+ *
+ */
+public class FilterKruskal implements MstAlgorithm {
+
+	/**
+	 * Parts up to this many edges are sorted, or more if there are more vertices
+	 */
+	private static final int SORT_SIZE = 1024;
+
+	/**
+	 * Smallest share of edges worth filtering on a thread of its own
+	 */
+	private static final int MIN_SHARE = 1<<15;
+
+	private final int threads;
+
+	/**
+	 * State of one run: edges, union-find, tree found so far
+	 */
+	private int[] v1, v2, weight;
+	private DisjointSets sets;
+	private int vertices;
+	private ArrayList<Arc> mst;
+	private Graph graph;
+	private Random random;
+	private ExecutorService pool;
+
+	/**
+	 * Initializes the algorithm to filter on all the processors.
+	 */
+	public FilterKruskal() {
+		this(Runtime.getRuntime().availableProcessors());
+	}
+
+	/**
+	 * Initializes the algorithm to filter on a given number of threads.
+	 *
+	 * @param threads Number of threads
+	 */
+	public FilterKruskal(int threads) {
+		this.threads = threads;
+	}
+
+	/**
+	 * Finds a minimum spanning tree of a graph. Not to be called by two threads at once.
+	 */
+	public synchronized ArrayList<Arc> execute(Graph graph) {
+		EdgeList edges = new EdgeList(graph);
+		this.graph = graph;
+		v1 = edges.v1;
+		v2 = edges.v2;
+		weight = edges.weight;
+		vertices = graph.vertices.length;
+		sets = new DisjointSets(vertices);
+		mst = new ArrayList<Arc>(Math.max(vertices-1, 0));
+		random = new Random(edges.size);
+		if (threads > 1 && edges.size >= 2*MIN_SHARE) {
+			pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+				public Thread newThread(Runnable r) {
+					Thread t = new Thread(r, "mst-filter");
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		try {
+			solve(0, edges.size);
+			return mst;
+		} finally {
+			if (pool != null) {
+				pool.shutdown();
+			}
+			pool = null;
+			v1 = v2 = weight = null;
+			sets = null;
+			this.graph = null;
+		}
+	}
+
+	/*
+	 * Adds the tree edges among positions lo to hi-1 to the tree, given that all the
+	 * lighter edges have been.
+	 */
+	private void solve(int lo, int hi) {
+		while (hi-lo > Math.max(SORT_SIZE, vertices) && mst.size() < vertices-1) {
+			int p = pivot(lo, hi);
+			int mid = partition(lo, hi, p);
+			if (mid == hi) { // no edge heavier than the pivot: all the same weight, or nearly
+				break;
+			}
+			solve(lo, mid);
+			lo = mid;
+			hi = filter(lo, hi);
+		}
+		kruskal(lo, hi);
+	}
+
+	/*
+	 * Median weight of three edges picked at random.
+	 */
+	private int pivot(int lo, int hi) {
+		int a = weight[lo + random.nextInt(hi-lo)];
+		int b = weight[lo + random.nextInt(hi-lo)];
+		int c = weight[lo + random.nextInt(hi-lo)];
+		return Math.max(Math.min(a, b), Math.min(Math.max(a, b), c));
+	}
+
+	/*
+	 * Moves the edges of weight at most p to the front, and returns where the rest start.
+	 */
+	private int partition(int lo, int hi, int p) {
+		int i = lo, j = hi-1;
+		while (true) {
+			while (i <= j && weight[i] <= p) {
+				i++;
+			}
+			while (i <= j && weight[j] > p) {
+				j--;
+			}
+			if (i >= j) {
+				return i;
+			}
+			swap(i, j);
+		}
+	}
+
+	private void swap(int i, int j) {
+		int t = v1[i]; v1[i] = v1[j]; v1[j] = t;
+		t = v2[i]; v2[i] = v2[j]; v2[j] = t;
+		t = weight[i]; weight[i] = weight[j]; weight[j] = t;
+	}
+
+	/*
+	 * Sorts the edges from lo to hi-1 by weight, and adds those that join two trees.
+	 */
+	private void kruskal(int lo, int hi) {
+		long[] order = new long[hi-lo]; // weight, then position
+		for (int e=lo; e < hi; e++) {
+			order[e-lo] = ((long)weight[e] << 32) | e;
+		}
+		Arrays.sort(order);
+		for (int i=0; i < order.length && mst.size() < vertices-1; i++) {
+			int e = (int)order[i];
+			if (sets.find(v1[e]) != sets.find(v2[e])) {
+				sets.union(v1[e], v2[e]);
+				mst.add(new Arc(graph.vertices[v1[e]], graph.vertices[v2[e]], weight[e]));
+			}
+		}
+	}
+
+	/*
+	 * Drops the edges from lo to hi-1 whose ends are connected, moving the others down to
+	 * the start of the range, and returns the end of the edges kept.
+	 */
+	private int filter(int lo, final int hi) {
+		int shares = pool == null ? 1 : Math.min(threads*4, (hi-lo)/MIN_SHARE);
+		if (shares <= 1) {
+			return lo + keep(lo, hi);
+		}
+		List<Callable<Integer>> tasks = new ArrayList<Callable<Integer>>(shares);
+		final int[] start = new int[shares+1];
+		for (int i=0; i <= shares; i++) {
+			start[i] = (int)(lo + (long)i*(hi-lo)/shares);
+		}
+		for (int i=0; i < shares; i++) {
+			final int s = i;
+			tasks.add(new Callable<Integer>() {
+				public Integer call() {
+					return keep(start[s], start[s+1]);
+				}
+			});
+		}
+		int end = lo;
+		try {
+			List<Future<Integer>> kept = pool.invokeAll(tasks);
+			for (int i=0; i < shares; i++) { // move the shares together, in order
+				int n = kept.get(i).get();
+				if (end != start[i]) {
+					System.arraycopy(v1, start[i], v1, end, n);
+					System.arraycopy(v2, start[i], v2, end, n);
+					System.arraycopy(weight, start[i], weight, end, n);
+				}
+				end += n;
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new RuntimeException(e);
+		} catch (ExecutionException e) {
+			throw new RuntimeException(e.getCause());
+		}
+		return end;
+	}
+
+	/*
+	 * Moves the edges from lo to hi-1 whose ends are not connected to the start of the
+	 * range, and returns how many there are. Safe on several threads at once.
+	 */
+	private int keep(int lo, int hi) {
+		int k = lo;
+		for (int e=lo; e < hi; e++) {
+			if (sets.root(v1[e]) != sets.root(v2[e])) {
+				v1[k] = v1[e];
+				v2[k] = v2[e];
+				weight[k] = weight[e];
+				k++;
+			}
+		}
+		return k-lo;
+	}
+}
@@ -0,0 +1,23 @@
+package app;
+
+import java.util.ArrayList;
+
+import structures.Arc;
+import structures.Graph;
+
+/**
+ * An algorithm that finds a minimum spanning tree of a graph. All of them give trees of the
+ * same total weight; they differ in speed on different graphs (see MstAlgorithms.choose).
+ *
+ */
+public interface MstAlgorithm {
+
+	/**
+	 * Finds a minimum spanning tree of a graph, or of each of its components if it is not
+	 * connected.
+	 *
+	 * @param graph Graph for which the MST is to be found
+	 * @return Array list of all arcs that are in the MST - sequence of arcs is irrelevant
+	 */
+	ArrayList<Arc> execute(Graph graph);
+}
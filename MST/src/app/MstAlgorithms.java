@@ -0,0 +1,102 @@
+package app;
+
+import java.util.ArrayList;
+
+import structures.Arc;
+import structures.Graph;
+
+/**
+ * The MST algorithms, and a choice among them by the shape of the graph.
+ *
+ */
+public class MstAlgorithms {
+
+	/**
+	 * The partial tree list algorithm: PartialTreeList.initialize, then execute
+	 */
+	public static final MstAlgorithm PARTIAL_TREES = new MstAlgorithm() {
+		public ArrayList<Arc> execute(Graph graph) {
+			if (graph.vertices.length == 0) {
+				return new ArrayList<Arc>();
+			}
+			return PartialTreeList.execute(PartialTreeList.initialize(graph));
+		}
+	};
+
+	/**
+	 * Parallel Boruvka on all the processors (see Boruvka)
+	 */
+	public static final MstAlgorithm BORUVKA = new MstAlgorithm() {
+		public ArrayList<Arc> execute(Graph graph) {
+			return Boruvka.execute(graph);
+		}
+	};
+
+	/**
+	 * Prim with an indexed heap (see Prim)
+	 */
+	public static final MstAlgorithm PRIM = new Prim();
+
+	/**
+	 * Filter-Kruskal, filtering on all the processors (see FilterKruskal)
+	 */
+	public static final MstAlgorithm FILTER_KRUSKAL = new MstAlgorithm() {
+		public ArrayList<Arc> execute(Graph graph) {
+			return new FilterKruskal().execute(graph);
+		}
+	};
+
+	/**
+	 * Runs the algorithm that choose picks for each graph
+	 */
+	public static final MstAlgorithm AUTO = new MstAlgorithm() {
+		public ArrayList<Arc> execute(Graph graph) {
+			return choose(graph).execute(graph);
+		}
+	};
+
+	/**
+	 * Graphs with fewer edges than this go to Prim, which needs no edge list
+	 */
+	private static final int SMALL = 1<<16;
+
+	/**
+	 * Average degree from which Prim beats Filter-Kruskal
+	 */
+	private static final int DENSE = 256;
+
+	/**
+	 * Edges from which Boruvka, parallel in every pass, is worth it on PARALLEL processors
+	 */
+	private static final int LARGE = 1<<22;
+	private static final int PARALLEL = 4;
+
+	/**
+	 * Picks the algorithm likely to be fastest on a graph, from its numbers of vertices
+	 * and edges and the number of processors:
+	 *
+	 * <pre>
+	 * fewer than 2^16 edges                  Prim; building an edge list costs more than it saves
+	 * average degree 256 or more             Prim; most edges never lower a key
+	 * 2^22 edges or more, 4 or more cores    Boruvka; all its passes are parallel
+	 * anything else                          Filter-Kruskal; most heavy edges are filtered unsorted
+	 * </pre>
+	 *
+	 * The partial tree list algorithm is never picked: it is slower than these on every
+	 * kind of graph.
+	 *
+	 * @param graph Graph
+	 * @return Algorithm
+	 */
+	public static MstAlgorithm choose(Graph graph) {
+		long m = graph.edgeCount();
+		int n = Math.max(graph.vertices.length, 1);
+		if (m < SMALL || 2*m/n >= DENSE) {
+			return PRIM;
+		}
+		if (m >= LARGE && Runtime.getRuntime().availableProcessors() >= PARALLEL) {
+			return BORUVKA;
+		}
+		return FILTER_KRUSKAL;
+	}
+}
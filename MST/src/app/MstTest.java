@@ -0,0 +1,175 @@
+package app;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Random;
+
+import structures.Arc;
+import structures.DisjointSets;
+import structures.Graph;
+import structures.Vertex;
+
+/**
+ * Checks every MST algorithm against a plain Kruskal on random graphs: connected and not,
+ * sparse and dense, with many equal weights and with negative ones. Each result must be a
+ * forest of edges of the graph with the same number of edges and the same total weight as
+ * Kruskal's.
+ *
+ * Usage: java app.MstTest [graphs] [seed]
+ *
+ * Prints each failure, then the number of graphs checked; exits with status 1 on a failure.
+ *
+ */
+public class MstTest {
+
+	private static final String[] NAMES = {
+		"partial trees", "partial trees, MinHeap arcs", "partial trees, contracting",
+		"partial trees, MinHeap arcs, contracting", "partial trees, again on the same graph",
+		"Boruvka", "Boruvka, 3 threads", "Prim", "Filter-Kruskal", "Filter-Kruskal, 3 threads", "auto"
+	};
+
+	private static int failures;
+
+	public static void main(String[] args)
+	throws IOException {
+		int graphs = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+		Random random = new Random(args.length > 1 ? Long.parseLong(args[1]) : 1);
+		File file = File.createTempFile("msttest", ".txt");
+		file.deleteOnExit();
+		try {
+			for (int g=0; g < graphs; g++) {
+				int n = 1 + random.nextInt(g % 10 == 0 ? 2000 : 60);
+				writeGraph(file, n, random);
+				check(new Graph(file.getPath()), g);
+			}
+		} finally {
+			file.delete();
+		}
+		System.out.println(graphs + " graphs, " + failures + " failures");
+		if (failures > 0) {
+			System.exit(1);
+		}
+	}
+
+	/*
+	 * Writes a random graph: connected (a random tree plus extra edges) two times out of
+	 * three, weights from a small or a large range, some of them negative.
+	 */
+	private static void writeGraph(File file, int n, Random random)
+	throws IOException {
+		PrintWriter w = new PrintWriter(new BufferedWriter(new FileWriter(file)));
+		try {
+			w.println(n);
+			for (int i=0; i < n; i++) {
+				w.println("v" + i);
+			}
+			int range = random.nextBoolean() ? 4 : 1000000;
+			int extra = random.nextInt(8*n+1);
+			if (random.nextInt(3) > 0) {
+				for (int i=1; i < n; i++) {
+					w.println("v" + random.nextInt(i) + " v" + i + " " + (random.nextInt(range)-1));
+				}
+			} else {
+				extra /= 4;
+			}
+			for (int k=0; k < extra; k++) {
+				w.println("v" + random.nextInt(n) + " v" + random.nextInt(n) + " " + (random.nextInt(range)-1));
+			}
+		} finally {
+			w.close();
+		}
+	}
+
+	private static void check(Graph graph, int g) {
+		long[] expected = kruskal(graph);
+		for (int a=0; a < NAMES.length; a++) {
+			ArrayList<Arc> mst;
+			try {
+				mst = run(a, graph);
+			} catch (RuntimeException e) {
+				fail(g, a, e.toString());
+				continue;
+			}
+			long weight = 0;
+			DisjointSets forest = new DisjointSets(graph.vertices.length);
+			boolean cycle = false;
+			for (Arc arc: mst) {
+				weight += arc.getWeight();
+				int v1 = graph.indexOf(arc.getv1()), v2 = graph.indexOf(arc.getv2());
+				if (forest.connected(v1, v2) || !hasEdge(arc.getv1(), arc.getv2(), arc.getWeight())) {
+					cycle = true;
+				}
+				forest.union(v1, v2);
+			}
+			if (cycle) {
+				fail(g, a, "not a forest of edges of the graph");
+			} else if (mst.size() != expected[0] || weight != expected[1]) {
+				fail(g, a, mst.size() + " edges of weight " + weight + ", expected " + expected[0] + " of weight " + expected[1]);
+			}
+		}
+	}
+
+	private static ArrayList<Arc> run(int a, Graph graph) {
+		switch (a) {
+		case 0: return MstAlgorithms.PARTIAL_TREES.execute(graph);
+		case 1: return PartialTreeList.execute(PartialTreeList.initialize(graph, false));
+		case 2: return PartialTreeList.execute(PartialTreeList.initialize(graph, true), true);
+		case 3: return PartialTreeList.execute(PartialTreeList.initialize(graph, false), true);
+		case 4: return MstAlgorithms.PARTIAL_TREES.execute(graph);
+		case 5: return MstAlgorithms.BORUVKA.execute(graph);
+		case 6: return Boruvka.execute(graph, 3);
+		case 7: return MstAlgorithms.PRIM.execute(graph);
+		case 8: return MstAlgorithms.FILTER_KRUSKAL.execute(graph);
+		case 9: return new FilterKruskal(3).execute(graph);
+		default: return MstAlgorithms.AUTO.execute(graph);
+		}
+	}
+
+	/*
+	 * Number of edges and total weight of a minimum spanning forest, by sorting all edges.
+	 */
+	private static long[] kruskal(Graph graph) {
+		ArrayList<long[]> edges = new ArrayList<long[]>();
+		for (int i=0; i < graph.vertices.length; i++) {
+			for (Vertex.Neighbor nbr=graph.vertices[i].neighbors; nbr != null; nbr=nbr.next) {
+				edges.add(new long[] {nbr.weight, i, graph.indexOf(nbr.vertex)});
+			}
+		}
+		long[][] sorted = edges.toArray(new long[edges.size()][]);
+		Arrays.sort(sorted, new Comparator<long[]>() {
+			public int compare(long[] x, long[] y) {
+				return Long.compare(x[0], y[0]);
+			}
+		});
+		DisjointSets sets = new DisjointSets(graph.vertices.length);
+		long[] result = new long[2];
+		for (long[] e: sorted) {
+			if (!sets.connected((int)e[1], (int)e[2])) {
+				sets.union((int)e[1], (int)e[2]);
+				result[0]++;
+				result[1] += e[0];
+			}
+		}
+		return result;
+	}
+
+	private static boolean hasEdge(Vertex v1, Vertex v2, int weight) {
+		for (Vertex.Neighbor nbr=v1.neighbors; nbr != null; nbr=nbr.next) {
+			if (nbr.vertex == v2 && nbr.weight == weight) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	private static void fail(int g, int a, String message) {
+		failures++;
+		System.out.println("graph " + g + ", " + NAMES[a] + ": " + message);
+	}
+}
@@ -1,16 +1,20 @@
 package app;
 
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
 import structures.Arc;
 import structures.Graph;
+import structures.Heap;
 import structures.PartialTree;
 import structures.Vertex;
 
 /**
- * Stores partial trees in a circular linked list
+ * Stores partial trees in a circular doubly linked list. The list node of each tree
+ * is also kept in a hash map by the tree's root vertex, so a tree can be found and
+ * removed in O(1).
  * 
  */
 public class PartialTreeList implements Iterable<PartialTree> {
@@ -30,15 +34,21 @@ public class PartialTreeList implements Iterable<PartialTree> {
 		 */
 		public Node next;
 		
+		/**
+		 * Previous node in linked list
+		 */
+		public Node prev;
+		
 		/**
 		 * Initializes this node by setting the tree part to the given tree,
-		 * and setting next part to null
+		 * and setting next and prev parts to null
 		 * 
 		 * @param tree Partial tree
 		 */
 		public Node(PartialTree tree) {
 			this.tree = tree;
 			next = null;
+			prev = null;
 		}
 	}
 
@@ -52,12 +62,18 @@ public class PartialTreeList implements Iterable<PartialTree> {
 	 */
 	private int size;
 	
+	/**
+	 * Root vertex of each tree in the list -> node of the tree
+	 */
+	private HashMap<Vertex,Node> nodes;
+	
 	/**
 	 * Initializes this list to empty
 	 */
     public PartialTreeList() {
     	rear = null;
     	size = 0;
+    	nodes = new HashMap<Vertex,Node>();
     }
 
     /**
@@ -69,12 +85,16 @@ public class PartialTreeList implements Iterable<PartialTree> {
     	Node ptr = new Node(tree);
     	if (rear == null) {
     		ptr.next = ptr;
+    		ptr.prev = ptr;
     	} else {
     		ptr.next = rear.next;
+    		ptr.prev = rear;
+    		rear.next.prev = ptr;
     		rear.next = ptr;
     	}
     	rear = ptr;
     	size++;
+    	nodes.put(tree.getRoot(), ptr);
     }
 
     /**
@@ -84,10 +104,41 @@ public class PartialTreeList implements Iterable<PartialTree> {
 	 * @return The initial partial tree list
 	 */
 	public static PartialTreeList initialize(Graph graph) {
+		return initialize(graph, true);
+	}
+
+    /**
+	 * Initializes the algorithm by building single-vertex partial trees, whose arc sets
+	 * are PairingHeaps or MinHeaps (see PartialTree)
+	 * 
+	 * @param graph Graph for which the MST is to be found
+	 * @param mergeable True for PairingHeap arc sets
+	 * @return The initial partial tree list
+	 */
+	public static PartialTreeList initialize(Graph graph, boolean mergeable) {
 	
-		/* COMPLETE THIS METHOD */
+		if(graph == null) {
+			return null;
+		}
+		graph.resetTrees(); //in case an MST was found on it before
+		PartialTreeList ptlist = new PartialTreeList();
+		ptlist.nodes = new HashMap<Vertex,Node>(graph.vertices.length*2);
+		for(int i = 0; i < graph.vertices.length; i++) {
+			Vertex vroot= graph.vertices[i]; //vroot= vertex you are at
+			PartialTree ptree= new PartialTree(vroot, mergeable); //ptree= partial tree of the vertex
+			Heap<Arc> pq= ptree.getArcs(); //pq= priority queue=arcs in priority order
+			Vertex.Neighbor neighbor = vroot.neighbors;
+			while(neighbor !=null) {
+				Arc temp= new Arc(vroot, neighbor.vertex, neighbor.weight);
+				pq.insert(temp);
+				neighbor= neighbor.next;
+			}
+			
+			ptlist.append(ptree);
+			
+		}
 		
-		return null;
+		return ptlist;
 	}
 	
 	/**
@@ -97,11 +148,56 @@ public class PartialTreeList implements Iterable<PartialTree> {
 	 * @param ptlist Initial partial tree list
 	 * @return Array list of all arcs that are in the MST - sequence of arcs is irrelevant
 	 */
-	public static ArrayList<Arc> execute(PartialTreeList ptlist) {
+public static ArrayList<Arc> execute(PartialTreeList ptlist) {
+	return execute(ptlist, false);
+}
+
+	/**
+	 * Executes the algorithm on a graph, as execute(ptlist) does. In contracting mode
+	 * trees are merged with PartialTree.mergeContracted, which drops the arcs inside a
+	 * merged tree and all but the cheapest arc to each other tree, so the arc queues
+	 * stay near the number of neighboring trees.
+	 * 
+	 * This pays off on dense graphs with MinHeap arc sets (initialize(graph, false)),
+	 * whose merges take time in the number of arcs. PairingHeap arc sets merge in O(1),
+	 * and since most arcs never reach the top of a queue, leaving the dead ones in place
+	 * costs less than sorting them out.
+	 * 
+	 * @param ptlist Initial partial tree list
+	 * @param contract True to merge in contracting mode
+	 * @return Array list of all arcs that are in the MST - sequence of arcs is irrelevant
+	 */
+public static ArrayList<Arc> execute(PartialTreeList ptlist, boolean contract) {
+	ArrayList<Arc> mst = new ArrayList<Arc>();
+	while(ptlist.size()>1) {
 		
-		/* COMPLETE THIS METHOD */
+	PartialTree ptx= ptlist.rear.next.tree;
+	Heap<Arc> pqx=ptx.getArcs();
+	if(pqx.isEmpty()) { //no arcs out of the tree: it spans a whole component of the graph
+		ptlist.remove();
+		continue;
+	}
+	Arc alpha= pqx.deleteMin();
+	while(alpha!=null) {
+		
+		if(!(alpha.getv2().getRoot().equals(ptx.getRoot()))) {
+			mst.add(alpha);
+			PartialTree pty= ptlist.removeTreeContaining(alpha.getv2());
+			ptx= ptlist.remove();
+			if(contract) {
+				ptx.mergeContracted(pty);
+			}
+			else {
+				ptx.merge(pty);
+			}
+			ptlist.append(ptx);
+			break;
+		}
+		alpha= pqx.isEmpty() ? null : pqx.deleteMin();
+	}
+	}
+	return mst;	
 
-		return null;
 	}
 	
     /**
@@ -117,30 +213,47 @@ public class PartialTreeList implements Iterable<PartialTree> {
     		throw new NoSuchElementException("list is empty");
     	}
     	PartialTree ret = rear.next.tree;
-    	if (rear.next == rear) {
-    		rear = null;
-    	} else {
-    		rear.next = rear.next.next;
-    	}
-    	size--;
+    	unlink(rear.next);
+    	nodes.remove(ret.getRoot());
     	return ret;
     		
     }
 
     /**
-     * Removes the tree in this list that contains a given vertex.
+     * Removes the tree in this list that contains a given vertex, in O(1): the root
+     * of the vertex's tree leads to the tree's node.
      * 
-     * @param vertex Vertex whose tree is to be removed
+     * @param Vertex vertex whose tree is to be removed
      * @return The tree that is removed
      * @throws NoSuchElementException If there is no matching tree
      */
     public PartialTree removeTreeContaining(Vertex vertex) 
     throws NoSuchElementException {
-    		/* COMPLETE THIS METHOD */
+    	if (vertex == null) {
+			throw new NoSuchElementException();}
     	
-    		return null;
+		Node ptr= nodes.remove(vertex.getRoot());
+		if(ptr==null) { throw new NoSuchElementException();}
+		unlink(ptr);
+		return ptr.tree;
      }
     
+    /*
+     * Takes a node out of the list.
+     */
+    private void unlink(Node ptr) {
+    	if (ptr.next == ptr) {
+    		rear = null;
+    	} else {
+    		ptr.prev.next = ptr.next;
+    		ptr.next.prev = ptr.prev;
+    		if (ptr == rear) {
+    			rear = ptr.prev;
+    		}
+    	}
+    	size--;
+    }
+    
     /**
      * Gives the number of trees in this list
      * 
@@ -193,4 +306,3 @@ public class PartialTreeList implements Iterable<PartialTree> {
     }
 }
 
-
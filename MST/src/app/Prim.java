@@ -0,0 +1,48 @@
+package app;
+
+import java.util.ArrayList;
+
+import structures.Arc;
+import structures.Graph;
+import structures.IndexedMinHeap;
+import structures.Vertex;
+
+/**
+ * Prim's algorithm with an indexed heap of the vertices next to the tree, keyed by the
+ * weight of their cheapest edge to it. An edge that does not lower a key costs O(1), and
+ * one that does costs a decrease-key in place instead of a new heap entry, so the heap
+ * never holds more than V entries: O(E + V log V) when few edges lower a key, as on dense
+ * graphs, and O(E log V) at worst.
+ *
+ */
+public class Prim implements MstAlgorithm {
+
+	public ArrayList<Arc> execute(Graph graph) {
+		int n = graph.vertices.length;
+		ArrayList<Arc> mst = new ArrayList<Arc>(Math.max(n-1, 0));
+		IndexedMinHeap heap = new IndexedMinHeap(n);
+		boolean[] inTree = new boolean[n];
+		int[] from = new int[n]; // end in the tree of the cheapest edge to each vertex
+		for (int start=0; start < n; start++) { // one tree per component
+			if (inTree[start]) {
+				continue;
+			}
+			from[start] = -1;
+			heap.offer(start, 0);
+			while (!heap.isEmpty()) {
+				int v = heap.deleteMin();
+				inTree[v] = true;
+				if (from[v] >= 0) {
+					mst.add(new Arc(graph.vertices[from[v]], graph.vertices[v], heap.getKey(v)));
+				}
+				for (Vertex.Neighbor nbr=graph.vertices[v].neighbors; nbr != null; nbr=nbr.next) {
+					int u = graph.indexOf(nbr.vertex);
+					if (!inTree[u] && heap.offer(u, nbr.weight)) {
+						from[u] = v;
+					}
+				}
+			}
+		}
+		return mst;
+	}
+}
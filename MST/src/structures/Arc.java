@@ -56,6 +56,33 @@ public class Arc implements Comparable<Arc> {
     	return weight - other.weight;
     }
 
+    /**
+     * Returns the vertex at the first end of this arc.
+     * 
+     * @return First vertex
+     */
+    public Vertex getv1() {
+    	return v1;
+    }
+
+    /**
+     * Returns the vertex at the second end of this arc.
+     * 
+     * @return Second vertex
+     */
+    public Vertex getv2() {
+    	return v2;
+    }
+
+    /**
+     * Returns the weight of this arc.
+     * 
+     * @return Weight
+     */
+    public int getWeight() {
+    	return weight;
+    }
+
     /* (non-Javadoc)
      * @see java.lang.Object#toString()
      */
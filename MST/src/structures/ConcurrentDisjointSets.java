@@ -0,0 +1,111 @@
+package structures;
+
+import java.util.concurrent.atomic.AtomicIntegerArray;
+
+/**
+ * Disjoint sets of the numbers 0 to n-1 (union-find) that any number of threads can use at
+ * once without locking. Parents are kept in an AtomicIntegerArray: a union links one root
+ * under the other with a compare-and-set, retrying if either root has changed in the
+ * meantime, and a find halves the path to the root as it goes, also with compare-and-set,
+ * so a lost race only leaves a path a little longer.
+ *
+ * Roots are linked in the order of a fixed pseudo-random priority of each number instead
+ * of by rank, which needs no extra shared state and keeps the trees shallow on average
+ * whatever the order of the unions.
+ *
+ */
+public class ConcurrentDisjointSets {
+
+	private final AtomicIntegerArray parent;
+
+	/**
+	 * Initializes n sets, each holding one number.
+	 *
+	 * @param n Number of elements
+	 */
+	public ConcurrentDisjointSets(int n) {
+		parent = new AtomicIntegerArray(n);
+		for (int i=0; i < n; i++) {
+			parent.set(i, i);
+		}
+	}
+
+	/**
+	 * Finds the root of the set that holds a number. With unions going on in other threads,
+	 * the root may change as soon as it is returned.
+	 *
+	 * @param x Number
+	 * @return Root of its set
+	 */
+	public int find(int x) {
+		while (true) {
+			int p = parent.get(x);
+			if (p == x) {
+				return x;
+			}
+			int gp = parent.get(p);
+			if (p != gp) {
+				parent.compareAndSet(x, p, gp); // path halving
+			}
+			x = gp;
+		}
+	}
+
+	/**
+	 * Merges the sets that hold two numbers.
+	 *
+	 * @param x Number
+	 * @param y Number
+	 * @return True if this call merged them, false if they were already in one set
+	 */
+	public boolean union(int x, int y) {
+		while (true) {
+			x = find(x);
+			y = find(y);
+			if (x == y) {
+				return false;
+			}
+			if (before(x, y)) { // link the lower priority root under the other
+				int t = x;
+				x = y;
+				y = t;
+			}
+			if (parent.compareAndSet(y, y, x)) {
+				return true;
+			}
+		}
+	}
+
+	/**
+	 * Tells if two numbers are in the same set, as of some moment during the call.
+	 *
+	 * @param x Number
+	 * @param y Number
+	 * @return True if they are
+	 */
+	public boolean connected(int x, int y) {
+		while (true) {
+			x = find(x);
+			y = find(y);
+			if (x == y) {
+				return true;
+			}
+			if (parent.get(x) == x) { // x was still a root after y was found
+				return false;
+			}
+		}
+	}
+
+	/*
+	 * True if a ranks below b.
+	 */
+	private static boolean before(int a, int b) {
+		int ha = mix(a), hb = mix(b);
+		return ha < hb || (ha == hb && a < b);
+	}
+
+	private static int mix(int x) {
+		x *= 0x9E3779B9;
+		return x ^ (x >>> 16);
+	}
+}
@@ -0,0 +1,123 @@
+package structures;
+
+/**
+ * Disjoint sets of the numbers 0 to n-1 (union-find), kept in two arrays: the parent of
+ * each number, and the size of each set at its root. Finding a set halves the path to its
+ * root as it goes, and a union links the root of the smaller set under the root of the
+ * larger one, so any sequence of operations takes nearly constant time per operation.
+ *
+ */
+public class DisjointSets {
+
+	/**
+	 * Parent of each number; a root is its own parent
+	 */
+	private int[] parent;
+
+	/**
+	 * Number of elements in the set of each root (meaningless for other numbers)
+	 */
+	private int[] size;
+
+	/**
+	 * Number of sets
+	 */
+	private int count;
+
+	/**
+	 * Initializes n sets, each holding one number.
+	 *
+	 * @param n Number of elements
+	 */
+	public DisjointSets(int n) {
+		parent = new int[n];
+		size = new int[n];
+		for (int i=0; i < n; i++) {
+			parent[i] = i;
+			size[i] = 1;
+		}
+		count = n;
+	}
+
+	/**
+	 * Finds the root of the set that holds a number, and shortens the path to it.
+	 *
+	 * @param x Number
+	 * @return Root of its set
+	 */
+	public int find(int x) {
+		while (parent[x] != x) {
+			parent[x] = parent[parent[x]]; // path halving
+			x = parent[x];
+		}
+		return x;
+	}
+
+	/**
+	 * Finds the root of the set that holds a number without changing anything, so that
+	 * several threads can call it at once while no union is going on.
+	 *
+	 * @param x Number
+	 * @return Root of its set
+	 */
+	public int root(int x) {
+		while (parent[x] != x) {
+			x = parent[x];
+		}
+		return x;
+	}
+
+	/**
+	 * Merges the sets that hold two numbers.
+	 *
+	 * @param x Number
+	 * @param y Number
+	 * @return Root of the merged set, which is the root of one of the two sets
+	 */
+	public int union(int x, int y) {
+		x = find(x);
+		y = find(y);
+		if (x == y) {
+			return x;
+		}
+		if (size[x] < size[y]) {
+			int t = x;
+			x = y;
+			y = t;
+		}
+		parent[y] = x;
+		size[x] += size[y];
+		count--;
+		return x;
+	}
+
+	/**
+	 * Tells if two numbers are in the same set.
+	 *
+	 * @param x Number
+	 * @param y Number
+	 * @return True if they are
+	 */
+	public boolean connected(int x, int y) {
+		return find(x) == find(y);
+	}
+
+	/**
+	 * Returns the number of elements in the set that holds a number.
+	 *
+	 * @param x Number
+	 * @return Size of its set
+	 */
+	public int size(int x) {
+		return size[find(x)];
+	}
+
+	/**
+	 * Returns the number of sets.
+	 *
+	 * @return Number of sets
+	 */
+	public int count() {
+		return count;
+	}
+}
@@ -0,0 +1,59 @@
+package structures;
+
+/**
+ * The edges of a graph in three parallel arrays, each undirected edge once, for MST
+ * algorithms that scan all the edges: a few bytes per edge and no pointers to follow,
+ * where the adjacency lists of Graph hold every edge twice as Neighbor objects.
+ * Vertices are numbered as in Graph.vertices.
+ *
+ */
+public class EdgeList {
+
+	/**
+	 * Numbers of the two end vertices of each edge
+	 */
+	public final int[] v1, v2;
+
+	/**
+	 * Weight of each edge
+	 */
+	public final int[] weight;
+
+	/**
+	 * Number of edges
+	 */
+	public final int size;
+
+	/**
+	 * Collects the edges of a graph. Edges from a vertex to itself are left out, since no
+	 * spanning tree has them.
+	 *
+	 * @param graph Graph
+	 */
+	public EdgeList(Graph graph) {
+		int n = 0;
+		for (int i=0; i < graph.vertices.length; i++) {
+			for (Vertex.Neighbor nbr=graph.vertices[i].neighbors; nbr != null; nbr=nbr.next) {
+				if (i < graph.indexOf(nbr.vertex)) {
+					n++;
+				}
+			}
+		}
+		v1 = new int[n];
+		v2 = new int[n];
+		weight = new int[n];
+		size = n;
+		int e = 0;
+		for (int i=0; i < graph.vertices.length; i++) {
+			for (Vertex.Neighbor nbr=graph.vertices[i].neighbors; nbr != null; nbr=nbr.next) {
+				int j = graph.indexOf(nbr.vertex);
+				if (i < j) {
+					v1[e] = i;
+					v2[e] = j;
+					weight[e] = nbr.weight;
+					e++;
+				}
+			}
+		}
+	}
+}
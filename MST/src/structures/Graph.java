@@ -19,6 +19,23 @@ public class Graph {
      */
     HashMap<String,Integer> vertmap;
 
+    /**
+     * Partial spanning tree of each vertex, by vertex number, for Vertex.getRoot
+     * and PartialTree.merge. Each vertex starts out as a tree of its own.
+     */
+    DisjointSets trees;
+
+    /**
+     * Scratch array for PartialTree.mergeContracted, by tree root number; all null
+     * between uses
+     */
+    Arc[] cheapest;
+
+    /**
+     * Number of edges read
+     */
+    int edges;
+
     /**
      * Constructs a graph out of a plain text description in an input file.
      * 
@@ -33,15 +50,17 @@ public class Graph {
     	vertmap = new HashMap<String,Integer>(vertices.length,2f);
     	// add all vertices
     	for (int v=0; v < vertices.length; v++) {
-    		vertices[v] = new Vertex(sc.next());
+    		vertices[v] = new Vertex(sc.next(), this, v);
     		vertmap.put(vertices[v].name, v);
     	}
+    	trees = new DisjointSets(vertices.length);
     	
     	// add edges
     	while (sc.hasNext()) {
     		Vertex vx1 = vertices[vertmap.get(sc.next())];
     		Vertex vx2 = vertices[vertmap.get(sc.next())];
     		int wt = sc.nextInt();
+    		edges++;
     		
     		// add vx2 to vx1's list
     		Vertex.Neighbor nbr = new Vertex.Neighbor(vx2,wt);
@@ -54,6 +73,36 @@ public class Graph {
     	}
     }
     
+    /**
+     * Makes every vertex a partial spanning tree of its own again, as when the graph
+     * was built, so that an MST can be found again on the same graph.
+     */
+    public void resetTrees() {
+    	for (Vertex v: vertices) {
+    		v.parent = v;
+    	}
+    	trees = new DisjointSets(vertices.length);
+    }
+
+    /**
+     * Returns the number of a vertex of this graph: its index in vertices.
+     * 
+     * @param v Vertex of this graph
+     * @return Number of the vertex
+     */
+    public int indexOf(Vertex v) {
+    	return v.number;
+    }
+
+    /**
+     * Returns the number of edges of this graph, each undirected edge counted once.
+     * 
+     * @return Number of edges
+     */
+    public int edgeCount() {
+    	return edges;
+    }
+
     /**
      * Prints this graph
      */
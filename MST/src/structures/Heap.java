@@ -0,0 +1,59 @@
+package structures;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A MIN-heap: the operations that MinHeap and PairingHeap both have, so that code such as
+ * PartialTree can work with either.
+ *
+ */
+public interface Heap<T extends Comparable<T>> extends Iterable<T> {
+
+	/**
+	 * Inserts an item into the heap.
+	 *
+	 * @param item Item to insert.
+	 */
+	void insert(T item);
+
+	/**
+	 * Removes and returns the min item in the heap.
+	 *
+	 * @return Item (min) at top of heap.
+	 * @throws NoSuchElementException If the heap is empty.
+	 */
+	T deleteMin()
+	throws NoSuchElementException;
+
+	/**
+	 * Returns (but does not remove) the min item in the heap.
+	 *
+	 * @return Item at top of heap.
+	 * @throws NoSuchElementException If heap is empty.
+	 */
+	T getMin()
+	throws NoSuchElementException;
+
+	/**
+	 * Merges another heap into this one (i.e., all items in the other heap are added to
+	 * this one). A MinHeap copies the items and leaves the other heap as it was; a
+	 * PairingHeap takes the items over from another PairingHeap, which is left empty.
+	 *
+	 * @param hp Heap whose elements will be merged into this heap.
+	 */
+	void merge(Heap<T> hp);
+
+	/**
+	 * Returns the number of items currently stored in the heap.
+	 *
+	 * @return Size of heap.
+	 */
+	int size();
+
+	/**
+	 * Tells if the heap is empty.
+	 *
+	 * @return <tt>true</tt> if no items are in heap, <tt>false</tt> otherwise.
+	 */
+	boolean isEmpty();
+}
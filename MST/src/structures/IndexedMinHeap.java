@@ -0,0 +1,140 @@
+package structures;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A MIN-heap of the numbers 0 to n-1, each with an int key, that can lower the key of a
+ * number already in the heap (decrease-key) in O(log n). The heap is an array of numbers,
+ * and the position of each number in it is kept in another array, so a number is found
+ * in O(1) and nothing is allocated after construction.
+ *
+ */
+public class IndexedMinHeap {
+
+	/**
+	 * Numbers in heap order, and the key and heap position (-1 if not in the heap) of each
+	 */
+	private int[] heap, key, pos;
+	private int size;
+
+	/**
+	 * Constructs an empty heap for the numbers 0 to n-1.
+	 *
+	 * @param n Number of possible items
+	 */
+	public IndexedMinHeap(int n) {
+		heap = new int[n];
+		key = new int[n];
+		pos = new int[n];
+		for (int i=0; i < n; i++) {
+			pos[i] = -1;
+		}
+		size = 0;
+	}
+
+	/**
+	 * Inserts a number with a key, or lowers its key if it is in the heap with a larger one.
+	 *
+	 * @param x Number
+	 * @param k Key
+	 * @return True if the number was inserted or its key lowered
+	 */
+	public boolean offer(int x, int k) {
+		if (pos[x] < 0) {
+			heap[size] = x;
+			pos[x] = size;
+			key[x] = k;
+			siftUp(size++);
+			return true;
+		}
+		if (k < key[x]) {
+			key[x] = k;
+			siftUp(pos[x]);
+			return true;
+		}
+		return false;
+	}
+
+	/**
+	 * Removes and returns the number with the smallest key.
+	 *
+	 * @return Number with the smallest key
+	 * @throws NoSuchElementException If the heap is empty.
+	 */
+	public int deleteMin()
+	throws NoSuchElementException {
+		if (size == 0) {
+			throw new NoSuchElementException();
+		}
+		int min = heap[0];
+		pos[min] = -1;
+		size--;
+		if (size > 0) {
+			heap[0] = heap[size];
+			pos[heap[0]] = 0;
+			siftDown(0);
+		}
+		return min;
+	}
+
+	/**
+	 * Tells if a number is in the heap.
+	 *
+	 * @param x Number
+	 * @return True if it is
+	 */
+	public boolean contains(int x) {
+		return pos[x] >= 0;
+	}
+
+	/**
+	 * Returns the key of a number, which is meaningful only if it is or has been in the heap.
+	 *
+	 * @param x Number
+	 * @return Its last key
+	 */
+	public int getKey(int x) {
+		return key[x];
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return size == 0;
+	}
+
+	private void siftUp(int k) {
+		int x = heap[k];
+		while (k > 0) {
+			int p = (k-1)/2;
+			if (key[heap[p]] <= key[x]) {
+				break;
+			}
+			heap[k] = heap[p];
+			pos[heap[k]] = k;
+			k = p;
+		}
+		heap[k] = x;
+		pos[x] = k;
+	}
+
+	private void siftDown(int k) {
+		int x = heap[k];
+		while (2*k+1 < size) {
+			int c = 2*k+1;
+			if (c+1 < size && key[heap[c+1]] < key[heap[c]]) {
+				c++;
+			}
+			if (key[x] <= key[heap[c]]) {
+				break;
+			}
+			heap[k] = heap[c];
+			pos[heap[k]] = k;
+			k = c;
+		}
+		heap[k] = x;
+		pos[x] = k;
+	}
+}
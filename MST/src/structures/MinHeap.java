@@ -7,7 +7,7 @@ import java.util.NoSuchElementException;
 /**
  * Implements a MIN-heap data structure.
  */
-public class MinHeap<T extends Comparable<T>> implements Iterable<T> {
+public class MinHeap<T extends Comparable<T>> implements Heap<T> {
     
 	private ArrayList<T> items;
 	
@@ -24,9 +24,9 @@ public class MinHeap<T extends Comparable<T>> implements Iterable<T> {
      * 
      * @param other Other min heap from which items are copied to this
      */
-    public MinHeap(MinHeap<T> other) {
+    public MinHeap(Heap<T> other) {
     	items = new ArrayList<T>(other.size());
-    	for (T item: other.items) {
+    	for (T item: other) {
     		items.add(item);
     	}
     }
@@ -116,10 +116,10 @@ public class MinHeap<T extends Comparable<T>> implements Iterable<T> {
      * 
      * @param hp Heap whose elements will be merged into this heap.
      */
-    public void merge(MinHeap<T> hp) {
+    public void merge(Heap<T> hp) {
     	// first merge the argument heap's entries into this
-    	for (int i=0; i < hp.items.size(); i++) {
-    		items.add(hp.items.get(i));
+    	for (T item: hp) {
+    		items.add(item);
     	}
 
     	// then do a bottom-up build heap, starting from "last" non-leaf node
@@ -0,0 +1,199 @@
+package structures;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * A MIN-heap that can be merged with another in O(1): a pairing heap, where each node
+ * keeps its children in a linked list and a merge makes the root with the larger item a
+ * child of the other. Insert and getMin are O(1), and deleteMin is O(log n) amortized.
+ *
+ * It can be used as the arc set of a PartialTree in place of a MinHeap, whose merge costs
+ * time in the size of both heaps on every merge of two trees.
+ */
+public class PairingHeap<T extends Comparable<T>> implements Heap<T> {
+
+	private static class Node<T> {
+		T item;
+		Node<T> child, sibling; // first child, and next sibling in the parent's child list
+
+		Node(T item) {
+			this.item = item;
+		}
+	}
+
+	private Node<T> root;
+	private int size;
+
+	/**
+	 * Constructs a new, empty heap
+	 */
+	public PairingHeap() {
+		root = null;
+		size = 0;
+	}
+
+	/**
+	 * Inserts an item into the heap, in O(1).
+	 *
+	 * @param item Item to insert.
+	 */
+	public void insert(T item) {
+		root = link(root, new Node<T>(item));
+		size++;
+	}
+
+	/**
+	 * Removes and returns the min item in the heap. Its children are paired left to right,
+	 * then the pairs are merged right to left.
+	 *
+	 * @return Item (min) at top of heap.
+	 * @throws NoSuchElementException If the heap is empty.
+	 */
+	public T deleteMin()
+	throws NoSuchElementException {
+		if (root == null) {
+			throw new NoSuchElementException();
+		}
+		T minItem = root.item;
+		Node<T> first = root.child;
+		Node<T> paired = null; // merged pairs, last one first, linked through sibling
+		while (first != null) {
+			Node<T> a = first;
+			Node<T> b = a.sibling;
+			if (b == null) {
+				a.sibling = paired;
+				paired = a;
+				break;
+			}
+			first = b.sibling;
+			a.sibling = null;
+			b.sibling = null;
+			Node<T> m = link(a, b);
+			m.sibling = paired;
+			paired = m;
+		}
+		Node<T> r = null;
+		while (paired != null) {
+			Node<T> next = paired.sibling;
+			paired.sibling = null;
+			r = link(r, paired);
+			paired = next;
+		}
+		root = r;
+		size--;
+		return minItem;
+	}
+
+	/**
+	 * Merges another heap into this one (i.e., all items in the other heap
+	 * are added to this one). If the other heap is a PairingHeap this takes O(1),
+	 * and the other heap is left empty; otherwise its items are inserted one by one.
+	 *
+	 * @param hp Heap whose elements will be merged into this heap.
+	 */
+	public void merge(Heap<T> hp) {
+		if (hp == this) {
+			return;
+		}
+		if (hp instanceof PairingHeap) {
+			PairingHeap<T> other = (PairingHeap<T>)hp;
+			root = link(root, other.root);
+			size += other.size;
+			other.root = null;
+			other.size = 0;
+			return;
+		}
+		for (T item: hp) {
+			insert(item);
+		}
+	}
+
+	/**
+	 * Returns (but does not remove) the min item in the heap.
+	 *
+	 * @return Item at top of heap.
+	 * @throws NoSuchElementException If heap is empty.
+	 */
+	public T getMin()
+	throws NoSuchElementException {
+		if (root == null) {
+			throw new NoSuchElementException();
+		}
+		return root.item;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isEmpty() {
+		return root == null;
+	}
+
+	/**
+	 * Returns an iterator over the items, in no particular order. The heap must not be
+	 * changed while it is in use.
+	 */
+	public Iterator<T> iterator() {
+		return new Iterator<T>() {
+			private ArrayList<Node<T>> stack = new ArrayList<Node<T>>(); // next subtrees, and their siblings
+			{
+				if (root != null) {
+					stack.add(root);
+				}
+			}
+
+			public boolean hasNext() {
+				return !stack.isEmpty();
+			}
+
+			public T next() {
+				if (stack.isEmpty()) {
+					throw new NoSuchElementException();
+				}
+				Node<T> ptr = stack.remove(stack.size()-1);
+				if (ptr.sibling != null) {
+					stack.add(ptr.sibling);
+				}
+				if (ptr.child != null) {
+					stack.add(ptr.child);
+				}
+				return ptr.item;
+			}
+
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+
+	public String toString() {
+		StringBuilder ret = new StringBuilder();
+		for (T item: this) {
+			ret.append("  ").append(item);
+		}
+		return ret.toString();
+	}
+
+	/*
+	 * Merges two heap-ordered trees with no siblings; either may be null.
+	 */
+	private Node<T> link(Node<T> a, Node<T> b) {
+		if (a == null) {
+			return b;
+		}
+		if (b == null) {
+			return a;
+		}
+		if (b.item.compareTo(a.item) < 0) {
+			Node<T> t = a;
+			a = b;
+			b = t;
+		}
+		b.sibling = a.child;
+		a.child = b;
+		return a;
+	}
+}
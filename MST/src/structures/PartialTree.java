@@ -1,5 +1,7 @@
 package structures;
 
+import java.util.ArrayList;
+
 public class PartialTree {
   
 	/**
@@ -10,7 +12,17 @@ public class PartialTree {
 	/**
 	 * The arcs included in this partial tree
 	 */
-	private MinHeap<Arc> arcs;
+	private Heap<Arc> arcs;
+
+	/**
+	 * Number of arcs left by the last contraction of the arc set (see mergeContracted)
+	 */
+	private int contracted;
+
+	/**
+	 * Smallest arc set that mergeContracted contracts
+	 */
+	private static final int MIN_CONTRACT = 16;
 
 	/**
 	 * Initializes this partial tree with given vertex
@@ -18,19 +30,103 @@ public class PartialTree {
 	 * @param vertex Vertex used to initialize the tree
 	 */
     public PartialTree(Vertex vertex) {
+    	this(vertex, false);
+    }
+
+	/**
+	 * Initializes this partial tree with given vertex, and an arc set that is either
+	 * a MinHeap or a PairingHeap. Merging two trees with PairingHeap arc sets takes
+	 * O(1) for the arcs, where MinHeap arc sets take time in the number of arcs of
+	 * both trees.
+	 * 
+	 * @param vertex Vertex used to initialize the tree
+	 * @param mergeable True for a PairingHeap arc set
+	 */
+    public PartialTree(Vertex vertex, boolean mergeable) {
     	root = vertex;
-    	arcs = new MinHeap<Arc>();
+    	arcs = mergeable ? new PairingHeap<Arc>() : new MinHeap<Arc>();
     }
 
     /**
-     * Merges another partial tree into this partial tree
+     * Merges another partial tree into this partial tree. The root of the merged
+     * tree is the root of the larger of the two, so it may be the other tree's root;
+     * the root of the smaller one gets it as its parent.
      * 
      * @param other The partial tree to be merged with this tree.
      */
     public void merge(PartialTree other)	{
-    	other.root.parent = root;
+    	Vertex merged;
+    	if (root.graph != null && root.graph == other.root.graph) {
+    		merged = root.graph.vertices[root.graph.trees.union(root.number, other.root.number)];
+    	} else {
+    		merged = root;
+    	}
+    	if (merged == root) {
+    		other.root.parent = root;
+    	} else {
+    		root.parent = merged;
+    		root = merged;
+    	}
     	arcs.merge(other.arcs);
     }
+
+    /**
+     * Merges another partial tree into this partial tree, as merge does, and keeps the
+     * arc set small: arcs with both ends in the merged tree are dropped, and of the arcs
+     * to each other tree only the cheapest is kept, so the arc set never holds much more
+     * than one arc per neighboring tree. The arcs are only sorted out once the set has
+     * doubled since it was last, so the cost stays proportional to the arcs merged in.
+     * Trees of vertices that are not in a Graph are merged as by merge.
+     * 
+     * @param other The partial tree to be merged with this tree.
+     */
+    public void mergeContracted(PartialTree other) {
+    	merge(other);
+    	if (arcs.size() > 2*Math.max(contracted, MIN_CONTRACT)) {
+    		contract();
+    	}
+    }
+
+    /*
+     * Rebuilds the arc set with the cheapest arc to each other tree. The cheapest arc so
+     * far to each tree is kept in the graph's scratch array, by the tree's root number.
+     */
+    private void contract() {
+    	Graph graph = root.graph;
+    	if (graph == null) {
+    		return;
+    	}
+    	DisjointSets trees = graph.trees;
+    	if (graph.cheapest == null) {
+    		graph.cheapest = new Arc[graph.vertices.length];
+    	}
+    	Arc[] cheapest = graph.cheapest;
+    	int self = trees.find(root.number);
+    	ArrayList<Arc> kept = new ArrayList<Arc>();
+    	for (Arc arc: arcs) {
+    		int r1 = trees.find(arc.v1.number), r2 = trees.find(arc.v2.number);
+    		if (r1 == r2) {
+    			continue; // internal
+    		}
+    		int to = r1 == self ? r2 : r1;
+    		Arc best = cheapest[to];
+    		if (best == null) {
+    			kept.add(arc);
+    			cheapest[to] = arc;
+    		} else if (arc.weight < best.weight) {
+    			cheapest[to] = arc;
+    		}
+    	}
+    	Heap<Arc> heap = arcs instanceof PairingHeap ? new PairingHeap<Arc>() : new MinHeap<Arc>(kept.size());
+    	for (Arc arc: kept) { // first arc seen to each tree, which leads to the cheapest
+    		int r1 = trees.find(arc.v1.number), r2 = trees.find(arc.v2.number);
+    		int to = r1 == self ? r2 : r1;
+    		heap.insert(cheapest[to]);
+    		cheapest[to] = null;
+    	}
+    	arcs = heap;
+    	contracted = heap.size();
+    }
     
     /**
      * Returns the root of this tree.
@@ -47,7 +143,7 @@ public class PartialTree {
      * 
      * @return Priority-ordered arc set.
      */
-    public MinHeap<Arc> getArcs() {
+    public Heap<Arc> getArcs() {
     	return arcs;
     }
     
@@ -59,6 +59,17 @@ public class Vertex {
      */
     public Vertex parent;
 
+    /**
+     * Graph this vertex belongs to, null if it was made on its own
+     */
+    Graph graph;
+
+    /**
+     * Number of this vertex in the graph: its index in graph.vertices, and its element
+     * in graph.trees
+     */
+    int number;
+
     /**
      * Constructs a new Vertex object with no neighbors (i.e.,
      * no outgoing edges), and no parent vertex (i.e., it is its own partial
@@ -71,14 +82,34 @@ public class Vertex {
     	parent = this;
     }
 
+    /**
+     * Constructs a new vertex of a graph, as Vertex(String), whose partial tree is kept
+     * in the graph's disjoint sets.
+     * @param name Name to give to this vertex.
+     * @param graph Graph the vertex belongs to.
+     * @param number Index of the vertex in graph.vertices.
+     */
+    Vertex(String name, Graph graph, int number) {
+    	this(name);
+    	this.graph = graph;
+    	this.number = number;
+    }
+
     /**
      * Finds and returns the vertex at the root of the partial spanning tree to
-     * which this vertex belongs.
+     * which this vertex belongs. For a vertex of a graph this is a lookup in the
+     * graph's disjoint sets, in nearly constant time; otherwise the parent links
+     * are followed, halving the path as they go.
      * @return Root of partial tree.
      */
     public Vertex getRoot() {
+    	if (graph != null) {
+    		return graph.vertices[graph.trees.find(number)];
+    	}
 		Vertex v;
-		for (v = this ; v.parent != v ; v = v.parent);
+		for (v = this ; v.parent != v ; v = v.parent) {
+			v.parent = v.parent.parent;
+		}
 		return v;
     }
 